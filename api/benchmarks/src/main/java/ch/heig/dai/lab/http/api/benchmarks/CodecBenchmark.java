@@ -0,0 +1,157 @@
+package ch.heig.dai.lab.http.api.benchmarks;
+
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.BlogCodec;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import ch.heig.dai.lab.http.api.comment.CommentCodec;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the documents with the codecs registered in the MongoDB clients ({@code direct}), compared
+ * with the previous codecs going through an intermediate {@link org.bson.Document} ({@code document}). Run with
+ * {@code -prof gc} to compare the allocations as well.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+    /**
+     * The implementation of the codecs.
+     */
+    @Param({"direct", "document"})
+    private String implementation;
+
+    /**
+     * The blog codec.
+     */
+    private Codec<Blog> blogCodec;
+
+    /**
+     * The comment codec.
+     */
+    private Codec<Comment> commentCodec;
+
+    /**
+     * The encoded blog.
+     */
+    private Blog blog;
+
+    /**
+     * The encoded comment.
+     */
+    private Comment comment;
+
+    /**
+     * The BSON of the blog.
+     */
+    private byte[] blogBson;
+
+    /**
+     * The BSON of the comment.
+     */
+    private byte[] commentBson;
+
+    /**
+     * Build the codecs, the documents and their BSON.
+     */
+    @Setup
+    public void setUp() {
+        if (implementation.equals("direct")) {
+            blogCodec = new BlogCodec();
+            commentCodec = new CommentCodec();
+        } else {
+            blogCodec = new DocumentBlogCodec(new DocumentCodec());
+            commentCodec = new DocumentCommentCodec(new DocumentCodec());
+        }
+        blog = Fixtures.blog(0);
+        comment = Fixtures.comment(blog._id(), 0);
+        blogBson = encode(blogCodec, blog).toByteArray();
+        commentBson = encode(commentCodec, comment).toByteArray();
+    }
+
+    /**
+     * Encode a document to BSON.
+     *
+     * @param codec    The codec.
+     * @param document The document.
+     * @param <T>      The type of the document.
+     * @return The buffer holding the BSON.
+     */
+    static <T> BasicOutputBuffer encode(Codec<T> codec, T document) {
+        final BasicOutputBuffer buffer = new BasicOutputBuffer(1024);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            codec.encode(writer, document, EncoderContext.builder().build());
+        }
+        return buffer;
+    }
+
+    /**
+     * Decode a document from BSON.
+     *
+     * @param codec The codec.
+     * @param bson  The BSON.
+     * @param <T>   The type of the document.
+     * @return The document.
+     */
+    static <T> T decode(Codec<T> codec, byte[] bson) {
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bson))) {
+            return codec.decode(reader, DecoderContext.builder().build());
+        }
+    }
+
+    /**
+     * Encode a blog.
+     *
+     * @return The buffer, returned so that the encoding is not eliminated.
+     */
+    @Benchmark
+    public BasicOutputBuffer encodeBlog() {
+        return encode(blogCodec, blog);
+    }
+
+    /**
+     * Decode a blog.
+     *
+     * @return The blog.
+     */
+    @Benchmark
+    public Blog decodeBlog() {
+        return decode(blogCodec, blogBson);
+    }
+
+    /**
+     * Encode a comment.
+     *
+     * @return The buffer, returned so that the encoding is not eliminated.
+     */
+    @Benchmark
+    public BasicOutputBuffer encodeComment() {
+        return encode(commentCodec, comment);
+    }
+
+    /**
+     * Decode a comment.
+     *
+     * @return The comment.
+     */
+    @Benchmark
+    public Comment decodeComment() {
+        return decode(commentCodec, commentBson);
+    }
+}
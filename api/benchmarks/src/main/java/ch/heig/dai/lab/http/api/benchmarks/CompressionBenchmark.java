@@ -0,0 +1,123 @@
+package ch.heig.dai.lab.http.api.benchmarks;
+
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import io.javalin.compression.Brotli;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Compressor;
+import io.javalin.compression.Gzip;
+import io.javalin.json.JavalinJackson;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression of the listings of the seed data set, {@code db/blog_data.json} and {@code db/comment_data.json}, with
+ * the compressors used by the API for each encoding and level. The time per operation is the CPU cost of compressing a
+ * response; the sizes before and after compression are printed once per trial.
+ * <p>
+ * The folder of the seed data is read from the {@code seed.dir} system property, {@code ../db} by default, so that the
+ * benchmarks can be run from the {@code api} folder.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+    /**
+     * The encoding and the level of the compression, as {@code <encoding>-<level>}.
+     */
+    @Param({"gzip-1", "gzip-6", "gzip-9", "br-1", "br-4", "br-11"})
+    private String compression;
+
+    /**
+     * The compressed listing: {@code blogs} for all the blogs, {@code comments} for all the comments.
+     */
+    @Param({"blogs", "comments"})
+    private String listing;
+
+    /**
+     * The compressor.
+     */
+    private Compressor compressor;
+
+    /**
+     * The JSON of the listing, as sent by the API without compression.
+     */
+    private byte[] json;
+
+    /**
+     * The buffer receiving the compressed listing, reused by every operation.
+     */
+    private ByteArrayOutputStream output;
+
+    /**
+     * Read the seed data, serialize the listing, and print the size it is compressed to.
+     *
+     * @throws IOException If the seed data cannot be read.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        final String[] parts = compression.split("-");
+        final int level = Integer.parseInt(parts[1]);
+        final CompressionStrategy strategy = "br".equals(parts[0]) ? new CompressionStrategy(new Brotli(level), null)
+                                                                   : new CompressionStrategy(null, new Gzip(level));
+        if (strategy.getCompressors().isEmpty()) {
+            throw new IllegalStateException("Compression " + compression + " is not available on this platform");
+        }
+        compressor = strategy.getCompressors().get(0);
+
+        final JavalinJackson mapper = new JavalinJackson();
+        final Path seed = Path.of(System.getProperty("seed.dir", "../db"));
+        final List<?> documents = "blogs".equals(listing)
+                                  ? Arrays.asList(mapper.fromJsonString(read(seed.resolve("blog_data.json")),
+                                                                        Blog[].class))
+                                  : Arrays.asList(mapper.fromJsonString(read(seed.resolve("comment_data.json")),
+                                                                        Comment[].class));
+        json = mapper.toJsonString(documents, List.class).getBytes(StandardCharsets.UTF_8);
+        output = new ByteArrayOutputStream(json.length);
+
+        final int compressed = compress().length;
+        System.out.printf("%n%s with %s: %d bytes compressed to %d bytes (%.1f%% saved)%n", listing, compression,
+                          json.length, compressed, 100.0 * (json.length - compressed) / json.length);
+    }
+
+    /**
+     * Read a seed file.
+     *
+     * @param path The path of the file.
+     * @return The content of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private static String read(Path path) throws IOException {
+        return Files.readString(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compress the listing, as done for a response.
+     *
+     * @return The compressed listing.
+     * @throws IOException If the listing cannot be compressed.
+     */
+    @Benchmark
+    public byte[] compress() throws IOException {
+        output.reset();
+        try (OutputStream stream = compressor.compress(output)) {
+            stream.write(json);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,165 @@
+package ch.heig.dai.lab.http.api.benchmarks;
+
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.BlogController;
+import ch.heig.dai.lab.http.api.blog.BlogRepository;
+import ch.heig.dai.lab.http.api.blog.BlogService;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import ch.heig.dai.lab.http.api.comment.CommentController;
+import ch.heig.dai.lab.http.api.comment.CommentRepository;
+import ch.heig.dai.lab.http.api.comment.CommentService;
+import ch.heig.dai.lab.http.api.memory.MemoryBlogRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryCommentRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryStore;
+import ch.heig.dai.lab.http.api.search.SearchIndex;
+import io.javalin.Javalin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.javalin.apibuilder.ApiBuilder.crud;
+
+/**
+ * Requests served by the controllers through an embedded server, with the services backed by the in-memory storage
+ * engine. The figures cover the HTTP stack, the routing, the controllers, the services and the JSON serialization, but
+ * not the database.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+    /**
+     * The embedded server.
+     */
+    private Javalin app;
+
+    /**
+     * The HTTP client.
+     */
+    private HttpClient client;
+
+    /**
+     * The request of a blog by ID.
+     */
+    private HttpRequest blogRequest;
+
+    /**
+     * The request of the first page of blogs.
+     */
+    private HttpRequest pageRequest;
+
+    /**
+     * The request of the comments of a blog.
+     */
+    private HttpRequest commentsRequest;
+
+    /**
+     * The request of a comment by ID.
+     */
+    private HttpRequest commentRequest;
+
+    /**
+     * Start the server, with the routes of the API, on 1000 blogs of 20 comments each.
+     */
+    @Setup
+    public void setUp() {
+        final List<Blog> blogs = Fixtures.blogs(1000);
+        final Blog blog = blogs.get(0);
+        final List<Comment> comments = Fixtures.comments(blog._id(), 20);
+        final MemoryStore store = new MemoryStore();
+        final BlogRepository blogRepository = new MemoryBlogRepository(store);
+        final CommentRepository commentRepository = new MemoryCommentRepository(store);
+        blogs.forEach(blogRepository::insert);
+        comments.forEach(commentRepository::insert);
+        final SearchIndex searchIndex = new SearchIndex(blogRepository, commentRepository);
+        final CommentService commentService = new CommentService(commentRepository, searchIndex);
+        final BlogService blogService = new BlogService(blogRepository, commentService, searchIndex);
+
+        app = Javalin.create(config -> config.showJavalinBanner = false).routes(() -> {
+            crud("api/blogs/{blogId}", new BlogController(blogService));
+            crud("api/blogs/{blogId}/comments/{commentId}", new CommentController(commentService, blogService));
+        }).start(0);
+
+        final String baseUrl = "http://localhost:" + app.port() + "/api/blogs";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        blogRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/" + blog._id())).build();
+        pageRequest = HttpRequest.newBuilder(URI.create(baseUrl + "?limit=50")).build();
+        commentsRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/" + blog._id() + "/comments")).build();
+        commentRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/" + blog._id() + "/comments/" +
+                                                          comments.get(0)._id())).build();
+    }
+
+    /**
+     * Stop the server.
+     */
+    @TearDown
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Send a request and check that it succeeded.
+     *
+     * @param request The request.
+     * @return The body of the response.
+     */
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    /**
+     * Get a blog by ID.
+     *
+     * @return The body of the response.
+     */
+    @Benchmark
+    public String getBlog() throws IOException, InterruptedException {
+        return send(blogRequest);
+    }
+
+    /**
+     * Get a page of 50 blogs.
+     *
+     * @return The body of the response.
+     */
+    @Benchmark
+    public String getBlogs() throws IOException, InterruptedException {
+        return send(pageRequest);
+    }
+
+    /**
+     * Get the comments of a blog.
+     *
+     * @return The body of the response.
+     */
+    @Benchmark
+    public String getComments() throws IOException, InterruptedException {
+        return send(commentsRequest);
+    }
+
+    /**
+     * Get a comment by ID, which also looks up its blog.
+     *
+     * @return The body of the response.
+     */
+    @Benchmark
+    public String getComment() throws IOException, InterruptedException {
+        return send(commentRequest);
+    }
+}
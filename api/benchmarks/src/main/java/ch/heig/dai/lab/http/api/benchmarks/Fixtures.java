@@ -0,0 +1,78 @@
+package ch.heig.dai.lab.http.api.benchmarks;
+
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.comment.Comment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sample documents used by the benchmarks, shaped like the seed data of the database.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class Fixtures {
+    /**
+     * Utility class, not instantiable.
+     */
+    private Fixtures() {
+    }
+
+    /**
+     * Build a blog.
+     *
+     * @param index The index of the blog, used to vary its content.
+     * @return The blog.
+     */
+    public static Blog blog(int index) {
+        final String now = LocalDateTime.now().toString();
+        return new Blog(UUID.randomUUID().toString(), "Blog " + index,
+                        "Lorem ipsum dolor sit amet, consectetur adipiscing elit. ".repeat(20) + index, now, now);
+    }
+
+    /**
+     * Build a comment.
+     *
+     * @param blogId The ID of the blog of the comment.
+     * @param index  The index of the comment, used to vary its content.
+     * @return The comment.
+     */
+    public static Comment comment(String blogId, int index) {
+        final String now = LocalDateTime.now().toString();
+        return new Comment(UUID.randomUUID().toString(), blogId, "Author " + index,
+                           "Sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. ".repeat(3) + index,
+                           now, now);
+    }
+
+    /**
+     * Build several blogs.
+     *
+     * @param count The number of blogs.
+     * @return The blogs.
+     */
+    public static List<Blog> blogs(int count) {
+        final List<Blog> blogs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            blogs.add(blog(i));
+        }
+        return blogs;
+    }
+
+    /**
+     * Build several comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @param count  The number of comments.
+     * @return The comments.
+     */
+    public static List<Comment> comments(String blogId, int count) {
+        final List<Comment> comments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            comments.add(comment(blogId, i));
+        }
+        return comments;
+    }
+}
@@ -0,0 +1,160 @@
+package ch.heig.dai.lab.http.api.benchmarks;
+
+import ch.heig.dai.lab.http.api.RawJson;
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.BlogCodec;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import io.javalin.json.JavalinJackson;
+import org.bson.RawBsonDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the documents with the Jackson mapper used by Javalin for the request and response bodies.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+    /**
+     * The mapper, configured as in the API.
+     */
+    private final JavalinJackson mapper = new JavalinJackson();
+
+    /**
+     * The codec of the blogs.
+     */
+    private final BlogCodec blogCodec = new BlogCodec();
+
+    /**
+     * The serialized blog.
+     */
+    private Blog blog;
+
+    /**
+     * The serialized comment.
+     */
+    private Comment comment;
+
+    /**
+     * A full page of blogs, as returned by the listing.
+     */
+    private List<Blog> page;
+
+    /**
+     * The same page of blogs, as raw documents read from the database.
+     */
+    private List<RawBsonDocument> rawPage;
+
+    /**
+     * The JSON of the blog.
+     */
+    private String blogJson;
+
+    /**
+     * The JSON of the comment.
+     */
+    private String commentJson;
+
+    /**
+     * Build the documents and their JSON.
+     */
+    @Setup
+    public void setUp() {
+        blog = Fixtures.blog(0);
+        comment = Fixtures.comment(blog._id(), 0);
+        page = Fixtures.blogs(50);
+        rawPage = page.stream().map(blog -> new RawBsonDocument(blog, blogCodec)).toList();
+        blogJson = mapper.toJsonString(blog, Blog.class);
+        commentJson = mapper.toJsonString(comment, Comment.class);
+    }
+
+    /**
+     * Serialize a blog.
+     *
+     * @return The JSON.
+     */
+    @Benchmark
+    public String serializeBlog() {
+        return mapper.toJsonString(blog, Blog.class);
+    }
+
+    /**
+     * Deserialize a blog, as done for the request bodies.
+     *
+     * @return The blog.
+     */
+    @Benchmark
+    public Blog deserializeBlog() {
+        return mapper.fromJsonString(blogJson, Blog.class);
+    }
+
+    /**
+     * Serialize a comment.
+     *
+     * @return The JSON.
+     */
+    @Benchmark
+    public String serializeComment() {
+        return mapper.toJsonString(comment, Comment.class);
+    }
+
+    /**
+     * Deserialize a comment, as done for the request bodies.
+     *
+     * @return The comment.
+     */
+    @Benchmark
+    public Comment deserializeComment() {
+        return mapper.fromJsonString(commentJson, Comment.class);
+    }
+
+    /**
+     * Serialize a page of 50 blogs.
+     *
+     * @return The JSON.
+     */
+    @Benchmark
+    public String serializePage() {
+        return mapper.toJsonString(page, List.class);
+    }
+
+    /**
+     * Decode a page of 50 raw blogs and serialize it, as done by the listings before the raw passthrough.
+     *
+     * @return The UTF-8 bytes of the JSON.
+     */
+    @Benchmark
+    public byte[] decodeAndSerializePage() {
+        final List<Blog> blogs = new ArrayList<>(rawPage.size());
+        for (RawBsonDocument document : rawPage) {
+            blogs.add(document.decode(blogCodec));
+        }
+        // Context.json serializes to a string, which is then encoded in the response
+        return mapper.toJsonString(blogs, List.class).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Transcode a page of 50 raw blogs to JSON, as done by the listings.
+     *
+     * @return The UTF-8 bytes of the JSON.
+     */
+    @Benchmark
+    public byte[] transcodePage() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+        RawJson.write(output, rawPage);
+        return output.toByteArray();
+    }
+}
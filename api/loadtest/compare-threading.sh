@@ -0,0 +1,29 @@
+#!/usr/bin/env bash
+# Compare the API running on virtual threads and on platform threads under the same load.
+#
+# The script restarts the api service of the docker compose stack in each mode, runs the k6 load test against it and
+# prints the throughput and latency of both runs. It must be run from the root of the repository, with the stack
+# already up and k6 installed.
+set -euo pipefail
+
+BASE_URL=${BASE_URL:-https://api.traefik.me}
+VUS=${VUS:-1000}
+DURATION=${DURATION:-60s}
+RESULTS=api/loadtest/results
+mkdir -p "$RESULTS"
+
+for mode in virtual platform; do
+    if [ "$mode" = virtual ]; then virtual=true; else virtual=false; fi
+    API_VIRTUAL_THREADS=$virtual docker compose up -d --no-deps --force-recreate api
+    # Let Traefik pick up the new containers and warm up the JVMs
+    sleep 15
+    k6 run --quiet -e BASE_URL="$BASE_URL" -e VUS="$VUS" -e DURATION="$DURATION" \
+        --summary-export "$RESULTS/$mode.json" api/loadtest/load-test.js
+done
+
+printf '| %-8s | %12s | %10s | %10s | %10s |\n' mode "req/s" "p50 (ms)" "p99 (ms)" "errors"
+printf '|----------|--------------|------------|------------|------------|\n'
+for mode in virtual platform; do
+    jq -r --arg mode "$mode" '"| \($mode) | \(.metrics.http_reqs.rate | floor) | \(.metrics.http_req_duration.med | . * 100 | floor / 100) | \(.metrics.http_req_duration["p(99)"] | . * 100 | floor / 100) | \(.metrics.http_req_failed.value * 100 | floor)% |"' \
+        "$RESULTS/$mode.json"
+done
@@ -0,0 +1,37 @@
+// k6 load test of the read endpoints of the API.
+//
+// Usage: k6 run -e BASE_URL=https://api.traefik.me -e VUS=1000 -e DURATION=60s load-test.js
+import http from "k6/http";
+import { check } from "k6";
+
+const BASE_URL = __ENV.BASE_URL || "https://api.traefik.me";
+
+export const options = {
+    insecureSkipTLSVerify: true,
+    discardResponseBodies: false,
+    summaryTrendStats: ["avg", "med", "p(90)", "p(99)", "max"],
+    scenarios: {
+        readers: {
+            executor: "constant-vus",
+            vus: Number(__ENV.VUS || 1000),
+            duration: __ENV.DURATION || "60s",
+        },
+    },
+};
+
+// Fetch the IDs of the seeded blogs once, before the virtual users start.
+export function setup() {
+    const response = http.get(`${BASE_URL}/api/blogs`);
+    check(response, { "blogs listed": (r) => r.status === 200 });
+    return { ids: response.json().map((blog) => blog._id) };
+}
+
+export default function (data) {
+    const id = data.ids[Math.floor(Math.random() * data.ids.length)];
+    const responses = http.batch([
+        ["GET", `${BASE_URL}/api/blogs`, null, { tags: { route: "blogs" } }],
+        ["GET", `${BASE_URL}/api/blogs/${id}`, null, { tags: { route: "blog" } }],
+        ["GET", `${BASE_URL}/api/blogs/${id}/comments`, null, { tags: { route: "comments" } }],
+    ]);
+    responses.forEach((response) => check(response, { "not a server error": (r) => r.status < 500 }));
+}
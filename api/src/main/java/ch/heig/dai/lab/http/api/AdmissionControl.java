@@ -0,0 +1,342 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.metrics.MongoMetrics;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.ServiceUnavailableResponse;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control of the requests: the number of requests handled at once is bounded by an adaptive limit, and the
+ * requests above it are rejected right away with a {@code 503} and a {@code Retry-After} header, instead of piling up
+ * behind a slow database until they time out.
+ * <p>
+ * The limit follows the saturation of the MongoDB connection pools, measured at each window by the mean time the
+ * requests for a connection waited. When the wait exceeds its target, or when a request for a connection timed out,
+ * the limit decreases in proportion to the excess of wait, by half at most. Otherwise, the limit increases by one if
+ * the requests came close to it during the window, so it only grows when there is demand for it (additive increase,
+ * multiplicative decrease).
+ * <p>
+ * The writes may only use a share of the limit, and the rest is kept for the reads: under pressure, the writes are
+ * rejected first and the reads, which are also served by the caches, keep being answered.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class AdmissionControl {
+    /**
+     * Default limit of the requests handled at once, at startup.
+     */
+    public static final int DEFAULT_INITIAL_LIMIT = 100;
+
+    /**
+     * Default lowest limit.
+     */
+    public static final int DEFAULT_MIN_LIMIT = 10;
+
+    /**
+     * Default highest limit.
+     */
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+
+    /**
+     * Default target of the mean wait for a connection of the pools, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_POOL_WAIT_MS = 10;
+
+    /**
+     * Default share of the limit that the writes may use, in percent.
+     */
+    public static final int DEFAULT_WRITE_PERCENT = 80;
+
+    /**
+     * Default interval between two adjustments of the limit, in milliseconds.
+     */
+    public static final long DEFAULT_WINDOW_MS = 100;
+
+    /**
+     * Number of seconds after which a rejected client may retry.
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * Name of the request attribute marking the admitted requests.
+     */
+    private static final String ADMITTED_ATTRIBUTE = AdmissionControl.class.getName() + ".admitted";
+
+    /**
+     * The metrics of the MongoDB connection pools.
+     */
+    private final MongoMetrics mongoMetrics;
+
+    /**
+     * The paths of the requests that are always admitted and not counted, e.g. the long-lived event streams.
+     */
+    private final Set<String> exemptPaths;
+
+    /**
+     * The lowest limit.
+     */
+    private final int minLimit;
+
+    /**
+     * The highest limit.
+     */
+    private final int maxLimit;
+
+    /**
+     * The target of the mean wait for a connection of the pools, in nanoseconds.
+     */
+    private final long maxPoolWaitNanos;
+
+    /**
+     * The share of the limit that the writes may use, in percent.
+     */
+    private final int writePercent;
+
+    /**
+     * The number of admitted requests being handled.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * The highest number of admitted requests handled at once during the current window.
+     */
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    /**
+     * The number of rejected reads.
+     */
+    private final LongAdder rejectedReads = new LongAdder();
+
+    /**
+     * The number of rejected writes.
+     */
+    private final LongAdder rejectedWrites = new LongAdder();
+
+    /**
+     * Lock of the adjustments of the limit and of the counters of the previous window.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The limit of the requests handled at once. Read on every request and written by the adjustments only.
+     */
+    private volatile double limit;
+
+    /**
+     * The number of requests for a connection at the end of the previous window.
+     */
+    private long lastCheckOuts;
+
+    /**
+     * The total wait for a connection at the end of the previous window, in nanoseconds.
+     */
+    private long lastCheckOutWaitNanos;
+
+    /**
+     * The number of failed requests for a connection at the end of the previous window.
+     */
+    private long lastCheckOutFailures;
+
+    /**
+     * Constructor. The limit is only adjusted by {@link #adjust()}, see {@link #start(Duration)}.
+     *
+     * @param mongoMetrics The metrics of the MongoDB connection pools.
+     * @param exemptPaths  The paths of the requests that are always admitted and not counted.
+     * @param initialLimit The limit at startup.
+     * @param minLimit     The lowest limit.
+     * @param maxLimit     The highest limit.
+     * @param maxPoolWait  The target of the mean wait for a connection of the pools.
+     * @param writePercent The share of the limit that the writes may use, in percent.
+     * @throws IllegalArgumentException If the limits are not positive and ordered, or the share is not a percentage.
+     */
+    public AdmissionControl(MongoMetrics mongoMetrics, Set<String> exemptPaths, int initialLimit, int minLimit,
+                            int maxLimit, Duration maxPoolWait, int writePercent) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("The admission limits must be positive, with min <= initial <= max");
+        } else if (writePercent < 1 || writePercent > 100) {
+            throw new IllegalArgumentException("The share of the writes must be between 1 and 100 percent");
+        }
+        this.mongoMetrics = mongoMetrics;
+        this.exemptPaths = Set.copyOf(exemptPaths);
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxPoolWaitNanos = maxPoolWait.toNanos();
+        this.writePercent = writePercent;
+        this.lastCheckOuts = mongoMetrics.getCheckOuts();
+        this.lastCheckOutWaitNanos = mongoMetrics.getCheckOutWaitNanos();
+        this.lastCheckOutFailures = mongoMetrics.getCheckOutFailures();
+    }
+
+    /**
+     * Create an admission control configured by the {@code ADMISSION_*} environment variables, and start adjusting its
+     * limit every {@code ADMISSION_WINDOW_MS} milliseconds.
+     *
+     * @param mongoMetrics The metrics of the MongoDB connection pools.
+     * @param exemptPaths  The paths of the requests that are always admitted and not counted.
+     * @return The admission control.
+     * @throws IllegalArgumentException If a variable has an invalid value.
+     */
+    public static AdmissionControl fromEnv(MongoMetrics mongoMetrics, Set<String> exemptPaths) {
+        final AdmissionControl admissionControl = new AdmissionControl(
+                mongoMetrics, exemptPaths,
+                Env.getInt("ADMISSION_INITIAL_LIMIT", DEFAULT_INITIAL_LIMIT),
+                Env.getInt("ADMISSION_MIN_LIMIT", DEFAULT_MIN_LIMIT),
+                Env.getInt("ADMISSION_MAX_LIMIT", DEFAULT_MAX_LIMIT),
+                Duration.ofMillis(Env.getLong("ADMISSION_MAX_POOL_WAIT_MS", DEFAULT_MAX_POOL_WAIT_MS)),
+                Env.getInt("ADMISSION_WRITE_PERCENT", DEFAULT_WRITE_PERCENT));
+        admissionControl.start(Duration.ofMillis(Env.getLong("ADMISSION_WINDOW_MS", DEFAULT_WINDOW_MS)));
+        return admissionControl;
+    }
+
+    /**
+     * Start adjusting the limit at a fixed interval, on a daemon thread.
+     *
+     * @param window The interval between two adjustments.
+     */
+    public void start(Duration window) {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                runnable -> Thread.ofPlatform().daemon().name("admission-control").unstarted(runnable));
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                adjust();
+            } catch (RuntimeException e) {
+                System.err.println("Error: cannot adjust the admission limit: " + e.getMessage());
+            }
+        }, window.toNanos(), window.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Admit a request, or reject it with a {@code 503} if the requests of its kind reached their limit. Must be
+     * registered as a before handler.
+     *
+     * @param ctx The Javalin context.
+     * @throws ServiceUnavailableResponse If the request is rejected.
+     */
+    public void before(Context ctx) {
+        if (ctx.method() == HandlerType.OPTIONS || exemptPaths.contains(ctx.path())) {
+            return;
+        }
+        final boolean write = isWrite(ctx.method());
+        final int admitted = inFlight.incrementAndGet();
+        if (admitted > limitOf(write)) {
+            inFlight.decrementAndGet();
+            (write ? rejectedWrites : rejectedReads).increment();
+            ctx.header("Retry-After", RETRY_AFTER_SECONDS);
+            throw new ServiceUnavailableResponse("Service overloaded");
+        }
+        peakInFlight.accumulateAndGet(admitted, Math::max);
+        ctx.attribute(ADMITTED_ATTRIBUTE, true);
+    }
+
+    /**
+     * Release the slot of an admitted request. Must be registered as an after handler, which Javalin runs once the
+     * response is complete, including for the requests that failed with an exception.
+     *
+     * @param ctx The Javalin context.
+     */
+    public void after(Context ctx) {
+        final Boolean admitted = ctx.attribute(ADMITTED_ATTRIBUTE);
+        if (admitted != null && admitted) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Check whether a request writes, and only gets the share of the limit of the writes.
+     *
+     * @param method The HTTP method of the request.
+     * @return True for the writes.
+     */
+    private static boolean isWrite(HandlerType method) {
+        return method != HandlerType.GET && method != HandlerType.HEAD;
+    }
+
+    /**
+     * Get the number of requests of a kind that may be handled at once.
+     *
+     * @param write Whether the requests are writes.
+     * @return The number of requests, at least one.
+     */
+    private int limitOf(boolean write) {
+        final double current = limit;
+        return (int) Math.max(1, write ? current * writePercent / 100 : current);
+    }
+
+    /**
+     * Adjust the limit to the saturation of the connection pools since the previous adjustment.
+     */
+    void adjust() {
+        lock.lock();
+        try {
+            final long checkOuts = mongoMetrics.getCheckOuts();
+            final long checkOutWaitNanos = mongoMetrics.getCheckOutWaitNanos();
+            final long checkOutFailures = mongoMetrics.getCheckOutFailures();
+            final long windowCheckOuts = checkOuts - lastCheckOuts;
+            final long windowWaitNanos = checkOutWaitNanos - lastCheckOutWaitNanos;
+            final double meanWaitNanos = windowCheckOuts <= 0 ? 0 : (double) windowWaitNanos / windowCheckOuts;
+            final boolean failed = checkOutFailures > lastCheckOutFailures;
+            lastCheckOuts = checkOuts;
+            lastCheckOutWaitNanos = checkOutWaitNanos;
+            lastCheckOutFailures = checkOutFailures;
+            final int peak = peakInFlight.getAndSet(inFlight.get());
+
+            final double current = limit;
+            if (failed || meanWaitNanos > maxPoolWaitNanos) {
+                // The further the wait is above its target, the more the limit decreases, by half at most
+                final double gradient = failed ? 0.5 : Math.max(0.5, maxPoolWaitNanos / meanWaitNanos);
+                limit = Math.max(minLimit, current * gradient);
+            } else if (peak >= limitOf(true)) {
+                limit = Math.min(maxLimit, current + 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the limit of the requests handled at once.
+     *
+     * @return The limit.
+     */
+    public long getLimit() {
+        return (long) limit;
+    }
+
+    /**
+     * Get the number of admitted requests being handled.
+     *
+     * @return The number of requests.
+     */
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Get the number of rejected reads.
+     *
+     * @return The number of reads.
+     */
+    public long getRejectedReads() {
+        return rejectedReads.sum();
+    }
+
+    /**
+     * Get the number of rejected writes.
+     *
+     * @return The number of writes.
+     */
+    public long getRejectedWrites() {
+        return rejectedWrites.sum();
+    }
+}
@@ -0,0 +1,496 @@
+package ch.heig.dai.lab.http.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+import io.javalin.json.JavalinJackson;
+import io.javalin.json.JsonMapperKt;
+import org.bson.conversions.Bson;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Helpers for the bulk endpoints.
+ * <p>
+ * A bulk request is either a JSON array of operations or, with the {@code application/x-ndjson} content type, one
+ * operation per line. The operations are applied by the repository in a single unordered bulk write, so a failing
+ * operation does not prevent the others from being applied, and the response holds the outcome of every operation. An
+ * update or a deletion of a document that does not exist when the write is applied fails as not found.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class Bulk {
+    /**
+     * Maximum number of operations of a bulk request.
+     */
+    public static final int MAX_OPERATIONS = 10_000;
+
+    /**
+     * Content type of newline delimited JSON bodies.
+     */
+    public static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * MongoDB error code of a duplicate key.
+     */
+    private static final int DUPLICATE_KEY = 11000;
+
+    /**
+     * The options of the transactions of the bulk writes. The commit waits for a majority of the replica set, so that
+     * the writes cannot be rolled back by a failover once reported.
+     */
+    private static final TransactionOptions TRANSACTION = TransactionOptions.builder()
+                                                                            .writeConcern(WriteConcern.MAJORITY)
+                                                                            .build();
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private Bulk() {
+    }
+
+    /**
+     * Read the operations of a bulk request. The body is parsed while it is read, one operation at a time, so that a
+     * request with too many operations is rejected without reading it whole.
+     *
+     * @param ctx  The Javalin context.
+     * @param type The type of the documents.
+     * @param <T>  The type of the documents.
+     * @return The operations.
+     */
+    public static <T> List<BulkOperation<T>> parse(Context ctx, Class<T> type) {
+        final ObjectReader reader = objectMapper(ctx).readerFor(
+                TypeFactory.defaultInstance().constructParametricType(BulkOperation.class, type));
+        final List<BulkOperation<T>> operations = new ArrayList<>();
+        try {
+            if (ctx.contentType() != null && ctx.contentType().startsWith(NDJSON)) {
+                try (BufferedReader lines = new BufferedReader(new InputStreamReader(ctx.bodyInputStream(),
+                                                                                     StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = lines.readLine()) != null) {
+                        if (!line.isBlank()) {
+                            operations.add(operationOf(reader.readValue(line)));
+                            checkSize(operations.size());
+                        }
+                    }
+                }
+            } else {
+                try (JsonParser parser = reader.createParser(ctx.bodyInputStream())) {
+                    if (parser.nextToken() != JsonToken.START_ARRAY) {
+                        throw new BadRequestResponse("Invalid bulk request");
+                    }
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        operations.add(operationOf(reader.readValue(parser)));
+                        checkSize(operations.size());
+                    }
+                    if (parser.nextToken() != null) {
+                        throw new BadRequestResponse("Invalid bulk request");
+                    }
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestResponse("Invalid bulk request");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            if (e instanceof BadRequestResponse) {
+                throw e;
+            }
+            throw new BadRequestResponse("Invalid bulk request");
+        }
+        if (operations.isEmpty()) {
+            throw new BadRequestResponse("Empty bulk request");
+        }
+        return operations;
+    }
+
+    /**
+     * Read a null operation as an empty one, so that it is rejected with the other invalid operations instead of
+     * failing the whole request.
+     *
+     * @param operation The operation read, or null.
+     * @param <T>       The type of the documents.
+     * @return The operation.
+     */
+    private static <T> BulkOperation<T> operationOf(BulkOperation<T> operation) {
+        return operation == null ? new BulkOperation<>(null, null, null) : operation;
+    }
+
+    /**
+     * Find the IDs targeted by several updates or deletions of a bulk request. As the writes are unordered, the outcome
+     * of several writes of a same document is undefined, so they are all rejected.
+     *
+     * @param operations The operations.
+     * @return The IDs of the documents of several updates or deletions.
+     */
+    public static Set<String> duplicateIds(List<? extends BulkOperation<?>> operations) {
+        final Set<String> ids = new HashSet<>();
+        final Set<String> duplicates = new HashSet<>();
+        for (BulkOperation<?> operation : operations) {
+            if (!BulkOperation.CREATE.equals(operation.operation()) && operation.id() != null
+                && !ids.add(operation.id())) {
+                duplicates.add(operation.id());
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Get the Jackson mapper of the JSON mapper of the application, or a default one if the application does not use
+     * Jackson.
+     *
+     * @param ctx The Javalin context.
+     * @return The mapper.
+     */
+    private static ObjectMapper objectMapper(Context ctx) {
+        return JsonMapperKt.jsonMapper(ctx) instanceof JavalinJackson jackson ? jackson.getMapper()
+                                                                             : JavalinJackson.defaultMapper();
+    }
+
+    /**
+     * Check that a bulk request is not too large.
+     *
+     * @param size The number of operations.
+     */
+    private static void checkSize(int size) {
+        if (size > MAX_OPERATIONS) {
+            throw new BadRequestResponse("Too many operations, the maximum is " + MAX_OPERATIONS);
+        }
+    }
+
+    /**
+     * Apply the writes of a bulk request to a MongoDB collection, the updates and the deletions of documents that do
+     * not exist failing as not found.
+     * <p>
+     * On a replica set, the documents to update or delete are looked up and the writes applied in a single unordered
+     * bulk write within one transaction: a document deleted concurrently makes the transaction conflict and retry, so
+     * no write is reported as applied without matching its document. A write error aborts the transaction, and the
+     * other writes then fail as not applied. A standalone server does not support the transactions: the insertions
+     * are then applied in a single unordered bulk write, and the updates and deletions one by one, each reporting
+     * whether it matched its document.
+     *
+     * @param client     The client of the database of the collection, starting the sessions of the transactions.
+     * @param collection The collection.
+     * @param writes     The writes.
+     * @param filterOf   The filter of the documents of some IDs.
+     * @param updateOf   The update of a document to the values of the document of a write.
+     * @param notFound   The reason of the failure of a write whose document does not exist.
+     * @param <T>        The type of the documents.
+     * @return The failed writes.
+     */
+    public static <T> List<WriteError> apply(MongoClient client, MongoCollection<T> collection, List<Write<T>> writes,
+                                             Function<Collection<String>, Bson> filterOf,
+                                             Function<T, Bson> updateOf, String notFound) {
+        if (!MongoConfig.supportsTransactions(client.getClusterDescription())) {
+            return applyOneByOne(collection, writes, filterOf, updateOf, notFound);
+        }
+        final List<String> ids = writes.stream().filter(write -> write.type() != WriteType.INSERT).map(Write::id)
+                                       .toList();
+        try (ClientSession session = client.startSession()) {
+            // The transaction body is retried on transient errors, such as a write conflict or a failover
+            return session.withTransaction(() -> {
+                final Set<String> existing = ids.isEmpty() ? Set.of()
+                                                           : collection.distinct(session, "_id", filterOf.apply(ids),
+                                                                                 String.class)
+                                                                       .into(new HashSet<>());
+                final List<WriteError> errors = new ArrayList<>();
+                final List<WriteModel<T>> models = new ArrayList<>(writes.size());
+                final List<Integer> positions = new ArrayList<>(writes.size());
+                for (int position = 0; position < writes.size(); position++) {
+                    final Write<T> write = writes.get(position);
+                    if (write.type() != WriteType.INSERT && !existing.contains(write.id())) {
+                        errors.add(new WriteError(position, 404, notFound));
+                    } else {
+                        models.add(modelOf(write, filterOf, updateOf));
+                        positions.add(position);
+                    }
+                }
+                if (!models.isEmpty()) {
+                    try {
+                        collection.bulkWrite(session, models, new BulkWriteOptions().ordered(false));
+                    } catch (MongoBulkWriteException e) {
+                        throw new AbortedBulkWrite(abortedErrors(errors, errors(e), positions));
+                    }
+                }
+                return errors;
+            }, TRANSACTION);
+        } catch (AbortedBulkWrite e) {
+            return e.errors;
+        }
+    }
+
+    /**
+     * Apply the writes of a bulk request without a transaction: the insertions in a single unordered bulk write, and
+     * the updates and deletions one by one.
+     *
+     * @param collection The collection.
+     * @param writes     The writes.
+     * @param filterOf   The filter of the documents of some IDs.
+     * @param updateOf   The update of a document to the values of the document of a write.
+     * @param notFound   The reason of the failure of a write whose document does not exist.
+     * @param <T>        The type of the documents.
+     * @return The failed writes.
+     */
+    private static <T> List<WriteError> applyOneByOne(MongoCollection<T> collection, List<Write<T>> writes,
+                                                      Function<Collection<String>, Bson> filterOf,
+                                                      Function<T, Bson> updateOf, String notFound) {
+        final List<WriteError> errors = new ArrayList<>();
+        final List<WriteModel<T>> inserts = new ArrayList<>();
+        final List<Integer> positions = new ArrayList<>();
+        for (int position = 0; position < writes.size(); position++) {
+            final Write<T> write = writes.get(position);
+            final boolean matched = switch (write.type()) {
+                case INSERT -> {
+                    inserts.add(modelOf(write, filterOf, updateOf));
+                    positions.add(position);
+                    yield true;
+                }
+                case UPDATE -> collection.updateOne(filterOf.apply(List.of(write.id())), updateOf.apply(
+                        write.document())).getMatchedCount() > 0;
+                case DELETE -> collection.deleteOne(filterOf.apply(List.of(write.id()))).getDeletedCount() > 0;
+            };
+            if (!matched) {
+                errors.add(new WriteError(position, 404, notFound));
+            }
+        }
+        if (!inserts.isEmpty()) {
+            try {
+                collection.bulkWrite(inserts, new BulkWriteOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                for (WriteError error : errors(e)) {
+                    errors.add(new WriteError(positions.get(error.write()), error.status(), error.message()));
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Build the model of a write of a bulk request.
+     *
+     * @param write    The write.
+     * @param filterOf The filter of the documents of some IDs.
+     * @param updateOf The update of a document to the values of the document of a write.
+     * @param <T>      The type of the documents.
+     * @return The model.
+     */
+    private static <T> WriteModel<T> modelOf(Write<T> write, Function<Collection<String>, Bson> filterOf,
+                                             Function<T, Bson> updateOf) {
+        return switch (write.type()) {
+            case INSERT -> new InsertOneModel<>(write.document());
+            case UPDATE -> new UpdateOneModel<>(filterOf.apply(List.of(write.id())), updateOf.apply(write.document()));
+            case DELETE -> new DeleteOneModel<>(filterOf.apply(List.of(write.id())));
+        };
+    }
+
+    /**
+     * Build the errors of the writes of an aborted transaction: the writes of the bulk write fail with their own error,
+     * or as not applied.
+     *
+     * @param notFound  The errors of the writes whose document does not exist.
+     * @param failed    The errors of the bulk write, by position of the write in the bulk write.
+     * @param positions The position of each write of the bulk write among the writes of the request.
+     * @return The errors of all the writes.
+     */
+    private static List<WriteError> abortedErrors(List<WriteError> notFound, List<WriteError> failed,
+                                                  List<Integer> positions) {
+        final List<WriteError> errors = new ArrayList<>(notFound);
+        final WriteError[] byWrite = new WriteError[positions.size()];
+        for (WriteError error : failed) {
+            byWrite[error.write()] = error;
+        }
+        for (int write = 0; write < positions.size(); write++) {
+            errors.add(byWrite[write] != null
+                       ? new WriteError(positions.get(write), byWrite[write].status(), byWrite[write].message())
+                       : new WriteError(positions.get(write), 409, "Not applied, another operation failed"));
+        }
+        return errors;
+    }
+
+    /**
+     * Convert the errors of a MongoDB bulk write to the errors of its writes.
+     *
+     * @param e The exception of the bulk write.
+     * @return The errors, by position of the write in the bulk write.
+     */
+    public static List<WriteError> errors(MongoBulkWriteException e) {
+        final List<WriteError> errors = new ArrayList<>(e.getWriteErrors().size());
+        for (BulkWriteError error : e.getWriteErrors()) {
+            errors.add(new WriteError(error.getIndex(), error.getCode() == DUPLICATE_KEY ? 409 : 500,
+                                      error.getMessage()));
+        }
+        return errors;
+    }
+
+    /**
+     * The abort of the transaction of a bulk write by a write error, carrying the errors of the writes out of the
+     * transaction body.
+     *
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private static final class AbortedBulkWrite extends RuntimeException {
+        /**
+         * Version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The errors of the writes.
+         */
+        private final transient List<WriteError> errors;
+
+        /**
+         * Constructor.
+         *
+         * @param errors The errors of the writes.
+         */
+        private AbortedBulkWrite(List<WriteError> errors) {
+            super(null, null, false, false);
+            this.errors = errors;
+        }
+    }
+
+    /**
+     * The type of a write of a bulk request.
+     *
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public enum WriteType {
+        /**
+         * Insertion of a new document.
+         */
+        INSERT,
+
+        /**
+         * Update of the fields of the API of a document.
+         */
+        UPDATE,
+
+        /**
+         * Deletion of a document.
+         */
+        DELETE
+    }
+
+    /**
+     * A write of a bulk request, applied by a repository.
+     *
+     * @param type     The type of the write.
+     * @param id       The ID of the document.
+     * @param document The document to insert, or the document holding the new values of the fields to update, or null
+     *                 for a deletion.
+     * @param <T>      The type of the documents.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public record Write<T>(WriteType type, String id, T document) {
+    }
+
+    /**
+     * The failure of a write of a bulk request.
+     *
+     * @param write   The position of the write in the bulk write.
+     * @param status  The HTTP status of the failure.
+     * @param message The reason of the failure.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public record WriteError(int write, int status, String message) {
+    }
+
+    /**
+     * The writes of a bulk request, applied by a repository in a single unordered bulk write.
+     *
+     * @param <T> The type of the documents.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public static class Batch<T> {
+        /**
+         * The writes.
+         */
+        private final List<Write<T>> writes = new ArrayList<>();
+
+        /**
+         * The position in the request of the operation of each write.
+         */
+        private final List<Integer> indexes = new ArrayList<>();
+
+        /**
+         * The status of each write when it succeeds.
+         */
+        private final List<Integer> statuses = new ArrayList<>();
+
+        /**
+         * Add a write to the batch.
+         *
+         * @param index  The position of the operation in the request.
+         * @param status The status of the operation when it succeeds.
+         * @param write  The write.
+         */
+        public void add(int index, int status, Write<T> write) {
+            writes.add(write);
+            indexes.add(index);
+            statuses.add(status);
+        }
+
+        /**
+         * Run the batch and record the outcome of each of its writes.
+         *
+         * @param writer  The function applying the writes, in a single unordered bulk write, and returning the failed
+         *                ones, including the updates and deletions of documents that do not exist.
+         * @param results The results of the request by position, where the outcomes are recorded.
+         * @return The writes that succeeded.
+         */
+        public List<Write<T>> execute(Function<List<Write<T>>, List<WriteError>> writer, BulkItemResult[] results) {
+            final boolean[] failed = new boolean[writes.size()];
+            if (!writes.isEmpty()) {
+                for (WriteError error : writer.apply(writes)) {
+                    final int index = indexes.get(error.write());
+                    failed[error.write()] = true;
+                    results[index] = BulkItemResult.failure(index, error.status(), writes.get(error.write()).id(),
+                                                            error.message());
+                }
+            }
+            final List<Write<T>> succeeded = new ArrayList<>(writes.size());
+            for (int write = 0; write < writes.size(); write++) {
+                if (!failed[write]) {
+                    results[indexes.get(write)] = BulkItemResult.success(indexes.get(write), statuses.get(write),
+                                                                         writes.get(write).id());
+                    succeeded.add(writes.get(write));
+                }
+            }
+            return succeeded;
+        }
+    }
+}
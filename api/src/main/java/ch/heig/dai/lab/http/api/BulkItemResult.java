@@ -0,0 +1,38 @@
+package ch.heig.dai.lab.http.api;
+
+/**
+ * The outcome of an operation of a bulk request.
+ *
+ * @param index  The position of the operation in the request.
+ * @param status The HTTP status the operation would have had as a single request.
+ * @param id     The ID of the created, updated or deleted document, if known.
+ * @param error  The reason of the failure, or null if the operation succeeded.
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public record BulkItemResult(int index, int status, String id, String error) {
+    /**
+     * Build the result of a successful operation.
+     *
+     * @param index  The position of the operation.
+     * @param status The status of the operation.
+     * @param id     The ID of the document.
+     * @return The result.
+     */
+    public static BulkItemResult success(int index, int status, String id) {
+        return new BulkItemResult(index, status, id, null);
+    }
+
+    /**
+     * Build the result of a failed operation.
+     *
+     * @param index  The position of the operation.
+     * @param status The status of the operation.
+     * @param id     The ID of the document, if known.
+     * @param error  The reason of the failure.
+     * @return The result.
+     */
+    public static BulkItemResult failure(int index, int status, String id, String error) {
+        return new BulkItemResult(index, status, id, error);
+    }
+}
@@ -0,0 +1,37 @@
+package ch.heig.dai.lab.http.api;
+
+/**
+ * An operation of a bulk request.
+ *
+ * @param op   The operation: {@code create} (the default), {@code update} or {@code delete}.
+ * @param id   The ID of the document to update or delete, ignored on creation.
+ * @param data The document to create, or the new values of the document to update.
+ * @param <T>  The type of the documents.
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public record BulkOperation<T>(String op, String id, T data) {
+    /**
+     * Creation of a document.
+     */
+    public static final String CREATE = "create";
+
+    /**
+     * Update of a document.
+     */
+    public static final String UPDATE = "update";
+
+    /**
+     * Deletion of a document.
+     */
+    public static final String DELETE = "delete";
+
+    /**
+     * Get the operation, defaulting to a creation.
+     *
+     * @return The operation.
+     */
+    public String operation() {
+        return op == null ? CREATE : op;
+    }
+}
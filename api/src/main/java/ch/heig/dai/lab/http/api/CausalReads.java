@@ -0,0 +1,136 @@
+package ch.heig.dai.lab.http.api;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoIterable;
+import org.bson.BsonTimestamp;
+
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Ordering of the listing reads after the version reads, so that a listing is never older than the version validating
+ * it.
+ * <p>
+ * The versions are read from the primary, and the listings from the secondaries in causally consistent sessions that
+ * start after the versions read for the same request: a secondary only answers once it applied the writes seen by
+ * those versions, waiting for them if it lags behind. As the version of a request is read before its listing, the
+ * ETag can only be older than the listing, never newer. The operation time of the versions is kept by the thread
+ * handling the request, so the listing reuses the versions read for its ETag instead of reading them again, and a
+ * listing without a version, like a stream, does not wait. The wait is bounded by the maximum time of the listings:
+ * past it, the read fails instead of stalling the request on a lagging secondary. The reads are not delayed on a
+ * standalone server, which reports no operation time.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class CausalReads {
+    /**
+     * The options of the sessions of the listings.
+     */
+    private static final ClientSessionOptions CAUSAL = ClientSessionOptions.builder()
+                                                                           .causallyConsistent(true)
+                                                                           .build();
+
+    /**
+     * The client of the database, starting the sessions.
+     */
+    private final MongoClient client;
+
+    /**
+     * The maximum time of a listing read, in milliseconds, 0 for no limit.
+     */
+    private final long maxTimeMs;
+
+    /**
+     * The latest operation time of the versions read by the thread since its last listing, or null if there is none.
+     */
+    private final ThreadLocal<BsonTimestamp> versionTime = new ThreadLocal<>();
+
+    /**
+     * Constructor.
+     *
+     * @param client    The client of the database.
+     * @param maxTimeMs The maximum time of a listing read, in milliseconds, 0 for no limit.
+     */
+    public CausalReads(MongoClient client, long maxTimeMs) {
+        this.client = client;
+        this.maxTimeMs = maxTimeMs;
+    }
+
+    /**
+     * Get the maximum time of a listing read, to set on its queries. It includes the wait of a secondary for the
+     * writes seen by the versions.
+     *
+     * @return The maximum time, in milliseconds, 0 for no limit.
+     */
+    public long maxTimeMs() {
+        return maxTimeMs;
+    }
+
+    /**
+     * Read the version of a collection, and order the following listing read of the thread after it.
+     *
+     * @param counter The counter of the writes of the collection, read from the primary.
+     * @return The version.
+     */
+    public CollectionVersion version(VersionCounter counter) {
+        try (ClientSession session = client.startSession(CAUSAL)) {
+            final CollectionVersion version = counter.read(session);
+            final BsonTimestamp operationTime = session.getOperationTime();
+            final BsonTimestamp latest = versionTime.get();
+            if (operationTime != null && (latest == null || operationTime.compareTo(latest) > 0)) {
+                versionTime.set(operationTime);
+            }
+            return version;
+        }
+    }
+
+    /**
+     * Run a listing read after the versions read by the thread.
+     *
+     * @param query The read, given the session to run it in.
+     * @param <R>   The type of the result.
+     * @return The result of the read.
+     */
+    public <R> R read(Function<ClientSession, R> query) {
+        try (ClientSession session = start()) {
+            return query.apply(session);
+        }
+    }
+
+    /**
+     * Stream the results of a listing read after the versions read by the thread. The session is closed with the
+     * stream.
+     *
+     * @param query The query, given the session to run it in.
+     * @param <T>   The type of the documents.
+     * @return The stream of documents. It holds an open cursor and must be closed.
+     */
+    public <T> Stream<T> stream(Function<ClientSession, MongoIterable<T>> query) {
+        final ClientSession session = start();
+        try {
+            return Streaming.of(query.apply(session)).onClose(session::close);
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Start a causally consistent session whose reads see at least the versions read by the thread, which are then
+     * forgotten.
+     *
+     * @return The session.
+     */
+    private ClientSession start() {
+        final ClientSession session = client.startSession(CAUSAL);
+        final BsonTimestamp time = versionTime.get();
+        if (time != null) {
+            versionTime.remove();
+            session.advanceOperationTime(time);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,244 @@
+package ch.heig.dai.lab.http.api;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Listener of the MongoDB change streams of the collections used by the API.
+ * <p>
+ * Every replica of the API runs a listener, so the writes done by any replica are seen by all of them. Each watched
+ * collection is followed by a daemon thread that dispatches the changes to the subscribers of the collection. When the
+ * stream is interrupted by a resumable error, e.g. a network error or an election, the thread resumes after the last
+ * seen change. When it cannot, because the error is not resumable or no change was seen yet, the stream is reopened
+ * from the current time and, once it is open, the subscribers receive a {@link ChangeEvent#reset} event as changes may
+ * have been missed.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class ChangeStreamListener {
+    /**
+     * Error code returned by MongoDB when change streams are not available, e.g. on a standalone server.
+     */
+    private static final int CHANGE_STREAMS_NOT_SUPPORTED = 40573;
+
+    /**
+     * Error label set by MongoDB on the errors after which a change stream can be resumed.
+     */
+    private static final String RESUMABLE_ERROR_LABEL = "ResumableChangeStreamError";
+
+    /**
+     * Delay before reopening a failed change stream, in milliseconds.
+     */
+    private static final long RETRY_DELAY_MS = 1_000;
+
+    /**
+     * The database to watch.
+     */
+    private final MongoDatabase database;
+
+    /**
+     * The subscribers of each watched collection.
+     */
+    private final Map<String, List<Consumer<ChangeEvent>>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * A change of a document of a watched collection.
+     *
+     * @param collection The name of the collection.
+     * @param operation  The operation, e.g. insert, update, replace or delete.
+     * @param id         The ID of the changed document, or null when the whole collection may have changed.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public record ChangeEvent(String collection, String operation, String id) {
+        /**
+         * Build an event telling that any document of the collection may have changed.
+         *
+         * @param collection The name of the collection.
+         * @return The event.
+         */
+        public static ChangeEvent reset(String collection) {
+            return new ChangeEvent(collection, "reset", null);
+        }
+
+        /**
+         * Check whether the event concerns the whole collection.
+         *
+         * @return True if any document may have changed.
+         */
+        public boolean isReset() {
+            return id == null;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param database The database to watch.
+     */
+    public ChangeStreamListener(MongoDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Subscribe to the changes of a collection. Must be called before {@link #start()}.
+     *
+     * @param collection The name of the collection.
+     * @param subscriber The subscriber, called from the listener thread of the collection.
+     */
+    public void subscribe(String collection, Consumer<ChangeEvent> subscriber) {
+        subscribers.computeIfAbsent(collection, name -> new CopyOnWriteArrayList<>()).add(subscriber);
+    }
+
+    /**
+     * Start following the change streams of the subscribed collections.
+     */
+    public void start() {
+        subscribers.keySet().forEach(collection -> {
+            Thread thread = new Thread(() -> watch(collection), "change-stream-" + collection);
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Follow the change stream of a collection until the application stops.
+     *
+     * @param collection The name of the collection.
+     */
+    private void watch(String collection) {
+        BsonDocument resumeToken = null;
+        boolean missed = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            ChangeStreamIterable<Document> changeStream = database.getCollection(collection).watch();
+            if (resumeToken != null) {
+                changeStream = changeStream.resumeAfter(resumeToken);
+            }
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStream.cursor()) {
+                if (missed) {
+                    // Only once the new stream is open: a document read again after the reset and changed later is
+                    // seen by the stream, while a reset sent before could be followed by changes seen by no stream
+                    dispatch(collection, ChangeEvent.reset(collection));
+                    missed = false;
+                }
+                while (cursor.hasNext()) {
+                    ChangeStreamDocument<Document> change = cursor.next();
+                    if (change.getOperationType() == OperationType.INVALIDATE) {
+                        // The stream is closed and cannot be resumed: the reset is sent once it is reopened
+                        resumeToken = null;
+                        missed = true;
+                    } else {
+                        resumeToken = change.getResumeToken();
+                        dispatch(collection, toEvent(collection, change));
+                    }
+                }
+            } catch (MongoException e) {
+                if (e instanceof MongoCommandException command
+                    && command.getErrorCode() == CHANGE_STREAMS_NOT_SUPPORTED) {
+                    System.err.println("Change streams are not supported by the database, the caches of " +
+                                       collection + " rely on their expiration only: " + command.getErrorMessage());
+                    return;
+                }
+                if (!retry(collection, resumeToken, e)) {
+                    resumeToken = null;
+                    missed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle a failure of a change stream, and wait before it is reopened. After a resumable error, the stream is
+     * resumed after the last seen change and no change is missed. Otherwise, the stream is reopened from the current
+     * time and the subscribers are reset once it is open.
+     *
+     * @param collection  The name of the collection.
+     * @param resumeToken The token of the last seen change, or null if none was seen.
+     * @param e           The failure.
+     * @return True if the stream is resumed after the last seen change, false if changes may have been missed.
+     */
+    private boolean retry(String collection, BsonDocument resumeToken, MongoException e) {
+        final boolean resumable = resumeToken != null && isResumable(e);
+        if (resumable) {
+            System.err.println("Change stream of " + collection + " interrupted, resuming: " + e.getMessage());
+        } else {
+            System.err.println("Change stream of " + collection + " failed, restarting: " + e.getMessage());
+        }
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return resumable;
+    }
+
+    /**
+     * Check whether a change stream may be resumed after an error: the network errors, the unavailability of the
+     * primary, and the errors labelled as resumable by MongoDB. An error of a resumed stream, e.g. when its history was
+     * lost, is not resumable.
+     *
+     * @param e The error.
+     * @return True if the stream may be resumed.
+     */
+    static boolean isResumable(MongoException e) {
+        return e instanceof MongoSocketException || e instanceof MongoTimeoutException
+               || e instanceof MongoNotPrimaryException || e instanceof MongoNodeIsRecoveringException
+               || e.hasErrorLabel(RESUMABLE_ERROR_LABEL);
+    }
+
+    /**
+     * Convert a change of the stream into an event.
+     *
+     * @param collection The name of the collection.
+     * @param change     The change.
+     * @return The event.
+     */
+    private static ChangeEvent toEvent(String collection, ChangeStreamDocument<Document> change) {
+        final OperationType operation = change.getOperationType();
+        final BsonDocument key = change.getDocumentKey();
+        if (key == null || !key.containsKey("_id")) {
+            // Drop and rename events concern the whole collection.
+            return ChangeEvent.reset(collection);
+        }
+        final BsonValue id = key.get("_id");
+        final String value = id.isString() ? id.asString().getValue() :
+                             id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.toString();
+        return new ChangeEvent(collection, operation.getValue(), value);
+    }
+
+    /**
+     * Send an event to the subscribers of a collection. A failing subscriber does not prevent the others from
+     * receiving the event.
+     *
+     * @param collection The name of the collection.
+     * @param event      The event.
+     */
+    private void dispatch(String collection, ChangeEvent event) {
+        for (Consumer<ChangeEvent> subscriber : subscribers.getOrDefault(collection, List.of())) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("Change event subscriber failed: " + e.getMessage());
+            }
+        }
+    }
+}
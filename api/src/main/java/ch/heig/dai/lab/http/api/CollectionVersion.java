@@ -0,0 +1,15 @@
+package ch.heig.dai.lab.http.api;
+
+/**
+ * Version of the content of a collection, used to validate the cached listings without reading them.
+ * <p>
+ * The version is the number of writes of the collection, which grows with every write through the API: an insertion,
+ * an update or a deletion, however close in time to the previous write and whatever the clock of the replica doing it.
+ * It is kept by a {@link VersionCounter} with MongoDB, and by the store with the in-memory storage engine.
+ *
+ * @param writes The number of writes of the collection.
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public record CollectionVersion(long writes) {
+}
@@ -0,0 +1,110 @@
+package ch.heig.dai.lab.http.api;
+
+import io.javalin.compression.Brotli;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Gzip;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Configuration of the compression of the responses.
+ * <p>
+ * The responses are compressed with Brotli or gzip, whichever the client accepts in its {@code Accept-Encoding}
+ * header, Brotli being preferred. The responses smaller than a threshold are sent as is, as compressing them saves
+ * less than it costs. The server-sent events are never compressed, as each event must reach the client as soon as it
+ * is written.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class Compression {
+    /**
+     * Default encodings of the responses.
+     */
+    public static final String DEFAULT_ENCODINGS = "br,gzip";
+
+    /**
+     * Default Brotli quality, from 0 to 11.
+     */
+    public static final int DEFAULT_BROTLI_LEVEL = 4;
+
+    /**
+     * Default gzip level, from 0 to 9.
+     */
+    public static final int DEFAULT_GZIP_LEVEL = 6;
+
+    /**
+     * Default minimum size of a compressed response, in bytes: a response that fits in a single packet is not
+     * compressed.
+     */
+    public static final int DEFAULT_MIN_SIZE = 1500;
+
+    /**
+     * Content type of the server-sent events.
+     */
+    private static final String EVENT_STREAM = "text/event-stream";
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private Compression() {
+    }
+
+    /**
+     * Build the compression strategy configured by the {@code API_COMPRESSION}, {@code API_COMPRESSION_BROTLI_LEVEL},
+     * {@code API_COMPRESSION_GZIP_LEVEL} and {@code API_COMPRESSION_MIN_SIZE} environment variables.
+     *
+     * @return The compression strategy.
+     * @throws IllegalArgumentException If a variable is invalid.
+     */
+    public static CompressionStrategy strategyFromEnv() {
+        return strategy(Env.getString("API_COMPRESSION", DEFAULT_ENCODINGS),
+                        Env.getInt("API_COMPRESSION_BROTLI_LEVEL", DEFAULT_BROTLI_LEVEL),
+                        Env.getInt("API_COMPRESSION_GZIP_LEVEL", DEFAULT_GZIP_LEVEL),
+                        Env.getInt("API_COMPRESSION_MIN_SIZE", DEFAULT_MIN_SIZE));
+    }
+
+    /**
+     * Build a compression strategy. Brotli is left out, with a warning from Javalin, when its native library cannot be
+     * loaded on the platform.
+     *
+     * @param encodings   The encodings, separated by commas: {@code br}, {@code gzip}, or {@code none} to disable the
+     *                    compression.
+     * @param brotliLevel The Brotli quality, from 0 to 11.
+     * @param gzipLevel   The gzip level, from 0 to 9.
+     * @param minSize     The minimum size of a compressed response, in bytes.
+     * @return The compression strategy.
+     * @throws IllegalArgumentException If an encoding is unknown or a level or the size is out of range.
+     */
+    static CompressionStrategy strategy(String encodings, int brotliLevel, int gzipLevel, int minSize) {
+        if (brotliLevel < 0 || brotliLevel > 11) {
+            throw new IllegalArgumentException("Brotli level must be between 0 and 11");
+        } else if (gzipLevel < 0 || gzipLevel > 9) {
+            throw new IllegalArgumentException("Gzip level must be between 0 and 9");
+        } else if (minSize < 0) {
+            throw new IllegalArgumentException("Minimum compressed size must not be negative");
+        }
+        Brotli brotli = null;
+        Gzip gzip = null;
+        for (String encoding : encodings.split(",")) {
+            switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+                case "", "none" -> {
+                }
+                case "br", "brotli" -> brotli = new Brotli(brotliLevel);
+                case "gzip" -> gzip = new Gzip(gzipLevel);
+                default -> throw new IllegalArgumentException("Unknown compression encoding: " + encoding.trim());
+            }
+        }
+        if (brotli == null && gzip == null) {
+            return CompressionStrategy.NONE;
+        }
+        final CompressionStrategy strategy = new CompressionStrategy(brotli, gzip);
+        strategy.setMinSizeForCompression(minSize);
+        final List<String> excludedTypes = new ArrayList<>(strategy.getExcludedMimeTypesFromCompression());
+        excludedTypes.add(EVENT_STREAM);
+        strategy.setExcludedMimeTypesFromCompression(excludedTypes);
+        return strategy;
+    }
+}
@@ -0,0 +1,149 @@
+package ch.heig.dai.lab.http.api;
+
+import io.javalin.http.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+/**
+ * Helpers for the conditional requests of the read endpoints.
+ * <p>
+ * The responses carry a strong {@code ETag} header, with {@code Cache-Control: no-cache} so that the clients store them
+ * but revalidate them on every use. The responses of a single document also carry a {@code Last-Modified} header, but
+ * not the listings, whose deleted documents leave no modification date behind. A request whose {@code If-None-Match}
+ * header holds the current ETag, or, without {@code If-None-Match}, whose {@code If-Modified-Since} date is not older
+ * than the last modification, is answered with {@code 304 Not Modified} and no body.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class ConditionalGet {
+    /**
+     * Name of the header carrying the ETag of a response.
+     */
+    public static final String ETAG_HEADER = "ETag";
+
+    /**
+     * Name of the header carrying the date of the last modification of a response.
+     */
+    public static final String LAST_MODIFIED_HEADER = "Last-Modified";
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private ConditionalGet() {
+    }
+
+    /**
+     * Build a strong ETag from the values identifying a version of a representation.
+     *
+     * @param parts The values, e.g. the ID and the last update of a document.
+     * @return The quoted ETag.
+     */
+    public static String etag(Object... parts) {
+        final StringBuilder key = new StringBuilder();
+        for (Object part : parts) {
+            // The separator cannot appear in the values, so different values never give the same key
+            key.append(part).append('\0');
+        }
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                                               .digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Convert a timestamp stored by the API, a local date time of the server, or a timestamp with an offset, such as
+     * the ones of the seed data, to an instant.
+     *
+     * @param timestamp The timestamp, may be null.
+     * @return The instant, or null if the timestamp is missing or invalid.
+     */
+    public static Instant instant(String timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(timestamp).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return OffsetDateTime.parse(timestamp).toInstant();
+            } catch (DateTimeParseException offsetException) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Set the validators of the response and check whether the client already holds the current representation. When
+     * it does, the response is set to {@code 304 Not Modified} and must not get a body.
+     *
+     * @param ctx          The Javalin context.
+     * @param etag         The ETag of the current representation.
+     * @param lastModified The date of the last modification of the representation, or null if unknown.
+     * @return True if the client holds the current representation.
+     */
+    public static boolean notModified(Context ctx, String etag, Instant lastModified) {
+        ctx.header(ETAG_HEADER, etag);
+        ctx.header("Cache-Control", "no-cache");
+        if (lastModified != null) {
+            ctx.header(LAST_MODIFIED_HEADER, DateTimeFormatter.RFC_1123_DATE_TIME
+                    .format(lastModified.atZone(ZoneOffset.UTC)));
+        }
+        if (isNotModified(ctx.header("If-None-Match"), ctx.header("If-Modified-Since"), etag, lastModified)) {
+            ctx.status(304);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Evaluate the preconditions of a request. {@code If-None-Match} takes precedence over {@code If-Modified-Since}.
+     *
+     * @param ifNoneMatch     The {@code If-None-Match} header, or null.
+     * @param ifModifiedSince The {@code If-Modified-Since} header, or null.
+     * @param etag            The ETag of the current representation.
+     * @param lastModified    The date of the last modification of the representation, or null if unknown.
+     * @return True if the client holds the current representation.
+     */
+    static boolean isNotModified(String ifNoneMatch, String ifModifiedSince, String etag, Instant lastModified) {
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                // If-None-Match uses the weak comparison
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (ifModifiedSince != null && lastModified != null) {
+            try {
+                final Instant since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME)
+                                                   .toInstant();
+                return !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+            } catch (DateTimeParseException e) {
+                // An invalid date is ignored
+                return false;
+            }
+        }
+        return false;
+    }
+}
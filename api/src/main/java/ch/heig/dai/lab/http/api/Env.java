@@ -0,0 +1,77 @@
+package ch.heig.dai.lab.http.api;
+
+/**
+ * Helpers to read the configuration of the API from the environment variables.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class Env {
+    /**
+     * Utility class, not instantiable.
+     */
+    private Env() {
+    }
+
+    /**
+     * Read a string variable.
+     *
+     * @param name         The name of the variable.
+     * @param defaultValue The value to use if the variable is not set.
+     * @return The value of the variable.
+     */
+    public static String getString(String name, String defaultValue) {
+        final String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Read an integer variable.
+     *
+     * @param name         The name of the variable.
+     * @param defaultValue The value to use if the variable is not set.
+     * @return The value of the variable.
+     */
+    public static int getInt(String name, int defaultValue) {
+        final String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Environment variable " + name + " must be an integer", e);
+        }
+    }
+
+    /**
+     * Read a long variable.
+     *
+     * @param name         The name of the variable.
+     * @param defaultValue The value to use if the variable is not set.
+     * @return The value of the variable.
+     */
+    public static long getLong(String name, long defaultValue) {
+        final String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Environment variable " + name + " must be an integer", e);
+        }
+    }
+
+    /**
+     * Read a boolean variable.
+     *
+     * @param name         The name of the variable.
+     * @param defaultValue The value to use if the variable is not set.
+     * @return The value of the variable.
+     */
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        final String value = getString(name, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
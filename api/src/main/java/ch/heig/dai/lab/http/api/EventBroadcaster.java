@@ -0,0 +1,189 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.ChangeStreamListener.ChangeEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.javalin.http.sse.SseClient;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Fan-out of the change events of the database to the clients connected with Server-Sent Events.
+ * <p>
+ * The broadcaster subscribes to the {@link ChangeStreamListener}, so the clients of every replica receive the writes
+ * done through any replica. Each event is serialized once and queued for every client; each client has a bounded queue
+ * drained by its own virtual thread, so a slow client never delays the change stream nor the other clients. A client
+ * whose queue is full is disconnected instead of buffering without bound: the browser reconnects on its own and reloads
+ * its data, as it may have missed events. An idle connection only costs a heartbeat comment, sent to keep the proxies
+ * from closing it.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class EventBroadcaster implements Consumer<ChangeEvent> {
+    /**
+     * Default maximum number of events waiting to be sent to a client.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    /**
+     * Default delay without events after which a heartbeat is sent to a client, in seconds.
+     */
+    public static final long DEFAULT_HEARTBEAT_SECONDS = 15;
+
+    /**
+     * Serializer of the event data.
+     */
+    private static final ObjectWriter WRITER = new ObjectMapper().writerFor(ChangeEvent.class);
+
+    /**
+     * Maximum number of events waiting to be sent to a client.
+     */
+    private final int queueSize;
+
+    /**
+     * Delay without events after which a heartbeat is sent to a client.
+     */
+    private final Duration heartbeat;
+
+    /**
+     * The connected clients.
+     */
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Number of clients disconnected because they did not keep up with the events.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * An event ready to be sent.
+     *
+     * @param name The name of the event, i.e. the name of the changed collection.
+     * @param data The serialized event.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record Message(String name, String data) {
+    }
+
+    /**
+     * A connected client and the events waiting to be sent to it.
+     *
+     * @param client The client.
+     * @param queue  The events waiting to be sent.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record Subscriber(SseClient client, BlockingQueue<Message> queue) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param queueSize Maximum number of events waiting to be sent to a client.
+     * @param heartbeat Delay without events after which a heartbeat is sent to a client.
+     */
+    public EventBroadcaster(int queueSize, Duration heartbeat) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("The queue size must be positive");
+        }
+        this.queueSize = queueSize;
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * Register a client and send it the events until it disconnects.
+     *
+     * @param client The client, as passed to the SSE handler.
+     */
+    public void connect(SseClient client) {
+        client.keepAlive();
+        final Subscriber subscriber = new Subscriber(client, new ArrayBlockingQueue<>(queueSize));
+        final Thread sender = Thread.ofVirtual().name("sse-client").unstarted(() -> send(subscriber));
+        client.onClose(() -> {
+            subscribers.remove(subscriber);
+            sender.interrupt();
+        });
+        subscribers.add(subscriber);
+        sender.start();
+    }
+
+    /**
+     * Queue an event for every connected client. Never blocks: the clients whose queue is full are disconnected.
+     *
+     * @param event The change event.
+     */
+    @Override
+    public void accept(ChangeEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        final Message message;
+        try {
+            message = new Message(event.collection(), WRITER.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            System.err.println("Error: could not serialize the change event: " + e.getMessage());
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.queue().offer(message)) {
+                dropped.incrementAndGet();
+                subscribers.remove(subscriber);
+                subscriber.client().close();
+            }
+        }
+    }
+
+    /**
+     * Get the number of connected clients.
+     *
+     * @return The number of clients.
+     */
+    public int getClients() {
+        return subscribers.size();
+    }
+
+    /**
+     * Get the number of clients disconnected because they did not keep up with the events.
+     *
+     * @return The number of dropped clients.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Send the queued events to a client until it disconnects.
+     *
+     * @param subscriber The client.
+     */
+    private void send(Subscriber subscriber) {
+        final SseClient client = subscriber.client();
+        // Flush the headers, so that the browser knows the connection is open
+        client.sendComment("connected");
+        try {
+            while (!client.terminated()) {
+                final Message message = subscriber.queue().poll(heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+                if (message == null) {
+                    client.sendComment("heartbeat");
+                } else {
+                    client.sendEvent(message.name(), message.data());
+                }
+            }
+        } catch (InterruptedException e) {
+            // The client disconnected
+        } finally {
+            // A failed write closes the client, which runs the close callback removing the subscriber
+            client.close();
+        }
+    }
+}
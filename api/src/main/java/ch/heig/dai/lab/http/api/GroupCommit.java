@@ -0,0 +1,264 @@
+package ch.heig.dai.lab.http.api;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Group commit of concurrent inserts: the documents inserted by concurrent requests are gathered and written in a
+ * single unordered bulk write, so a burst of inserts costs a few round trips and journal flushes instead of one per
+ * document. Each caller waits until the bulk write holding its document is acknowledged.
+ * <p>
+ * A single thread writes the batches, one at a time. A batch starts with the oldest pending document and is written
+ * once it holds the maximum number of documents, or once that document waited for the maximum delay, which bounds the
+ * latency added to an insert when the load is low. While a batch is being written, the next documents pile up and
+ * form the next batch, so the batches grow with the load.
+ *
+ * @param <T> The type of the documents.
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class GroupCommit<T> implements AutoCloseable {
+    /**
+     * Default maximum time a document waits for other documents before its batch is written, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_DELAY_MS = 2;
+
+    /**
+     * Default maximum number of documents of a batch.
+     */
+    public static final int DEFAULT_MAX_BATCH = 100;
+
+    /**
+     * Number of batches of documents that may be pending before the callers block, which bounds the memory held when
+     * the database cannot keep up.
+     */
+    private static final int PENDING_BATCHES = 16;
+
+    /**
+     * The function writing a batch in a single unordered bulk write, and returning the failed writes.
+     */
+    private final Function<List<T>, List<Bulk.WriteError>> writer;
+
+    /**
+     * The maximum time a document waits for other documents, in nanoseconds.
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * The maximum number of documents of a batch.
+     */
+    private final int maxBatch;
+
+    /**
+     * The documents waiting to be written, oldest first.
+     */
+    private final BlockingQueue<Pending<T>> queue;
+
+    /**
+     * The thread writing the batches.
+     */
+    private final Thread flusher;
+
+    /**
+     * The number of batches written.
+     */
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * The number of documents written.
+     */
+    private final LongAdder documents = new LongAdder();
+
+    /**
+     * Whether the group commit is closed and refuses new documents.
+     */
+    private volatile boolean closed;
+
+    /**
+     * A document waiting to be written.
+     *
+     * @param document The document.
+     * @param since    The time the document was queued, from {@link System#nanoTime()}.
+     * @param result   The outcome of the write, awaited by the caller.
+     * @param <T>      The type of the document.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record Pending<T>(T document, long since, CompletableFuture<Void> result) {
+    }
+
+    /**
+     * Constructor. Starts the thread writing the batches.
+     *
+     * @param name     The name of the thread writing the batches.
+     * @param writer   The function writing a batch in a single unordered bulk write, and returning the failed writes.
+     * @param maxDelay The maximum time a document waits for other documents before its batch is written.
+     * @param maxBatch The maximum number of documents of a batch.
+     * @throws IllegalArgumentException If the delay is negative or the batch size is not positive.
+     */
+    public GroupCommit(String name, Function<List<T>, List<Bulk.WriteError>> writer, Duration maxDelay,
+                       int maxBatch) {
+        if (maxDelay.isNegative()) {
+            throw new IllegalArgumentException("The maximum delay of a group commit must not be negative");
+        } else if (maxBatch < 1) {
+            throw new IllegalArgumentException("The maximum batch of a group commit must be positive");
+        }
+        this.writer = writer;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxBatch = maxBatch;
+        this.queue = new LinkedBlockingQueue<>(maxBatch * PENDING_BATCHES);
+        this.flusher = Thread.ofPlatform().daemon().name(name).start(this::run);
+    }
+
+    /**
+     * Create a group commit configured by the {@code <PREFIX>_GROUP_COMMIT_MAX_DELAY_MS} and
+     * {@code <PREFIX>_GROUP_COMMIT_MAX_BATCH} environment variables.
+     *
+     * @param prefix The prefix of the environment variables.
+     * @param writer The function writing a batch in a single unordered bulk write, and returning the failed writes.
+     * @param <T>    The type of the documents.
+     * @return The group commit.
+     * @throws IllegalArgumentException If a variable has an invalid value.
+     */
+    public static <T> GroupCommit<T> fromEnv(String prefix, Function<List<T>, List<Bulk.WriteError>> writer) {
+        return new GroupCommit<>(prefix.toLowerCase(Locale.ROOT) + "-group-commit", writer,
+                                 Duration.ofMillis(Env.getLong(prefix + "_GROUP_COMMIT_MAX_DELAY_MS",
+                                                               DEFAULT_MAX_DELAY_MS)),
+                                 Env.getInt(prefix + "_GROUP_COMMIT_MAX_BATCH", DEFAULT_MAX_BATCH));
+    }
+
+    /**
+     * Write a document with the next batch, and wait until the batch is written.
+     *
+     * @param document The document.
+     * @throws IllegalStateException If the group commit is closed, or the write of the document failed.
+     * @throws RuntimeException      The exception thrown by the write of the batch.
+     */
+    public void write(T document) {
+        if (closed) {
+            throw new IllegalStateException("The group commit is closed");
+        }
+        final Pending<T> pending = new Pending<>(document, System.nanoTime(), new CompletableFuture<>());
+        try {
+            queue.put(pending);
+            if (closed) {
+                // The thread may have stopped before seeing the document: wait for it, then check whether it did
+                flusher.join();
+                if (queue.remove(pending)) {
+                    throw new IllegalStateException("The group commit is closed");
+                }
+            }
+            pending.result().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the group commit", e);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            } else if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Write the batches until the group commit is closed, then write the documents still pending.
+     */
+    private void run() {
+        final List<Pending<T>> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                final Pending<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                final long deadline = first.since() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    final long remaining = deadline - System.nanoTime();
+                    final Pending<T> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        // The delay of the oldest document is over: take what is already pending and write
+                        queue.drainTo(batch, maxBatch - batch.size());
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Not interrupted by the group commit itself: write what was gathered and carry on until closed
+                Thread.interrupted();
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Write a batch and complete the result of each of its documents.
+     *
+     * @param batch The batch.
+     */
+    private void flush(List<Pending<T>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final List<Bulk.WriteError> errors;
+        try {
+            errors = writer.apply(batch.stream().map(Pending::document).toList());
+        } catch (RuntimeException | Error e) {
+            System.err.println("Error: cannot write a group commit of " + batch.size() + " documents: "
+                               + e.getMessage());
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+            return;
+        }
+        batches.increment();
+        documents.add(batch.size());
+        for (Bulk.WriteError error : errors) {
+            batch.get(error.write()).result().completeExceptionally(new IllegalStateException(error.message()));
+        }
+        // Completing a failed result again has no effect
+        batch.forEach(pending -> pending.result().complete(null));
+    }
+
+    /**
+     * Get the number of batches written.
+     *
+     * @return The number of batches.
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Get the number of documents written in the batches.
+     *
+     * @return The number of documents.
+     */
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    /**
+     * Refuse the new documents, write the pending ones and wait for the thread writing the batches to stop. The thread
+     * is not interrupted, which would abort the write of the current batch.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
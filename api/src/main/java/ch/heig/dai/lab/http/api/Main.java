@@ -1,12 +1,46 @@
 package ch.heig.dai.lab.http.api;
 
+import ch.heig.dai.lab.http.api.blog.AsyncBlogController;
+import ch.heig.dai.lab.http.api.blog.AsyncBlogService;
+import ch.heig.dai.lab.http.api.ChangeStreamListener.ChangeEvent;
 import ch.heig.dai.lab.http.api.blog.BlogController;
+import ch.heig.dai.lab.http.api.blog.BlogRepository;
 import ch.heig.dai.lab.http.api.blog.BlogService;
+import ch.heig.dai.lab.http.api.blog.MongoBlogRepository;
+import ch.heig.dai.lab.http.api.comment.AsyncCommentController;
+import ch.heig.dai.lab.http.api.comment.AsyncCommentService;
+import ch.heig.dai.lab.http.api.comment.Comment;
 import ch.heig.dai.lab.http.api.comment.CommentController;
+import ch.heig.dai.lab.http.api.comment.CommentRepository;
 import ch.heig.dai.lab.http.api.comment.CommentService;
+import ch.heig.dai.lab.http.api.comment.MongoCommentRepository;
+import ch.heig.dai.lab.http.api.feed.FeedController;
+import ch.heig.dai.lab.http.api.feed.FeedService;
+import ch.heig.dai.lab.http.api.memory.MemoryBlogRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryCommentRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryStore;
+import ch.heig.dai.lab.http.api.metrics.Metrics;
+import ch.heig.dai.lab.http.api.metrics.PrometheusWriter;
+import ch.heig.dai.lab.http.api.search.SearchController;
+import ch.heig.dai.lab.http.api.search.SearchIndex;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoTimeoutException;
 import io.javalin.Javalin;
+import io.javalin.apibuilder.EndpointGroup;
+import io.javalin.util.ConcurrencyUtil;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static io.javalin.apibuilder.ApiBuilder.crud;
+import static io.javalin.apibuilder.ApiBuilder.get;
+import static io.javalin.apibuilder.ApiBuilder.post;
+import static io.javalin.apibuilder.ApiBuilder.sse;
 
 /**
  * Main class for the Javalin server.
@@ -15,32 +49,215 @@ import static io.javalin.apibuilder.ApiBuilder.crud;
  * @author Hugo Germano <hugo.germano@heig-vd.ch>
  */
 public class Main {
+    /**
+     * Default maximum number of request threads when virtual threads are disabled.
+     */
+    private static final int DEFAULT_MAX_THREADS = 250;
+
     /**
      * Entry point for the Javalin server.
      *
      * @param args Command line arguments, not used.
      */
     public static void main(String[] args) {
-        final BlogService blogService = new BlogService();
-        final CommentService commentService = new CommentService();
+        // The persistence is synchronous unless API_PERSISTENCE is async, in which case the handlers use the
+        // reactive driver and do not hold a thread while waiting for the database.
+        final boolean asyncPersistence = "async".equalsIgnoreCase(Env.getString("API_PERSISTENCE", "sync"));
+        // The documents are stored in MongoDB unless API_STORAGE is memory, in which case they are held in the process
+        // and optionally persisted to the MEMORY_DATA_DIR folder. Only the synchronous persistence supports it.
+        final boolean memoryStorage = "memory".equalsIgnoreCase(Env.getString("API_STORAGE", "mongo"));
+        if (memoryStorage && asyncPersistence) {
+            throw new IllegalArgumentException("API_STORAGE=memory requires API_PERSISTENCE=sync");
+        }
+        final EndpointGroup routes = asyncPersistence ? asyncRoutes() : syncRoutes(memoryStorage);
+
+        // Handlers run on virtual threads unless API_VIRTUAL_THREADS is false, in which case they run on a bounded
+        // pool of API_MAX_THREADS platform threads. The MongoDB connection pool bounds the concurrent queries either way.
+        final boolean virtualThreads = Env.getBoolean("API_VIRTUAL_THREADS", true);
+        ConcurrencyUtil.INSTANCE.setUseLoom(virtualThreads);
 
         // Create the Javalin app
-        Javalin app = Javalin.create(config -> config.plugins.enableDevLogging()).start(7000);
+        Javalin app = Javalin.create(config -> {
+            // The development logger logs every request and response in full: only enable it to debug
+            if (Env.getBoolean("API_DEV_LOGGING", false)) {
+                config.plugins.enableDevLogging();
+            }
+            // Compress the responses with Brotli or gzip, as negotiated with the Accept-Encoding header
+            config.compression.custom(Compression.strategyFromEnv());
+            if (!virtualThreads) {
+                final int maxThreads = Env.getInt("API_MAX_THREADS", DEFAULT_MAX_THREADS);
+                config.jetty.server(() -> new Server(new QueuedThreadPool(maxThreads, Math.min(8, maxThreads))));
+            }
+        }).start(7000);
 
         // Enable CORS for all requests
         app.before(ctx -> ctx.header("Access-Control-Allow-Origin", "*")
-                             .header("Access-Control-Allow-Methods", "GET, POST, PATCH, DELETE, OPTIONS"));
+                             .header("Access-Control-Allow-Methods", "GET, POST, PATCH, DELETE, OPTIONS")
+                             .header("Access-Control-Expose-Headers", String.join(
+                                     ", ", Pagination.NEXT_CURSOR_HEADER, ConditionalGet.ETAG_HEADER,
+                                     ConditionalGet.LAST_MODIFIED_HEADER, BlogController.DELETED_COMMENTS_HEADER)));
 
+        // Measure every request, and expose the metrics for Prometheus
+        app.before(Metrics.REQUESTS::before);
+        app.after(Metrics.REQUESTS::after);
+        app.get("/metrics", ctx -> ctx.contentType(PrometheusWriter.CONTENT_TYPE).result(Metrics.scrape()));
+
+        // Reject the excess requests early when the database slows down, keeping a share of the capacity for the
+        // reads, unless ADMISSION_CONTROL is false. The asynchronous persistence holds no thread per request and is
+        // not limited.
+        if (!asyncPersistence && Env.getBoolean("ADMISSION_CONTROL", true)) {
+            final AdmissionControl admissionControl = AdmissionControl.fromEnv(Metrics.MONGO,
+                                                                               Set.of("/metrics", "/api/events"));
+            app.before(admissionControl::before);
+            app.after(admissionControl::after);
+            Metrics.gauge("admission_limit", "Number of requests that may be handled at once.",
+                          admissionControl::getLimit);
+            Metrics.gauge("admission_in_flight", "Number of admitted requests being handled.",
+                          admissionControl::getInFlight);
+            Metrics.counter("admission_rejected_reads_total", "Number of reads rejected by the admission control.",
+                            admissionControl::getRejectedReads);
+            Metrics.counter("admission_rejected_writes_total", "Number of writes rejected by the admission control.",
+                            admissionControl::getRejectedWrites);
+        }
 
         // Register error handler
         app.error(404, ctx -> ctx.result("Page not found").contentType("text/plain"));
         // Register exception handler
         app.exception(Exception.class, (e, ctx) -> ctx.status(500).result("Internal server error"));
+        // The connection pool is exhausted: ask the client to come back later
+        app.exception(MongoTimeoutException.class, (e, ctx) -> ctx.status(503)
+                                                                  .header("Retry-After", "1")
+                                                                  .result("Service unavailable"));
+        // A listing outlived its maximum time, e.g. on a secondary lagging behind the version of its ETag
+        app.exception(MongoExecutionTimeoutException.class, (e, ctx) -> ctx.status(503)
+                                                                           .header("Retry-After", "1")
+                                                                           .result("Service unavailable"));
 
         // Register routes
-        app.routes(() -> {
-            crud("api/blogs/{blogId}", new BlogController(blogService));
-            crud("api/blogs/{blogId}/comments/{commentId}", new CommentController(commentService, blogService));
+        app.routes(routes);
+    }
+
+    /**
+     * Build the services and the routes of the synchronous persistence.
+     *
+     * @param memoryStorage Whether the documents are stored in memory rather than in MongoDB.
+     * @return The routes.
+     */
+    private static EndpointGroup syncRoutes(boolean memoryStorage) {
+        final BlogRepository blogRepository;
+        final CommentRepository commentRepository;
+        final BiConsumer<String, Consumer<ChangeEvent>> changes;
+        final ChangeStreamListener changeStreamListener;
+        if (memoryStorage) {
+            final MemoryStore memoryStore = MemoryStore.fromEnv();
+            Runtime.getRuntime().addShutdownHook(new Thread(memoryStore::close, "memory-store-shutdown"));
+            blogRepository = new MemoryBlogRepository(memoryStore);
+            commentRepository = new MemoryCommentRepository(memoryStore);
+            changes = memoryStore::subscribe;
+            changeStreamListener = null;
+        } else {
+            blogRepository = new MongoBlogRepository();
+            commentRepository = new MongoCommentRepository();
+            changeStreamListener = new ChangeStreamListener(MongoDbConnection.getDatabase());
+            changes = changeStreamListener::subscribe;
+        }
+        final SearchIndex searchIndex = new SearchIndex(blogRepository, commentRepository);
+        // Gather the comments created by concurrent requests into a single write, if enabled
+        final GroupCommit<Comment> groupCommit;
+        if (Env.getBoolean("COMMENT_GROUP_COMMIT", false)) {
+            groupCommit = GroupCommit.fromEnv("COMMENT", commentRepository::insertAll);
+            Runtime.getRuntime().addShutdownHook(new Thread(groupCommit::close, "comment-group-commit-shutdown"));
+            Metrics.counter("comment_group_commit_batches_total",
+                            "Number of batches written by the comment group commit.", groupCommit::getBatches);
+            Metrics.counter("comment_group_commit_documents_total",
+                            "Number of comments written by the comment group commit.", groupCommit::getDocuments);
+        } else {
+            groupCommit = null;
+        }
+        final CommentService commentService = new CommentService(commentRepository, searchIndex, groupCommit);
+        final BlogService blogService = new BlogService(blogRepository, commentService, searchIndex);
+        // Fill the search index in the background, so that the API starts without waiting for a full read of the data
+        Thread.ofVirtual().name("search-index").start(() -> {
+            try {
+                searchIndex.rebuild();
+            } catch (RuntimeException e) {
+                System.err.println("Error: cannot build the search index: " + e.getMessage());
+            }
         });
+        Metrics.gauge("search_index_blogs", "Number of blogs in the search index.", searchIndex::getBlogs);
+        Metrics.gauge("search_index_terms", "Number of distinct terms in the search index.", searchIndex::getTerms);
+        Metrics.counter("comment_listings_coalesced_total",
+                        "Number of listings of comments that shared the query of a concurrent listing of a blog.",
+                        commentService::getCoalescedListings);
+
+        if (changeStreamListener != null) {
+            // Keep the caches of this replica in sync with the writes of the other replicas
+            changeStreamListener.subscribe("blogs", event -> {
+                if (event.isReset()) {
+                    blogService.invalidateCache();
+                } else {
+                    blogService.invalidateCache(event.id());
+                }
+            });
+            changeStreamListener.subscribe("comments", event -> {
+                if (event.isReset()) {
+                    commentService.invalidateCache();
+                } else {
+                    commentService.invalidateCache(event.id());
+                }
+            });
+            // Index the writes of the other replicas too
+            changeStreamListener.subscribe("blogs", searchIndex::onBlogChange);
+            changeStreamListener.subscribe("comments", searchIndex::onCommentChange);
+        }
+        // Push the writes of every replica to the clients connected to the events endpoint
+        final EventBroadcaster eventBroadcaster = new EventBroadcaster(
+                Env.getInt("SSE_QUEUE_SIZE", EventBroadcaster.DEFAULT_QUEUE_SIZE),
+                Duration.ofSeconds(Env.getLong("SSE_HEARTBEAT_SECONDS", EventBroadcaster.DEFAULT_HEARTBEAT_SECONDS)));
+        changes.accept("blogs", eventBroadcaster);
+        changes.accept("comments", eventBroadcaster);
+        Metrics.gauge("sse_clients", "Number of clients connected to the events endpoint.",
+                      eventBroadcaster::getClients);
+        Metrics.counter("sse_dropped_clients_total", "Number of event clients disconnected for being too slow.",
+                        eventBroadcaster::getDropped);
+        if (changeStreamListener != null) {
+            changeStreamListener.start();
+        }
+
+        final BlogController blogController = new BlogController(blogService);
+        final CommentController commentController = new CommentController(commentService, blogService);
+        final FeedController feedController = new FeedController(new FeedService(blogRepository, commentRepository));
+        final SearchController searchController = new SearchController(searchIndex, blogService);
+        return () -> {
+            get("api/feed", feedController::getFeed);
+            get("api/search", searchController::search);
+            sse("api/events", eventBroadcaster::connect);
+            post("api/blogs/_bulk", blogController::bulk);
+            post("api/blogs/{blogId}/comments/_bulk", commentController::bulk);
+            crud("api/blogs/{blogId}", blogController);
+            crud("api/blogs/{blogId}/comments/{commentId}", commentController);
+            get("api/cache/stats", ctx -> ctx.json(Map.of("blogs", blogService.getCacheStatistics(),
+                                                          "comments", commentService.getCacheStatistics())));
+            if (!memoryStorage) {
+                get("api/diagnostics/indexes", ctx -> ctx.json(Map.of(
+                        "indexes", Schema.listIndexes(MongoDbConnection.getDatabase()),
+                        "queries", Schema.explain(MongoDbConnection.getDatabase()))));
+            }
+        };
+    }
+
+    /**
+     * Build the services and the routes of the asynchronous persistence.
+     *
+     * @return The routes.
+     */
+    private static EndpointGroup asyncRoutes() {
+        final AsyncCommentService commentService = new AsyncCommentService();
+        final AsyncBlogService blogService = new AsyncBlogService(commentService);
+
+        return () -> {
+            crud("api/blogs/{blogId}", new AsyncBlogController(blogService));
+            crud("api/blogs/{blogId}/comments/{commentId}", new AsyncCommentController(commentService, blogService));
+        };
     }
 }
@@ -0,0 +1,292 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.blog.BlogCodec;
+import ch.heig.dai.lab.http.api.comment.CommentCodec;
+import ch.heig.dai.lab.http.api.metrics.Metrics;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.connection.ClusterDescription;
+import com.mongodb.connection.ClusterType;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the MongoDB clients, shared by the synchronous and the reactive connections.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class MongoConfig {
+    /**
+     * Name of the database used by the API.
+     */
+    public static final String DATABASE_NAME = "dai";
+
+    /**
+     * Default minimum number of connections kept open in the pool.
+     */
+    public static final int DEFAULT_MIN_POOL_SIZE = 0;
+
+    /**
+     * Default maximum number of connections in the pool.
+     */
+    public static final int DEFAULT_MAX_POOL_SIZE = 100;
+
+    /**
+     * Default maximum time a request waits for a connection of the pool, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_WAIT_TIME_MS = 2_000;
+
+    /**
+     * Default maximum time a connection stays idle in the pool before being closed, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_CONNECTION_IDLE_TIME_MS = 60_000;
+
+    /**
+     * Default maximum time to find a server matching the read preference, in milliseconds.
+     */
+    public static final long DEFAULT_SERVER_SELECTION_TIMEOUT_MS = 5_000;
+
+    /**
+     * Default maximum time to open a connection, in milliseconds.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 5_000;
+
+    /**
+     * Default maximum time to wait for the response of a command, in milliseconds, 0 for no limit.
+     */
+    public static final int DEFAULT_SOCKET_TIMEOUT_MS = 0;
+
+    /**
+     * Default maximum replication lag of the secondaries serving the listings, in seconds. It is the smallest value
+     * accepted by MongoDB.
+     */
+    public static final long DEFAULT_MAX_STALENESS_SECONDS = 90;
+
+    /**
+     * Default maximum time of a listing read, in milliseconds, including the wait of a secondary for the writes it must
+     * see.
+     */
+    public static final long DEFAULT_LISTING_MAX_TIME_MS = 2_000;
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private MongoConfig() {
+    }
+
+    /**
+     * Build the client settings from the environment variables.
+     * <p>
+     * The pool is bounded and requests give up quickly when no connection is available, so a slow database pushes back
+     * on the clients instead of piling up waiting requests. The size of the pool is per replica of the API: the
+     * database sees up to {@code MONGO_MAX_POOL_SIZE} connections per server from each replica.
+     *
+     * @return The client settings.
+     * @throws IllegalArgumentException If a variable has an invalid value.
+     */
+    public static MongoClientSettings clientSettings() {
+        final String username = System.getenv("MONGO_INITDB_ROOT_USERNAME");
+        final String password = System.getenv("MONGO_INITDB_ROOT_PASSWORD");
+        final String host = System.getenv("MONGO_INITDB_ROOT_HOST");
+        final String uri = connectionString(username, password, host, Env.getString("MONGO_REPLICA_SET", null));
+        final int minPoolSize = Env.getInt("MONGO_MIN_POOL_SIZE", DEFAULT_MIN_POOL_SIZE);
+        final int maxPoolSize = Env.getInt("MONGO_MAX_POOL_SIZE", DEFAULT_MAX_POOL_SIZE);
+        final long maxWaitTime = Env.getLong("MONGO_MAX_WAIT_TIME_MS", DEFAULT_MAX_WAIT_TIME_MS);
+        final long maxIdleTime = Env.getLong("MONGO_MAX_CONNECTION_IDLE_TIME_MS", DEFAULT_MAX_CONNECTION_IDLE_TIME_MS);
+        final long serverSelectionTimeout = Env.getLong("MONGO_SERVER_SELECTION_TIMEOUT_MS",
+                                                        DEFAULT_SERVER_SELECTION_TIMEOUT_MS);
+        // Read as int, the type of the socket settings, so that a value out of range fails instead of overflowing
+        final int connectTimeout = Env.getInt("MONGO_CONNECT_TIMEOUT_MS", DEFAULT_CONNECT_TIMEOUT_MS);
+        final int socketTimeout = Env.getInt("MONGO_SOCKET_TIMEOUT_MS", DEFAULT_SOCKET_TIMEOUT_MS);
+        final MongoClientSettings.Builder settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .applyToConnectionPoolSettings(pool -> pool.minSize(minPoolSize)
+                                                           .maxSize(maxPoolSize)
+                                                           .maxWaitTime(maxWaitTime, TimeUnit.MILLISECONDS)
+                                                           .maxConnectionIdleTime(maxIdleTime, TimeUnit.MILLISECONDS)
+                                                           .addConnectionPoolListener(Metrics.MONGO))
+                .applyToClusterSettings(cluster -> cluster.serverSelectionTimeout(serverSelectionTimeout,
+                                                                                  TimeUnit.MILLISECONDS))
+                .applyToSocketSettings(socket -> socket.connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                                                       .readTimeout(socketTimeout, TimeUnit.MILLISECONDS))
+                .compressorList(compressors(Env.getString("MONGO_COMPRESSORS", "")))
+                .readPreference(readPreference(Env.getString("MONGO_READ_PREFERENCE", "primary")))
+                .addCommandListener(Metrics.MONGO)
+                .codecRegistry(codecRegistry());
+        final String readConcern = Env.getString("MONGO_READ_CONCERN", null);
+        if (readConcern != null) {
+            settings.readConcern(readConcern(readConcern));
+        }
+        return settings.build();
+    }
+
+    /**
+     * Build the connection string of the database.
+     * <p>
+     * The name of the replica set is required to read from the secondaries: without it, the driver connects directly
+     * to the single host of the string, and never discovers the other members of the replica set.
+     *
+     * @param username   The name of the user.
+     * @param password   The password of the user.
+     * @param host       The host and port of the server, or of a member of the replica set.
+     * @param replicaSet The name of the replica set, or null to connect directly to the host.
+     * @return The connection string.
+     */
+    static String connectionString(String username, String password, String host, String replicaSet) {
+        final String uri = String.format("mongodb://%s:%s@%s", username, password, host);
+        return replicaSet == null || replicaSet.isBlank() ? uri : uri + "/?replicaSet=" + replicaSet;
+    }
+
+    /**
+     * Get the maximum time of the listing reads, configured by the {@code MONGO_LISTING_MAX_TIME_MS} environment
+     * variable. A listing served by a secondary waits for the writes seen by the version of its ETag: the maximum time
+     * bounds that wait, so that a lagging secondary fails the request instead of stalling it.
+     *
+     * @return The maximum time, in milliseconds, 0 for no limit.
+     * @throws IllegalArgumentException If the maximum time is negative.
+     */
+    public static long listingMaxTime() {
+        final long maxTime = Env.getLong("MONGO_LISTING_MAX_TIME_MS", DEFAULT_LISTING_MAX_TIME_MS);
+        if (maxTime < 0) {
+            throw new IllegalArgumentException("MONGO_LISTING_MAX_TIME_MS must not be negative");
+        }
+        return maxTime;
+    }
+
+    /**
+     * Build the read preference of the listings, configured by the {@code MONGO_REPLICA_READS} and
+     * {@code MONGO_MAX_STALENESS_SECONDS} environment variables.
+     * <p>
+     * The listings tolerate slightly stale data, so they are served by the secondaries when there are any, as long as
+     * they lag less than the maximum staleness behind the primary. The reads by ID load the caches, which the change
+     * streams invalidate as soon as the primary applies a write, and the reads preceding a write must see the previous
+     * writes: both keep the read preference of the client, by default the primary.
+     *
+     * @return The read preference of the listings.
+     * @throws IllegalArgumentException If the maximum staleness is below 90 seconds.
+     */
+    public static ReadPreference replicaReadPreference() {
+        if (!Env.getBoolean("MONGO_REPLICA_READS", true)) {
+            return readPreference(Env.getString("MONGO_READ_PREFERENCE", "primary"));
+        }
+        final long maxStaleness = Env.getLong("MONGO_MAX_STALENESS_SECONDS", DEFAULT_MAX_STALENESS_SECONDS);
+        if (maxStaleness < DEFAULT_MAX_STALENESS_SECONDS) {
+            throw new IllegalArgumentException("MONGO_MAX_STALENESS_SECONDS must be at least "
+                                               + DEFAULT_MAX_STALENESS_SECONDS);
+        }
+        return ReadPreference.secondaryPreferred(maxStaleness, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Build the write concern of the group commits of the comments, configured by the {@code COMMENT_GROUP_COMMIT_W}
+     * and {@code COMMENT_GROUP_COMMIT_J} environment variables. When they are not set, the group commits use the
+     * write concern of the client.
+     *
+     * @return The write concern of the group commits.
+     * @throws IllegalArgumentException If the number of acknowledgements is negative.
+     */
+    public static WriteConcern groupCommitWriteConcern() {
+        final String journal = Env.getString("COMMENT_GROUP_COMMIT_J", null);
+        return writeConcern(Env.getString("COMMENT_GROUP_COMMIT_W", null),
+                            journal == null ? null : Boolean.parseBoolean(journal));
+    }
+
+    /**
+     * Parse a write concern.
+     *
+     * @param w       The number of members acknowledging the writes, e.g. {@code 1}, or the name of a write concern,
+     *                e.g. {@code majority}; null to keep the acknowledgement of the server.
+     * @param journal Whether the writes are acknowledged once journaled, or null to keep the journaling of the server.
+     * @return The write concern.
+     * @throws IllegalArgumentException If the number of acknowledgements is negative.
+     */
+    static WriteConcern writeConcern(String w, Boolean journal) {
+        WriteConcern writeConcern = WriteConcern.ACKNOWLEDGED;
+        if (w != null) {
+            writeConcern = w.matches("-?\\d+") ? writeConcern.withW(Integer.parseInt(w))
+                                               : writeConcern.withW(w);
+        }
+        return journal == null ? writeConcern : writeConcern.withJournal(journal);
+    }
+
+    /**
+     * Check whether a cluster supports the multi-document transactions. A standalone server does not, unlike the
+     * replica sets and the sharded clusters. A cluster that was not discovered yet is assumed to support them.
+     *
+     * @param cluster The description of the cluster, from the client.
+     * @return False for a standalone server.
+     */
+    public static boolean supportsTransactions(ClusterDescription cluster) {
+        return cluster.getType() != ClusterType.STANDALONE;
+    }
+
+    /**
+     * Parse a list of wire compressors. The driver uses the first compressor of the list that the server also
+     * supports, and does not compress the messages when there is none.
+     *
+     * @param names The names of the compressors, separated by commas: {@code zstd}, {@code snappy} or {@code zlib}.
+     * @return The compressors, in order of preference.
+     * @throws IllegalArgumentException If a compressor is unknown.
+     */
+    static List<MongoCompressor> compressors(String names) {
+        final List<MongoCompressor> compressors = new ArrayList<>();
+        for (String name : names.split(",")) {
+            switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "" -> {
+                }
+                case "zstd" -> compressors.add(MongoCompressor.createZstdCompressor());
+                case "snappy" -> compressors.add(MongoCompressor.createSnappyCompressor());
+                case "zlib" -> compressors.add(MongoCompressor.createZlibCompressor());
+                default -> throw new IllegalArgumentException("Unknown MongoDB compressor: " + name.trim());
+            }
+        }
+        return compressors;
+    }
+
+    /**
+     * Parse a read preference.
+     *
+     * @param name The name of the read preference, e.g. {@code primary} or {@code secondaryPreferred}.
+     * @return The read preference.
+     * @throws IllegalArgumentException If the read preference is unknown.
+     */
+    static ReadPreference readPreference(String name) {
+        return ReadPreference.valueOf(name);
+    }
+
+    /**
+     * Parse a read concern.
+     *
+     * @param level The level of the read concern, e.g. {@code local} or {@code majority}.
+     * @return The read concern.
+     * @throws IllegalArgumentException If the level is unknown.
+     */
+    static ReadConcern readConcern(String level) {
+        return new ReadConcern(ReadConcernLevel.fromString(level));
+    }
+
+    /**
+     * Build the codec registry of the java classes (POJOs) stored in the database.
+     *
+     * @return The codec registry.
+     */
+    public static CodecRegistry codecRegistry() {
+        return CodecRegistries.fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+                                              CodecRegistries.fromCodecs(new CommentCodec(), new BlogCodec()),
+                                              CodecRegistries.fromProviders(PojoCodecProvider.builder()
+                                                                                             .automatic(true)
+                                                                                             .build()));
+    }
+}
@@ -0,0 +1,15 @@
+package ch.heig.dai.lab.http.api;
+
+import java.util.List;
+
+/**
+ * A page of results of a keyset-paginated query.
+ *
+ * @param items The items of the page.
+ * @param next  The opaque cursor pointing after the last item, or null if this is the last page.
+ * @param <T>   The type of the items.
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public record Page<T>(List<T> items, String next) {
+}
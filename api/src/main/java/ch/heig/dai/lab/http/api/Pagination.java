@@ -0,0 +1,113 @@
+package ch.heig.dai.lab.http.api;
+
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Helpers for the keyset (cursor based) pagination of the listing endpoints.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class Pagination {
+    /**
+     * Number of items returned when the client does not specify a limit.
+     */
+    public static final int DEFAULT_LIMIT = 50;
+
+    /**
+     * Maximum number of items a client can request in a single page.
+     */
+    public static final int MAX_LIMIT = 500;
+
+    /**
+     * Response header carrying the cursor of the next page.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private Pagination() {
+    }
+
+    /**
+     * Read the page size requested with the {@code limit} query parameter.
+     *
+     * @param ctx The Javalin context.
+     * @return The page size, bounded to {@link #MAX_LIMIT}.
+     */
+    public static int limit(Context ctx) {
+        final String limit = ctx.queryParam("limit");
+        if (limit == null || limit.isBlank()) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            final int value = Integer.parseInt(limit);
+            if (value < 1) {
+                throw new BadRequestResponse("Invalid limit");
+            }
+            return Math.min(value, MAX_LIMIT);
+        } catch (NumberFormatException e) {
+            throw new BadRequestResponse("Invalid limit");
+        }
+    }
+
+    /**
+     * Read the cursor sent with the {@code after} query parameter.
+     *
+     * @param ctx The Javalin context.
+     * @return The cursor, or null if the first page is requested.
+     */
+    public static String after(Context ctx) {
+        final String after = ctx.queryParam("after");
+        return after == null || after.isBlank() ? null : after;
+    }
+
+    /**
+     * Encode a key into an opaque cursor.
+     *
+     * @param key The key of the last item of a page.
+     * @return The cursor.
+     */
+    public static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode an opaque cursor back into the key it was built from.
+     *
+     * @param cursor The cursor.
+     * @return The key.
+     */
+    public static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestResponse("Invalid cursor");
+        }
+    }
+
+    /**
+     * Build a page from the documents fetched for it, which hold one extra document when there is a next page.
+     *
+     * @param documents The documents, at most one more than the limit. The extra document is removed.
+     * @param limit     The maximum number of documents of the page.
+     * @param idOf      The function giving the ID of a document.
+     * @param <T>       The type of the documents.
+     * @return The page.
+     */
+    public static <T> Page<T> page(List<T> documents, int limit, Function<T, String> idOf) {
+        String next = null;
+        if (documents.size() > limit) {
+            documents.remove(limit);
+            next = encodeCursor(idOf.apply(documents.get(limit - 1)));
+        }
+        return new Page<>(documents, next);
+    }
+}
@@ -0,0 +1,95 @@
+package ch.heig.dai.lab.http.api;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adapters from the reactive streams publishers of the MongoDB driver to completable futures.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class Publishers {
+    /**
+     * Utility class, not instantiable.
+     */
+    private Publishers() {
+    }
+
+    /**
+     * Get the first item of a publisher.
+     *
+     * @param publisher The publisher.
+     * @param <T>       The type of the items.
+     * @return A future completed with the first item, or with null if the publisher is empty.
+     */
+    public static <T> CompletableFuture<T> first(Publisher<T> publisher) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(T item) {
+                subscription.cancel();
+                future.complete(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(null);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Collect all the items of a publisher.
+     *
+     * @param publisher The publisher.
+     * @param <T>       The type of the items.
+     * @return A future completed with the items.
+     */
+    public static <T> CompletableFuture<List<T>> toList(Publisher<T> publisher) {
+        final CompletableFuture<List<T>> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private final List<T> items = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T item) {
+                items.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(items);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,142 @@
+package ch.heig.dai.lab.http.api;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Helpers writing the documents read from MongoDB to the response without materializing them.
+ * <p>
+ * The listing endpoints read the documents as {@link RawBsonDocument}s, which only hold the BSON bytes received from
+ * the server, and transcode the BSON fields straight to a JSON generator writing to the response. The documents are
+ * never decoded into records nor serialized by Jackson's data binding, and the UTF-8 bytes of the string values are
+ * escaped and copied from the BSON buffer to the response without being decoded into Java strings, which saves most of
+ * the CPU time and of the allocations of a listing. The documents must be projected on the fields of the API, as every
+ * stored field is written.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class RawJson {
+    /**
+     * Factory of the JSON generators, thread safe.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private RawJson() {
+    }
+
+    /**
+     * Write documents to the response as a JSON array, with a 200 status.
+     *
+     * @param ctx       The Javalin context.
+     * @param documents The documents.
+     */
+    public static void write(Context ctx, List<RawBsonDocument> documents) {
+        ctx.status(200);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        try {
+            write(ctx.outputStream(), documents);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write documents as a JSON array in UTF-8. The stream is flushed but not closed.
+     *
+     * @param output    The output stream.
+     * @param documents The documents.
+     * @throws IOException If the documents cannot be written.
+     */
+    public static void write(OutputStream output, List<RawBsonDocument> documents) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8)
+                                                   .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartArray();
+            for (RawBsonDocument document : documents) {
+                final ByteBuffer buffer = document.getByteBuffer().asNIO();
+                try (BsonBinaryReader reader = new BsonBinaryReader(buffer)) {
+                    reader.readBsonType();
+                    writeValue(reader, buffer, generator);
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Transcode the current value of a BSON reader.
+     *
+     * @param reader    The reader, positioned on the value.
+     * @param buffer    The buffer read by the reader.
+     * @param generator The JSON generator.
+     * @throws IOException If the value cannot be written.
+     */
+    private static void writeValue(BsonBinaryReader reader, ByteBuffer buffer, JsonGenerator generator)
+            throws IOException {
+        switch (reader.getCurrentBsonType()) {
+            case DOCUMENT -> {
+                reader.readStartDocument();
+                generator.writeStartObject();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    generator.writeFieldName(reader.readName());
+                    writeValue(reader, buffer, generator);
+                }
+                generator.writeEndObject();
+                reader.readEndDocument();
+            }
+            case ARRAY -> {
+                reader.readStartArray();
+                generator.writeStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    writeValue(reader, buffer, generator);
+                }
+                generator.writeEndArray();
+                reader.readEndArray();
+            }
+            case STRING -> {
+                if (buffer.hasArray()) {
+                    // A BSON string is its length in bytes, including the trailing NUL, followed by its UTF-8 bytes
+                    final int position = buffer.arrayOffset() + reader.getBsonInput().getPosition();
+                    final int length = buffer.order(ByteOrder.LITTLE_ENDIAN).getInt(reader.getBsonInput()
+                                                                                          .getPosition()) - 1;
+                    generator.writeUTF8String(buffer.array(), position + Integer.BYTES, length);
+                    reader.skipValue();
+                } else {
+                    generator.writeString(reader.readString());
+                }
+            }
+            case INT32 -> generator.writeNumber(reader.readInt32());
+            case INT64 -> generator.writeNumber(reader.readInt64());
+            case DOUBLE -> generator.writeNumber(reader.readDouble());
+            case DECIMAL128 -> generator.writeNumber(reader.readDecimal128().bigDecimalValue());
+            case BOOLEAN -> generator.writeBoolean(reader.readBoolean());
+            case OBJECT_ID -> generator.writeString(reader.readObjectId().toHexString());
+            case DATE_TIME -> generator.writeNumber(reader.readDateTime());
+            case NULL -> {
+                reader.readNull();
+                generator.writeNull();
+            }
+            default -> {
+                // The API only stores the types above; anything else is not part of its model.
+                reader.skipValue();
+                generator.writeNull();
+            }
+        }
+    }
+}
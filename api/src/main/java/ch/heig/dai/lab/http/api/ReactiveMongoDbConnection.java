@@ -0,0 +1,53 @@
+package ch.heig.dai.lab.http.api;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+
+/**
+ * Singleton class that provides a non-blocking connection to the MongoDB database, used by the asynchronous services.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class ReactiveMongoDbConnection {
+    /**
+     * The database connection.
+     */
+    private static final MongoDatabase database;
+
+    /**
+     * The MongoDB client.
+     */
+    private static final MongoClient client;
+
+    static {
+        // Not closed, for the same reason as the synchronous connection.
+        try {
+            client = MongoClients.create(MongoConfig.clientSettings());
+            database = client.getDatabase(MongoConfig.DATABASE_NAME);
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            throw e;
+        }
+        Schema.ensureIndexes(database);
+    }
+
+    /**
+     * Get the database connection.
+     *
+     * @return The database connection singleton.
+     */
+    public static MongoDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * Get the client of the database connection, to start the sessions of the transactions.
+     *
+     * @return The client singleton.
+     */
+    public static MongoClient getClient() {
+        return client;
+    }
+}
@@ -0,0 +1,194 @@
+package ch.heig.dai.lab.http.api;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The indexes of the collections used by the API, created at startup, and the diagnostics of the queries using them.
+ * <p>
+ * Every query of the services filters or sorts on an indexed field: {@code _id} for the lookups by ID, the pages of
+ * blogs and the versions of the collections, which validate the conditional requests, {@code {_blogId, createdAt}} for
+ * the comments of a blog, which are returned in creation order, and {@code createdAt} for the blogs sorted by creation
+ * date. Creating an index that already exists is a no-op, so the bootstrap runs on
+ * every start of every replica.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class Schema {
+    /**
+     * The indexes of the blogs collection, in addition to the default {@code _id} index.
+     */
+    public static final List<IndexModel> BLOG_INDEXES = List.of(
+            new IndexModel(Indexes.ascending("createdAt"), new IndexOptions().name("createdAt")));
+
+    /**
+     * The indexes of the comments collection, in addition to the default {@code _id} index. The compound index also
+     * serves the queries filtering on {@code _blogId} only, such as the deletion of the comments of a blog.
+     */
+    public static final List<IndexModel> COMMENT_INDEXES = List.of(
+            new IndexModel(Indexes.ascending("_blogId", "createdAt"), new IndexOptions().name("blogId_createdAt")));
+
+    /**
+     * The queries of the services, explained by the diagnostics. The values of the filters do not change the plans.
+     */
+    private static final List<Query> QUERIES = List.of(
+            new Query("blog by id", "blogs", new Document("_id", ""), null),
+            new Query("page of blogs", "blogs", new Document("_id", new Document("$gt", "")), new Document("_id", 1)),
+            new Query("blogs by creation date", "blogs", new Document(), new Document("createdAt", 1)),
+            new Query("comment by id", "comments", new Document("_id", ""), null),
+            new Query("comments of a blog", "comments", new Document("_blogId", ""), new Document("createdAt", 1)),
+            new Query("comment of a blog by id", "comments", new Document("_id", "").append("_blogId", ""), null),
+            new Query("version of a collection", VersionCounter.COLLECTION, new Document("_id", ""), null));
+
+    /**
+     * A query of the services.
+     *
+     * @param name       A description of the query.
+     * @param collection The name of the queried collection.
+     * @param filter     The filter of the query.
+     * @param sort       The sort of the query, or null.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record Query(String name, String collection, Document filter, Document sort) {
+    }
+
+    /**
+     * The plan chosen by MongoDB for a query of the services.
+     *
+     * @param name           A description of the query.
+     * @param collection     The name of the queried collection.
+     * @param stages         The stages of the winning plan, from the root to the leaves.
+     * @param indexes        The names of the indexes used by the plan.
+     * @param collectionScan Whether the plan scans the whole collection.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public record QueryPlan(String name, String collection, List<String> stages, Set<String> indexes,
+                            boolean collectionScan) {
+    }
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private Schema() {
+    }
+
+    /**
+     * Create the missing indexes. A failure is logged and does not prevent the API from starting, as the queries still
+     * work without the indexes, only slower.
+     *
+     * @param database The database.
+     */
+    public static void ensureIndexes(MongoDatabase database) {
+        try {
+            database.getCollection("blogs").createIndexes(BLOG_INDEXES);
+            database.getCollection("comments").createIndexes(COMMENT_INDEXES);
+        } catch (MongoException e) {
+            System.err.println("Error: could not create the indexes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create the missing indexes with the reactive driver, waiting for the creation to finish.
+     *
+     * @param database The database.
+     */
+    public static void ensureIndexes(com.mongodb.reactivestreams.client.MongoDatabase database) {
+        try {
+            Publishers.toList(database.getCollection("blogs").createIndexes(BLOG_INDEXES)).join();
+            Publishers.toList(database.getCollection("comments").createIndexes(COMMENT_INDEXES)).join();
+        } catch (RuntimeException e) {
+            System.err.println("Error: could not create the indexes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Explain the queries of the services and report the indexes they use.
+     *
+     * @param database The database.
+     * @return The plan of each query.
+     */
+    public static List<QueryPlan> explain(MongoDatabase database) {
+        final List<QueryPlan> plans = new ArrayList<>(QUERIES.size());
+        for (Query query : QUERIES) {
+            final Document find = new Document("find", query.collection()).append("filter", query.filter());
+            if (query.sort() != null) {
+                find.append("sort", query.sort());
+            }
+            final Document explanation = database.runCommand(new Document("explain", find)
+                                                                      .append("verbosity", "queryPlanner"));
+            final Document winningPlan = explanation.get("queryPlanner", Document.class)
+                                                    .get("winningPlan", Document.class);
+            plans.add(plan(query.name(), query.collection(), winningPlan));
+        }
+        return plans;
+    }
+
+    /**
+     * List the indexes of the collections used by the API.
+     *
+     * @param database The database.
+     * @return The indexes of each collection.
+     */
+    public static Map<String, List<Document>> listIndexes(MongoDatabase database) {
+        final Map<String, List<Document>> indexes = new LinkedHashMap<>();
+        for (String collection : List.of("blogs", "comments")) {
+            indexes.put(collection, database.getCollection(collection).listIndexes().into(new ArrayList<>()));
+        }
+        return indexes;
+    }
+
+    /**
+     * Summarize a winning plan returned by {@code explain}.
+     *
+     * @param name        A description of the query.
+     * @param collection  The name of the queried collection.
+     * @param winningPlan The winning plan.
+     * @return The summary of the plan.
+     */
+    static QueryPlan plan(String name, String collection, Document winningPlan) {
+        final List<String> stages = new ArrayList<>();
+        final Set<String> indexes = new LinkedHashSet<>();
+        walk(winningPlan, stages, indexes);
+        return new QueryPlan(name, collection, stages, indexes, stages.contains("COLLSCAN"));
+    }
+
+    /**
+     * Collect the stages and the indexes of a plan and of its input stages.
+     *
+     * @param stage   The stage of the plan.
+     * @param stages  The collected stages.
+     * @param indexes The collected index names.
+     */
+    private static void walk(Document stage, List<String> stages, Set<String> indexes) {
+        if (stage == null) {
+            return;
+        }
+        // Since MongoDB 5.0, the plans executed by the slot based engine are wrapped in a queryPlan field
+        if (stage.containsKey("queryPlan")) {
+            walk(stage.get("queryPlan", Document.class), stages, indexes);
+            return;
+        }
+        stages.add(stage.getString("stage"));
+        if (stage.containsKey("indexName")) {
+            indexes.add(stage.getString("indexName"));
+        }
+        walk(stage.get("inputStage", Document.class), stages, indexes);
+        for (Document input : stage.getList("inputStages", Document.class, List.of())) {
+            walk(input, stages, indexes);
+        }
+    }
+}
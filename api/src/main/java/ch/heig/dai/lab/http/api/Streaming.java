@@ -0,0 +1,70 @@
+package ch.heig.dai.lab.http.api;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import io.javalin.http.Context;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Helpers for the streaming mode of the listing endpoints.
+ * <p>
+ * In streaming mode, the documents are pulled from the MongoDB cursor one batch at a time and written to the response
+ * as soon as they are decoded, so the response is sent with chunked transfer encoding and the memory used by a request
+ * does not depend on the number of documents.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class Streaming {
+    /**
+     * Number of documents fetched from MongoDB per cursor round trip.
+     */
+    public static final int BATCH_SIZE = 256;
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private Streaming() {
+    }
+
+    /**
+     * Check whether the client asked for a streamed response with the {@code stream} query parameter.
+     *
+     * @param ctx The Javalin context.
+     * @return True if the response must be streamed.
+     */
+    public static boolean requested(Context ctx) {
+        return Boolean.parseBoolean(ctx.queryParam("stream"));
+    }
+
+    /**
+     * Wrap the results of a query in a lazy stream. The stream holds an open cursor and must be closed.
+     *
+     * @param iterable The query.
+     * @param <T>      The type of the documents.
+     * @return The stream of documents.
+     */
+    public static <T> Stream<T> of(MongoIterable<T> iterable) {
+        final MongoCursor<T> cursor = iterable.batchSize(BATCH_SIZE).iterator();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED |
+                                                                                Spliterator.NONNULL), false)
+                            .onClose(cursor::close);
+    }
+
+    /**
+     * Write a stream of documents to the response as a JSON array, and close it.
+     *
+     * @param ctx    The Javalin context.
+     * @param stream The stream of documents.
+     */
+    public static void write(Context ctx, Stream<?> stream) {
+        try (stream) {
+            ctx.status(200);
+            ctx.writeJsonStream(stream);
+        }
+    }
+}
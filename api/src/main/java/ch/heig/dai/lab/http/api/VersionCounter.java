@@ -0,0 +1,84 @@
+package ch.heig.dai.lab.http.api;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.function.Supplier;
+
+/**
+ * Counter of the writes of a collection, whose value is the version of the collection.
+ * <p>
+ * The counters are documents of the {@value #COLLECTION} collection, one per counted collection, so reading a version
+ * is a lookup by ID. A counter is incremented once a write is done, whether it succeeded or failed, as a failed write
+ * may have been partially applied: a version read after a write counts it only once it is applied, so the listing read
+ * after that version holds it. A write made outside of the API, such as the import of the seed data, must increment
+ * the counter too.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class VersionCounter {
+    /**
+     * Name of the collection of the counters.
+     */
+    public static final String COLLECTION = "versions";
+
+    /**
+     * The collection of the counters.
+     */
+    private final MongoCollection<Document> versions;
+
+    /**
+     * The name of the counted collection, which is the ID of its counter.
+     */
+    private final String collection;
+
+    /**
+     * Constructor.
+     *
+     * @param database   The database of the counted collection.
+     * @param collection The name of the counted collection.
+     */
+    public VersionCounter(MongoDatabase database, String collection) {
+        this.versions = database.getCollection(COLLECTION);
+        this.collection = collection;
+    }
+
+    /**
+     * Read the version of the collection.
+     *
+     * @param session The session of the read.
+     * @return The version, which has no write if the collection was never written.
+     */
+    public CollectionVersion read(ClientSession session) {
+        final Document counter = versions.find(session, Filters.eq("_id", collection)).first();
+        return new CollectionVersion(counter == null ? 0 : counter.get("writes", Number.class).longValue());
+    }
+
+    /**
+     * Do a write of the collection, then count it.
+     *
+     * @param write The write.
+     * @param <R>   The type of the result of the write.
+     * @return The result of the write.
+     */
+    public <R> R count(Supplier<R> write) {
+        try {
+            return write.get();
+        } finally {
+            increment();
+        }
+    }
+
+    /**
+     * Count a write of the collection.
+     */
+    public void increment() {
+        versions.updateOne(Filters.eq("_id", collection), Updates.inc("writes", 1L), new UpdateOptions().upsert(true));
+    }
+}
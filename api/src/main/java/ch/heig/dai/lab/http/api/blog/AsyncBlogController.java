@@ -0,0 +1,129 @@
+package ch.heig.dai.lab.http.api.blog;
+
+import ch.heig.dai.lab.http.api.Pagination;
+import io.javalin.apibuilder.CrudHandler;
+import io.javalin.http.Context;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Blog controller backed by the non-blocking service. The request thread is released while the database is queried
+ * and the response is written when the query completes.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class AsyncBlogController implements CrudHandler {
+    /**
+     * The blog service to use.
+     */
+    private final AsyncBlogService blogService;
+
+    /**
+     * Constructor.
+     *
+     * @param blogService The blog service to use.
+     */
+    public AsyncBlogController(AsyncBlogService blogService) {
+        this.blogService = blogService;
+    }
+
+    /**
+     * Create a new blog.
+     *
+     * @param ctx The Javalin context.
+     */
+    @Override
+    public void create(@NotNull Context ctx) {
+        final Blog blog = ctx.bodyAsClass(Blog.class);
+
+        if (blog.title() == null || blog.content() == null) {
+            ctx.status(400);
+            ctx.result("Invalid blog");
+            return;
+        }
+
+        ctx.future(() -> blogService.createBlog(blog).thenAccept(createdBlog -> {
+            ctx.status(201);
+            ctx.json(createdBlog);
+        }));
+    }
+
+    /**
+     * Read a blog by its ID.
+     *
+     * @param ctx The Javalin context.
+     */
+    @Override
+    public void getOne(@NotNull Context ctx, @NotNull String id) {
+        ctx.future(() -> blogService.getBlogById(id).thenAccept(blog -> {
+            if (blog == null) {
+                ctx.status(404);
+                ctx.result("Blog not found");
+                return;
+            }
+            ctx.status(200);
+            ctx.json(blog);
+        }));
+    }
+
+    /**
+     * Read a page of blogs. See {@link BlogController#getAll(Context)}.
+     *
+     * @param ctx The Javalin context.
+     */
+    @Override
+    public void getAll(@NotNull Context ctx) {
+        final int limit = Pagination.limit(ctx);
+        final String after = Pagination.after(ctx);
+        ctx.future(() -> blogService.getBlogs(limit, after).thenAccept(page -> {
+            if (page.items().isEmpty()) {
+                ctx.status(404);
+                ctx.result("No blogs found");
+                return;
+            }
+            if (page.next() != null) {
+                ctx.header(Pagination.NEXT_CURSOR_HEADER, page.next());
+            }
+            ctx.status(200);
+            ctx.json(page.items());
+        }));
+    }
+
+    /**
+     * Update a blog.
+     *
+     * @param ctx The Javalin context.
+     */
+    @Override
+    public void update(@NotNull Context ctx, @NotNull String id) {
+        final Blog blog = ctx.bodyAsClass(Blog.class);
+        ctx.future(() -> blogService.updateBlog(id, blog).thenAccept(updatedBlog -> {
+            if (updatedBlog == null) {
+                ctx.status(404);
+                ctx.result("Blog not found");
+                return;
+            }
+            ctx.status(200);
+            ctx.json(updatedBlog);
+        }));
+    }
+
+    /**
+     * Delete a blog and its comments. The number of deleted comments is set in the {@code X-Deleted-Comments} header.
+     *
+     * @param ctx The Javalin context.
+     */
+    @Override
+    public void delete(@NotNull Context ctx, @NotNull String id) {
+        ctx.future(() -> blogService.deleteBlog(id).thenAccept(deletedBlog -> {
+            if (deletedBlog == null) {
+                ctx.status(404);
+                ctx.result("Blog not found");
+                return;
+            }
+            ctx.status(200);
+            ctx.header(BlogController.DELETED_COMMENTS_HEADER, Long.toString(deletedBlog.deletedComments()));
+            ctx.json(deletedBlog.blog());
+        }));
+    }
+}
@@ -0,0 +1,192 @@
+package ch.heig.dai.lab.http.api.blog;
+
+import ch.heig.dai.lab.http.api.MongoConfig;
+import ch.heig.dai.lab.http.api.Page;
+import ch.heig.dai.lab.http.api.Pagination;
+import ch.heig.dai.lab.http.api.Publishers;
+import ch.heig.dai.lab.http.api.ReactiveMongoDbConnection;
+import ch.heig.dai.lab.http.api.comment.AsyncCommentService;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.reactivestreams.client.ClientSession;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.javalin.http.BadRequestResponse;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking storage service for the blog API, built on the reactive streams MongoDB driver.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class AsyncBlogService {
+    /**
+     * The options of the transactions deleting a blog with its comments. The commit waits for a majority of the replica
+     * set, so that the deletion cannot be rolled back by a failover once reported.
+     */
+    private static final TransactionOptions DELETE_TRANSACTION = TransactionOptions.builder()
+                                                                                   .writeConcern(WriteConcern.MAJORITY)
+                                                                                   .build();
+
+    /**
+     * The client of the database, starting the sessions of the transactions.
+     */
+    private final MongoClient client;
+
+    /**
+     * The blog collection.
+     */
+    private final MongoCollection<Blog> blogCollection;
+
+    /**
+     * The blog collection as read by the listings, which may be served by the secondaries.
+     */
+    private final MongoCollection<Blog> listingCollection;
+
+    /**
+     * The comment service, used to delete the comments of a deleted blog.
+     */
+    private final AsyncCommentService commentService;
+
+    /**
+     * Constructor.
+     *
+     * @param commentService The comment service.
+     */
+    public AsyncBlogService(AsyncCommentService commentService) {
+        this.commentService = commentService;
+        client = ReactiveMongoDbConnection.getClient();
+        blogCollection = ReactiveMongoDbConnection.getDatabase().getCollection("blogs", Blog.class);
+        listingCollection = blogCollection.withReadPreference(MongoConfig.replicaReadPreference());
+    }
+
+    /**
+     * Create a new blog.
+     *
+     * @param blog The blog to create.
+     * @return A future completed with the created blog.
+     */
+    public CompletableFuture<Blog> createBlog(Blog blog) {
+        if (blog == null) {
+            throw new NullPointerException("Blog must not be null");
+        } else if (blog.title() == null || blog.content() == null) {
+            throw new NullPointerException("Invalid blog");
+        }
+        String uuid = UUID.randomUUID().toString();
+        String now = LocalDateTime.now().toString();
+        Blog blogWithId = new Blog(uuid, blog.title(), blog.content(), now, now);
+        return Publishers.first(blogCollection.insertOne(blogWithId)).thenApply(result -> blogWithId);
+    }
+
+    /**
+     * Get a blog by ID.
+     *
+     * @param id The ID of the blog to get.
+     * @return A future completed with the blog, or with null if it does not exist.
+     */
+    public CompletableFuture<Blog> getBlogById(String id) {
+        if (id == null) {
+            throw new NullPointerException("Id must not be null");
+        }
+        return Publishers.first(blogCollection.find(Filters.eq("_id", id)).first());
+    }
+
+    /**
+     * Get a page of blogs, ordered by ID. See {@link BlogService#getBlogs(int, String)}.
+     *
+     * @param limit  The maximum number of blogs in the page.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @return A future completed with the page of blogs.
+     */
+    public CompletableFuture<Page<Blog>> getBlogs(int limit, String cursor) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        Bson filter = cursor == null ? new Document() : Filters.gt("_id", Pagination.decodeCursor(cursor));
+        // Fetch one extra blog to know whether there is a next page.
+        return Publishers.toList(listingCollection.find(filter).sort(Sorts.ascending("_id")).limit(limit + 1))
+                         .thenApply(blogs -> {
+                             String next = null;
+                             if (blogs.size() > limit) {
+                                 blogs.remove(limit);
+                                 next = Pagination.encodeCursor(blogs.get(limit - 1)._id());
+                             }
+                             return new Page<>(blogs, next);
+                         });
+    }
+
+    /**
+     * Update a blog.
+     *
+     * @param id   The ID of the blog to update.
+     * @param blog The blog to update.
+     * @return A future completed with the updated blog, or with null if it does not exist.
+     */
+    public CompletableFuture<Blog> updateBlog(String id, Blog blog) {
+        if (id == null || blog == null) {
+            throw new NullPointerException("Blog and id must not be null");
+        } else if (blog.title() == null || blog.content() == null) {
+            throw new BadRequestResponse("Invalid blog");
+        }
+        Document updatedBlog = new Document("title", blog.title()).append("content", blog.content());
+        updatedBlog.append("updatedAt", LocalDateTime.now().toString());
+        return Publishers.first(blogCollection.findOneAndUpdate(Filters.eq("_id", id),
+                                                                new Document("$set", updatedBlog),
+                                                                new FindOneAndUpdateOptions().returnDocument(
+                                                                        ReturnDocument.AFTER)));
+    }
+
+    /**
+     * Delete a blog and its comments in a single transaction, so that no comment survives its blog and a failure
+     * deletes neither. The comments are deleted by a single query, without reading them. A standalone server does not
+     * support the transactions: the comments are then deleted right after their blog.
+     *
+     * @param id The ID of the blog to delete.
+     * @return A future completed with the deleted blog and the number of deleted comments, or with null if the blog
+     * does not exist.
+     */
+    public CompletableFuture<DeletedBlog> deleteBlog(String id) {
+        if (id == null) {
+            throw new NullPointerException("Id must not be null");
+        }
+        if (!MongoConfig.supportsTransactions(client.getClusterDescription())) {
+            return Publishers.first(blogCollection.findOneAndDelete(Filters.eq("_id", id)))
+                             .thenCompose(blog -> deleteComments(null, blog));
+        }
+        return Publishers.first(client.startSession()).thenCompose(session -> {
+            session.startTransaction(DELETE_TRANSACTION);
+            return Publishers.first(blogCollection.findOneAndDelete(session, Filters.eq("_id", id)))
+                             .thenCompose(blog -> deleteComments(session, blog))
+                             .thenCompose(deletedBlog -> Publishers.first(session.commitTransaction())
+                                                                   .thenApply(committed -> deletedBlog))
+                             // Closing the session aborts the transaction if it failed before the commit
+                             .whenComplete((deletedBlog, error) -> session.close());
+        });
+    }
+
+    /**
+     * Delete the comments of a deleted blog, within the transaction that deleted it if any.
+     *
+     * @param session The session of the transaction, or null without a transaction.
+     * @param blog    The deleted blog, or null if it did not exist.
+     * @return A future completed with the deleted blog and the number of deleted comments, or with null if the blog
+     * did not exist.
+     */
+    private CompletableFuture<DeletedBlog> deleteComments(ClientSession session, Blog blog) {
+        if (blog == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return commentService.deleteCommentsByBlogId(session, blog._id())
+                             .thenApply(count -> new DeletedBlog(blog, count));
+    }
+}
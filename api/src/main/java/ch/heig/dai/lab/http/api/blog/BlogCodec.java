@@ -1,7 +1,6 @@
 package ch.heig.dai.lab.http.api.blog;
 
 import org.bson.*;
-import org.bson.codecs.Codec;
 import org.bson.codecs.CollectibleCodec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
@@ -9,26 +8,13 @@ import org.bson.codecs.EncoderContext;
 import java.util.UUID;
 
 /**
- * Blog codec for MongoDB.
+ * Blog codec for MongoDB. The fields are written to and read from the BSON stream directly, without going through an
+ * intermediate {@link Document}.
  *
  * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
  * @author Hugo Germano <hugo.germano@heig-vd.ch>
  */
 public class BlogCodec implements CollectibleCodec<Blog> {
-    /**
-     * The document codec.
-     */
-    private final Codec<Document> documentCodec;
-
-    /**
-     * Constructor.
-     *
-     * @param documentCodec The document codec.
-     */
-    public BlogCodec(Codec<Document> documentCodec) {
-        this.documentCodec = documentCodec;
-    }
-
     /**
      * Encode a blog.
      *
@@ -38,13 +24,13 @@ public class BlogCodec implements CollectibleCodec<Blog> {
      */
     @Override
     public void encode(BsonWriter writer, Blog blog, EncoderContext encoderContext) {
-        Document document = new Document();
-        document.put("_id", blog._id());
-        document.put("title", blog.title());
-        document.put("content", blog.content());
-        document.put("createdAt", blog.createdAt());
-        document.put("updatedAt", blog.updatedAt());
-        documentCodec.encode(writer, document, encoderContext);
+        writer.writeStartDocument();
+        writeString(writer, "_id", blog._id());
+        writeString(writer, "title", blog.title());
+        writeString(writer, "content", blog.content());
+        writeString(writer, "createdAt", blog.createdAt());
+        writeString(writer, "updatedAt", blog.updatedAt());
+        writer.writeEndDocument();
     }
 
     /**
@@ -58,7 +44,7 @@ public class BlogCodec implements CollectibleCodec<Blog> {
     }
 
     /**
-     * Decode a blog.
+     * Decode a blog. Unknown fields are skipped.
      *
      * @param reader         The reader.
      * @param decoderContext The decoder context.
@@ -66,9 +52,53 @@ public class BlogCodec implements CollectibleCodec<Blog> {
      */
     @Override
     public Blog decode(BsonReader reader, DecoderContext decoderContext) {
-        Document document = documentCodec.decode(reader, decoderContext);
-        return new Blog(document.getString("_id"), document.getString("title"), document.getString("content"),
-                        document.getString("createdAt"), document.getString("updatedAt"));
+        String id = null;
+        String title = null;
+        String content = null;
+        String createdAt = null;
+        String updatedAt = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "_id" -> id = readString(reader);
+                case "title" -> title = readString(reader);
+                case "content" -> content = readString(reader);
+                case "createdAt" -> createdAt = readString(reader);
+                case "updatedAt" -> updatedAt = readString(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new Blog(id, title, content, createdAt, updatedAt);
+    }
+
+    /**
+     * Write a string field, or a null field if the value is null.
+     *
+     * @param writer The writer.
+     * @param name   The name of the field.
+     * @param value  The value of the field.
+     */
+    private static void writeString(BsonWriter writer, String name, String value) {
+        if (value == null) {
+            writer.writeNull(name);
+        } else {
+            writer.writeString(name, value);
+        }
+    }
+
+    /**
+     * Read the value of a string field. Values of any other type are skipped and read as null.
+     *
+     * @param reader The reader, positioned on the value.
+     * @return The value.
+     */
+    private static String readString(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) {
+            return reader.readString();
+        }
+        reader.skipValue();
+        return null;
     }
 
     /**
@@ -1,11 +1,17 @@
 package ch.heig.dai.lab.http.api.blog;
 
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.ConditionalGet;
+import ch.heig.dai.lab.http.api.Page;
+import ch.heig.dai.lab.http.api.Pagination;
+import ch.heig.dai.lab.http.api.RawJson;
+import ch.heig.dai.lab.http.api.Streaming;
 import io.javalin.apibuilder.CrudHandler;
 import io.javalin.http.Context;
+import org.bson.RawBsonDocument;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.List;
-
 /**
  * Blog controller class.
  *
@@ -13,6 +19,11 @@ import java.util.List;
  * @author Hugo Germano <hugo.germano@heig-vd.ch>
  */
 public class BlogController implements CrudHandler {
+    /**
+     * Name of the header carrying the number of comments deleted with a blog.
+     */
+    public static final String DELETED_COMMENTS_HEADER = "X-Deleted-Comments";
+
     /**
      * The blog service to use.
      */
@@ -67,25 +78,46 @@ public class BlogController implements CrudHandler {
             ctx.result("Blog not found");
             return;
         }
+        if (ConditionalGet.notModified(ctx, ConditionalGet.etag(blog._id(), blog.updatedAt()),
+                                       ConditionalGet.instant(blog.updatedAt()))) {
+            return;
+        }
         ctx.status(200);
         ctx.json(blog);
     }
 
     /**
-     * Read all blogs.
+     * Read a page of blogs. The page size is set with the {@code limit} query parameter and the following page is
+     * requested by passing the cursor returned in the {@code X-Next-Cursor} header as the {@code after} parameter.
+     * With {@code stream=true}, all the blogs are streamed instead.
      *
      * @param ctx The Javalin context.
      */
     @Override
     public void getAll(@NotNull Context ctx) {
-        final List<Blog> allBlogs = blogService.getAllBlogs();
-        if (allBlogs == null || allBlogs.isEmpty()) {
+        if (Streaming.requested(ctx)) {
+            Streaming.write(ctx, blogService.streamBlogs());
+            return;
+        }
+        final int limit = Pagination.limit(ctx);
+        final String after = Pagination.after(ctx);
+        // The version is read before the page, which is at least as recent even when read from a secondary: a
+        // concurrent write can only make the ETag older than the page. A listing has no last modification date, as
+        // the deletions leave no date behind
+        final CollectionVersion version = blogService.getVersion();
+        if (ConditionalGet.notModified(ctx, ConditionalGet.etag("blogs", version.writes(), limit, after), null)) {
+            return;
+        }
+        final Page<RawBsonDocument> page = blogService.getRawBlogs(limit, after);
+        if (page == null || page.items().isEmpty()) {
             ctx.status(404);
             ctx.result("No blogs found");
             return;
         }
-        ctx.status(200);
-        ctx.json(allBlogs);
+        if (page.next() != null) {
+            ctx.header(Pagination.NEXT_CURSOR_HEADER, page.next());
+        }
+        RawJson.write(ctx, page.items());
     }
 
     /**
@@ -95,16 +127,10 @@ public class BlogController implements CrudHandler {
      */
     @Override
     public void update(@NotNull Context ctx, @NotNull String id) {
-        if (blogService.getBlogById(id) == null) {
-            ctx.status(404);
-            ctx.result("Blog not found");
-            return;
-        }
-
         final Blog updatedBlog = blogService.updateBlog(id, ctx.bodyAsClass(Blog.class));
         if (updatedBlog == null) {
-            ctx.status(500);
-            ctx.result("Blog update failed");
+            ctx.status(404);
+            ctx.result("Blog not found");
             return;
         }
         ctx.status(200);
@@ -112,20 +138,30 @@ public class BlogController implements CrudHandler {
     }
 
     /**
-     * Delete a blog.
+     * Delete a blog and its comments. The number of deleted comments is set in the {@code X-Deleted-Comments} header.
      *
      * @param ctx The Javalin context.
      */
     @Override
     public void delete(@NotNull Context ctx, @NotNull String id) {
-        final Blog deletedBlog = blogService.deleteBlog(id);
+        final DeletedBlog deletedBlog = blogService.deleteBlog(id);
         if (deletedBlog == null) {
             ctx.status(404);
             ctx.result("Blog not found");
             return;
         }
         ctx.status(200);
-        ctx.json(deletedBlog);
+        ctx.header(DELETED_COMMENTS_HEADER, Long.toString(deletedBlog.deletedComments()));
+        ctx.json(deletedBlog.blog());
     }
 
-}
\ No newline at end of file
+    /**
+     * Create, update and delete blogs in bulk. See {@link Bulk} for the format of the request.
+     *
+     * @param ctx The Javalin context.
+     */
+    public void bulk(@NotNull Context ctx) {
+        ctx.status(200);
+        ctx.json(blogService.bulkWrite(Bulk.parse(ctx, Blog.class)));
+    }
+}
@@ -0,0 +1,109 @@
+package ch.heig.dai.lab.http.api.blog;
+
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import org.bson.RawBsonDocument;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Storage engine of the blogs, used by the {@link BlogService}.
+ * <p>
+ * The repository only stores and queries the documents: the validation, the generation of the IDs and timestamps and
+ * the caching are done by the service. The listings return the fields of the API only, sorted by ID.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public interface BlogRepository {
+    /**
+     * Get the version of the blogs, which changes with every write.
+     *
+     * @return The version.
+     */
+    CollectionVersion version();
+
+    /**
+     * Insert a new blog.
+     *
+     * @param blog The blog, with its ID and timestamps.
+     */
+    void insert(Blog blog);
+
+    /**
+     * Find a blog by ID.
+     *
+     * @param id The ID of the blog.
+     * @return The blog, or null if it does not exist.
+     */
+    Blog findById(String id);
+
+    /**
+     * Find all blogs.
+     *
+     * @return The blogs.
+     */
+    List<Blog> findAll();
+
+    /**
+     * Stream all blogs, sorted by ID.
+     *
+     * @return The stream of blogs. It may hold an open cursor and must be closed.
+     */
+    Stream<Blog> stream();
+
+    /**
+     * Find the blogs following an ID, sorted by ID.
+     *
+     * @param afterId The ID after which the blogs are returned, or null to start with the first blog.
+     * @param limit   The maximum number of blogs.
+     * @return The blogs.
+     */
+    List<Blog> findAfter(String afterId, int limit);
+
+    /**
+     * Find the blogs following an ID, sorted by ID, as raw BSON documents.
+     *
+     * @param afterId The ID after which the blogs are returned, or null to start with the first blog.
+     * @param limit   The maximum number of blogs.
+     * @return The blogs.
+     */
+    List<RawBsonDocument> findRawAfter(String afterId, int limit);
+
+    /**
+     * Find the blogs following an ID, sorted by ID, each with its latest comments in creation order in a
+     * {@code comments} field, as raw BSON documents.
+     *
+     * @param afterId  The ID after which the blogs are returned, or null to start with the first blog.
+     * @param limit    The maximum number of blogs.
+     * @param comments The maximum number of comments of each blog.
+     * @return The blogs with their comments.
+     */
+    List<RawBsonDocument> findFeedAfter(String afterId, int limit, int comments);
+
+    /**
+     * Set the title, the content and the update time of a blog.
+     *
+     * @param blog The blog holding the ID and the new values.
+     * @return The updated blog, or null if it does not exist.
+     */
+    Blog update(Blog blog);
+
+    /**
+     * Delete a blog and its comments atomically, when the storage supports it.
+     *
+     * @param id The ID of the blog.
+     * @return The deleted blog and the number of deleted comments, or null if the blog does not exist.
+     */
+    DeletedBlog deleteWithComments(String id);
+
+    /**
+     * Apply the writes of a bulk request in a single unordered bulk write. The updates and the deletions of blogs that
+     * do not exist when they are applied fail as not found.
+     *
+     * @param writes The writes, each on a different blog.
+     * @return The failed writes.
+     */
+    List<Bulk.WriteError> bulkWrite(List<Bulk.Write<Blog>> writes);
+}
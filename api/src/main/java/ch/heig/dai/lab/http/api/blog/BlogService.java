@@ -1,17 +1,24 @@
 package ch.heig.dai.lab.http.api.blog;
 
-import ch.heig.dai.lab.http.api.MongoDbConnection;
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.BulkItemResult;
+import ch.heig.dai.lab.http.api.BulkOperation;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.Page;
+import ch.heig.dai.lab.http.api.Pagination;
+import ch.heig.dai.lab.http.api.cache.CacheStatistics;
+import ch.heig.dai.lab.http.api.cache.ReadThroughCache;
 import ch.heig.dai.lab.http.api.comment.CommentService;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.model.Filters;
+import ch.heig.dai.lab.http.api.search.SearchIndex;
 import io.javalin.http.BadRequestResponse;
-import org.bson.Document;
+import org.bson.RawBsonDocument;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Storage service for the blog API.
@@ -21,16 +28,45 @@ import java.util.UUID;
  */
 public class BlogService {
     /**
-     * The blog collection.
+     * The repository storing the blogs.
      */
-    private final MongoCollection<Blog> blogCollection;
+    private final BlogRepository blogRepository;
+
+    /**
+     * The comment service, deleting the comments of the deleted blogs.
+     */
+    private final CommentService commentService;
+
+    /**
+     * The full-text index of the blogs, updated by every write.
+     */
+    private final SearchIndex searchIndex;
+
+    /**
+     * Cache of the blogs by ID, configured with the {@code BLOG_CACHE_*} environment variables.
+     */
+    private final ReadThroughCache<Blog> blogCache = ReadThroughCache.fromEnv("BLOG");
 
     /**
      * Constructor.
+     *
+     * @param blogRepository The repository storing the blogs.
+     * @param commentService The comment service.
+     * @param searchIndex    The full-text index of the blogs.
+     */
+    public BlogService(BlogRepository blogRepository, CommentService commentService, SearchIndex searchIndex) {
+        this.blogRepository = blogRepository;
+        this.commentService = commentService;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Get the version of the blogs, which changes with every write.
+     *
+     * @return The version.
      */
-    public BlogService() {
-        MongoDatabase database = MongoDbConnection.getDatabase();
-        blogCollection = database.getCollection("blogs", Blog.class);
+    public CollectionVersion getVersion() {
+        return blogRepository.version();
     }
 
     /**
@@ -48,12 +84,14 @@ public class BlogService {
         String uuid = UUID.randomUUID().toString();
         String now = LocalDateTime.now().toString();
         Blog blogWithId = new Blog(uuid, blog.title(), blog.content(), now, now);
-        blogCollection.insertOne(blogWithId);
+        blogRepository.insert(blogWithId);
+        blogCache.put(uuid, blogWithId);
+        searchIndex.putBlog(blogWithId);
         return blogWithId;
     }
 
     /**
-     * Get a blog by ID.
+     * Get a blog by ID. The blog is served from the cache when possible.
      *
      * @param id The ID of the blog to get.
      * @return The blog.
@@ -62,7 +100,7 @@ public class BlogService {
         if (id == null) {
             throw new NullPointerException("Id must not be null");
         }
-        return blogCollection.find(Filters.eq("_id", id)).first();
+        return blogCache.get(id, blogRepository::findById);
     }
 
     /**
@@ -71,7 +109,66 @@ public class BlogService {
      * @return All blogs.
      */
     public List<Blog> getAllBlogs() {
-        return blogCollection.find().into(new ArrayList<>());
+        return blogRepository.findAll();
+    }
+
+    /**
+     * Stream all blogs, ordered by ID, straight from the storage.
+     *
+     * @return The stream of blogs. It may hold an open cursor and must be closed.
+     */
+    public Stream<Blog> streamBlogs() {
+        return blogRepository.stream();
+    }
+
+    /**
+     * Get a page of blogs, ordered by ID.
+     * <p>
+     * The pagination is keyset based: the cursor holds the ID of the last blog of the previous page and the query
+     * seeks past it using the primary index, so every page costs the same regardless of its position.
+     *
+     * @param limit  The maximum number of blogs in the page.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @return The page of blogs.
+     */
+    public Page<Blog> getBlogs(int limit, String cursor) {
+        checkLimit(limit);
+        // Fetch one extra blog to know whether there is a next page.
+        return Pagination.page(blogRepository.findAfter(afterId(cursor), limit + 1), limit, Blog::_id);
+    }
+
+    /**
+     * Get a page of blogs sorted by ID, as raw BSON documents holding the fields of the API only.
+     *
+     * @param limit  The maximum number of blogs of the page.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @return The page.
+     */
+    public Page<RawBsonDocument> getRawBlogs(int limit, String cursor) {
+        checkLimit(limit);
+        return Pagination.page(blogRepository.findRawAfter(afterId(cursor), limit + 1), limit,
+                               blog -> blog.getString("_id").getValue());
+    }
+
+    /**
+     * Check the size of a page.
+     *
+     * @param limit The maximum number of blogs of the page.
+     */
+    private static void checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+    }
+
+    /**
+     * Get the ID after which a page starts.
+     *
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @return The ID of the last blog of the previous page, or null for the first page.
+     */
+    private static String afterId(String cursor) {
+        return cursor == null ? null : Pagination.decodeCursor(cursor);
     }
 
     /**
@@ -79,7 +176,7 @@ public class BlogService {
      *
      * @param id   The ID of the blog to update.
      * @param blog The blog to update.
-     * @return The updated blog.
+     * @return The updated blog, or null if it does not exist.
      */
     public Blog updateBlog(String id, Blog blog) {
         if (id == null || blog == null) {
@@ -87,29 +184,131 @@ public class BlogService {
         } else if (blog.title() == null || blog.content() == null) {
             throw new BadRequestResponse("Invalid blog");
         }
-        Document updatedBlog = new Document("title", blog.title()).append("content", blog.content());
-        updatedBlog.append("updatedAt", LocalDateTime.now().toString());
-        blogCollection.updateOne(Filters.eq("_id", id), new Document("$set", updatedBlog));
-        return getBlogById(id);
+        Blog result = blogRepository.update(new Blog(id, blog.title(), blog.content(), null,
+                                                     LocalDateTime.now().toString()));
+        // Not replaced by the result: the result of a concurrent update may be put after a newer one, and stay cached
+        blogCache.invalidate(id);
+        if (result != null) {
+            searchIndex.putBlog(result);
+        }
+        return result;
     }
 
     /**
-     * Delete a blog.
+     * Delete a blog and its comments atomically, so that no comment survives its blog and a failure deletes neither,
+     * except on a standalone MongoDB server, which has no transactions. The comments are deleted without reading them.
      *
      * @param id The ID of the blog to delete.
-     * @return The deleted blog.
+     * @return The deleted blog and the number of deleted comments, or null if the blog does not exist.
      */
-    public Blog deleteBlog(String id) {
+    public DeletedBlog deleteBlog(String id) {
         if (id == null) {
             throw new NullPointerException("Id must not be null");
         }
-        Blog blogToDelete = getBlogById(id);
-        if (blogToDelete == null) {
-            throw new NullPointerException("Blog must not be null");
+        final DeletedBlog deletedBlog = blogRepository.deleteWithComments(id);
+        // Discarded once committed, so that a concurrent read cannot cache the documents again before the commit
+        blogCache.invalidate(id);
+        if (deletedBlog != null) {
+            commentService.invalidateCacheOfBlogs(List.of(id));
+            searchIndex.removeBlog(id);
         }
-        // Delete all comments for the blog.
-        new CommentService().deleteCommentsByBlogId(id);
-        blogCollection.deleteOne(Filters.eq("_id", id));
-        return blogToDelete;
+        return deletedBlog;
+    }
+
+    /**
+     * Apply the operations of a bulk request in a single unordered bulk write. The updates and deletions of blogs that
+     * do not exist when the bulk write is applied are reported as not found, and the operations of a blog targeted by
+     * several updates or deletions are rejected, as their order is undefined. The comments
+     * of the deleted blogs are deleted once the bulk write is done, outside of its write: unlike
+     * {@link #deleteBlog(String)}, a failure in between leaves them without a blog.
+     *
+     * @param operations The operations.
+     * @return The outcome of each operation, by position.
+     */
+    public List<BulkItemResult> bulkWrite(List<BulkOperation<Blog>> operations) {
+        final BulkItemResult[] results = new BulkItemResult[operations.size()];
+        final Set<String> duplicateIds = Bulk.duplicateIds(operations);
+
+        final String now = LocalDateTime.now().toString();
+        final Bulk.Batch<Blog> batch = new Bulk.Batch<>();
+        for (int i = 0; i < operations.size(); i++) {
+            final BulkOperation<Blog> operation = operations.get(i);
+            final Blog blog = operation.data();
+            final String id = operation.id();
+            switch (operation.operation()) {
+                case BulkOperation.CREATE -> {
+                    if (blog == null || blog.title() == null || blog.content() == null) {
+                        results[i] = BulkItemResult.failure(i, 400, null, "Invalid blog");
+                    } else {
+                        final String uuid = UUID.randomUUID().toString();
+                        batch.add(i, 201, new Bulk.Write<>(Bulk.WriteType.INSERT, uuid,
+                                                           new Blog(uuid, blog.title(), blog.content(), now, now)));
+                    }
+                }
+                case BulkOperation.UPDATE -> {
+                    if (id == null || blog == null || blog.title() == null || blog.content() == null) {
+                        results[i] = BulkItemResult.failure(i, 400, id, "Invalid blog");
+                    } else if (duplicateIds.contains(id)) {
+                        results[i] = BulkItemResult.failure(i, 400, id, "Duplicate id");
+                    } else {
+                        batch.add(i, 200, new Bulk.Write<>(Bulk.WriteType.UPDATE, id,
+                                                           new Blog(id, blog.title(), blog.content(), null, now)));
+                    }
+                }
+                case BulkOperation.DELETE -> {
+                    if (id == null) {
+                        results[i] = BulkItemResult.failure(i, 400, null, "Missing id");
+                    } else if (duplicateIds.contains(id)) {
+                        results[i] = BulkItemResult.failure(i, 400, id, "Duplicate id");
+                    } else {
+                        batch.add(i, 200, new Bulk.Write<>(Bulk.WriteType.DELETE, id, null));
+                    }
+                }
+                default -> results[i] = BulkItemResult.failure(i, 400, id, "Unknown operation");
+            }
+        }
+
+        final List<String> deletedIds = new ArrayList<>();
+        for (Bulk.Write<Blog> write : batch.execute(blogRepository::bulkWrite, results)) {
+            if (write.type() != Bulk.WriteType.INSERT) {
+                blogCache.invalidate(write.id());
+            }
+            if (write.type() == Bulk.WriteType.DELETE) {
+                deletedIds.add(write.id());
+                searchIndex.removeBlog(write.id());
+            } else {
+                searchIndex.putBlog(write.document());
+            }
+        }
+        if (!deletedIds.isEmpty()) {
+            // Delete all comments of the deleted blogs.
+            commentService.deleteCommentsByBlogIds(deletedIds);
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Discard a blog from the cache, after it was changed by another replica.
+     *
+     * @param id The ID of the blog.
+     */
+    public void invalidateCache(String id) {
+        blogCache.invalidate(id);
+    }
+
+    /**
+     * Discard all the blogs from the cache, when changes made by other replicas may have been missed.
+     */
+    public void invalidateCache() {
+        blogCache.invalidateAll();
+    }
+
+    /**
+     * Get the counters of the blog cache.
+     *
+     * @return The cache statistics.
+     */
+    public CacheStatistics getCacheStatistics() {
+        return blogCache.statistics();
     }
 }
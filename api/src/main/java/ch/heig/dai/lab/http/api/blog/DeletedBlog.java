@@ -0,0 +1,12 @@
+package ch.heig.dai.lab.http.api.blog;
+
+/**
+ * Outcome of the deletion of a blog with its comments.
+ *
+ * @param blog            The deleted blog.
+ * @param deletedComments The number of comments deleted with the blog.
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public record DeletedBlog(Blog blog, long deletedComments) {
+}
@@ -0,0 +1,360 @@
+package ch.heig.dai.lab.http.api.blog;
+
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.CausalReads;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.MongoConfig;
+import ch.heig.dai.lab.http.api.MongoDbConnection;
+import ch.heig.dai.lab.http.api.VersionCounter;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import com.mongodb.ReadPreference;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Field;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Variable;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Blog repository stored in MongoDB.
+ * <p>
+ * The listings, including the feed, are read with the read preference of the listings, so they may be served by the
+ * secondaries. The versions, the reads by ID and the writes go to the primary, and every write increments the version.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class MongoBlogRepository implements BlogRepository {
+    /**
+     * The fields of the blogs returned by the listings.
+     */
+    private static final Bson FIELDS = Projections.include("_id", "title", "content", "createdAt", "updatedAt");
+
+    /**
+     * The fields of the comments of the feed.
+     */
+    private static final Bson COMMENT_FIELDS = Projections.include("_id", "_blogId", "author", "content",
+                                                                   "createdAt", "updatedAt");
+
+    /**
+     * The fields of the blogs of the feed.
+     */
+    private static final Bson FEED_FIELDS = Projections.include("_id", "title", "content", "createdAt", "updatedAt",
+                                                                "comments");
+
+    /**
+     * The options of the transactions deleting a blog with its comments. The commit waits for a majority of the replica
+     * set, so that the deletion cannot be rolled back by a failover once reported.
+     */
+    private static final TransactionOptions DELETE_TRANSACTION = TransactionOptions.builder()
+                                                                                   .writeConcern(WriteConcern.MAJORITY)
+                                                                                   .build();
+
+    /**
+     * The client of the database, starting the sessions of the transactions.
+     */
+    private final MongoClient client;
+
+    /**
+     * The blog collection.
+     */
+    private final MongoCollection<Blog> blogCollection;
+
+    /**
+     * The blog collection as read by the listings, which may be served by the secondaries.
+     */
+    private final MongoCollection<Blog> listingCollection;
+
+    /**
+     * The comment collection, where the comments of the deleted blogs are deleted.
+     */
+    private final MongoCollection<Comment> commentCollection;
+
+    /**
+     * The counter of the writes of the blogs, whose value is their version.
+     */
+    private final VersionCounter blogVersions;
+
+    /**
+     * The counter of the writes of the comments, which the deletion of a blog with its comments increments too.
+     */
+    private final VersionCounter commentVersions;
+
+    /**
+     * The ordering of the listings after the versions, so that a listing read from a secondary is never older than the
+     * version read before it.
+     */
+    private final CausalReads causalReads;
+
+    /**
+     * Constructor, on the database of the API.
+     */
+    public MongoBlogRepository() {
+        this(MongoDbConnection.getClient(), MongoDbConnection.getDatabase().getCollection("blogs", Blog.class),
+             MongoDbConnection.getDatabase().getCollection("comments", Comment.class),
+             new VersionCounter(MongoDbConnection.getDatabase(), "blogs"),
+             new VersionCounter(MongoDbConnection.getDatabase(), "comments"),
+             MongoConfig.replicaReadPreference(), MongoDbConnection.getCausalReads());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param client            The client of the database of the collections.
+     * @param blogCollection    The blogs collection.
+     * @param commentCollection The comments collection.
+     * @param blogVersions      The counter of the writes of the blogs.
+     * @param commentVersions   The counter of the writes of the comments.
+     * @param listingReads      The read preference of the listings.
+     * @param causalReads       The ordering of the listings after the versions.
+     */
+    public MongoBlogRepository(MongoClient client, MongoCollection<Blog> blogCollection,
+                               MongoCollection<Comment> commentCollection, VersionCounter blogVersions,
+                               VersionCounter commentVersions, ReadPreference listingReads,
+                               CausalReads causalReads) {
+        this.client = client;
+        this.blogCollection = blogCollection;
+        this.listingCollection = blogCollection.withReadPreference(listingReads);
+        this.commentCollection = commentCollection;
+        this.blogVersions = blogVersions;
+        this.commentVersions = commentVersions;
+        this.causalReads = causalReads;
+    }
+
+    /**
+     * Get the version of the blogs, which changes with every write. It is read from the primary, and the listings
+     * read after it are at least as recent.
+     *
+     * @return The version.
+     */
+    @Override
+    public CollectionVersion version() {
+        return causalReads.version(blogVersions);
+    }
+
+    /**
+     * Insert a new blog.
+     *
+     * @param blog The blog, with its ID and timestamps.
+     */
+    @Override
+    public void insert(Blog blog) {
+        blogVersions.count(() -> blogCollection.insertOne(blog));
+    }
+
+    /**
+     * Find a blog by ID.
+     *
+     * @param id The ID of the blog.
+     * @return The blog, or null if it does not exist.
+     */
+    @Override
+    public Blog findById(String id) {
+        return blogCollection.find(Filters.eq("_id", id)).first();
+    }
+
+    /**
+     * Find all blogs.
+     *
+     * @return The blogs.
+     */
+    @Override
+    public List<Blog> findAll() {
+        return causalReads.read(session -> listingCollection.find(session)
+                                                            .maxTime(causalReads.maxTimeMs(), TimeUnit.MILLISECONDS)
+                                                            .into(new ArrayList<>()));
+    }
+
+    /**
+     * Stream all blogs, sorted by ID.
+     *
+     * @return The stream of blogs. It may hold an open cursor and must be closed.
+     */
+    @Override
+    public Stream<Blog> stream() {
+        return causalReads.stream(session -> listingCollection.find(session).sort(Sorts.ascending("_id")));
+    }
+
+    /**
+     * Find the blogs following an ID, sorted by ID.
+     *
+     * @param afterId The ID after which the blogs are returned, or null to start with the first blog.
+     * @param limit   The maximum number of blogs.
+     * @return The blogs.
+     */
+    @Override
+    public List<Blog> findAfter(String afterId, int limit) {
+        return causalReads.read(session -> findAfter(session, listingCollection, afterId, limit,
+                                                     causalReads.maxTimeMs()));
+    }
+
+    /**
+     * Find the blogs following an ID, sorted by ID, as raw BSON documents.
+     *
+     * @param afterId The ID after which the blogs are returned, or null to start with the first blog.
+     * @param limit   The maximum number of blogs.
+     * @return The blogs.
+     */
+    @Override
+    public List<RawBsonDocument> findRawAfter(String afterId, int limit) {
+        final MongoCollection<RawBsonDocument> collection = listingCollection.withDocumentClass(RawBsonDocument.class);
+        return causalReads.read(session -> findAfter(session, collection, afterId, limit, causalReads.maxTimeMs()));
+    }
+
+    /**
+     * Find the documents of the blogs collection following an ID, sorted by ID. The query seeks past the ID using the
+     * primary index, so it costs the same regardless of the position of the ID.
+     *
+     * @param session    The session of the read.
+     * @param collection The blogs collection, decoding the documents to the wanted class.
+     * @param afterId    The ID after which the documents are returned, or null to start with the first document.
+     * @param limit      The maximum number of documents.
+     * @param maxTimeMs  The maximum time of the query, in milliseconds, 0 for no limit.
+     * @param <T>        The class of the documents.
+     * @return The documents.
+     */
+    private static <T> List<T> findAfter(ClientSession session, MongoCollection<T> collection, String afterId,
+                                         int limit, long maxTimeMs) {
+        final Bson filter = afterId == null ? new Document() : Filters.gt("_id", afterId);
+        return collection.find(session, filter)
+                         .projection(FIELDS)
+                         .sort(Sorts.ascending("_id"))
+                         .limit(limit)
+                         .maxTime(maxTimeMs, TimeUnit.MILLISECONDS)
+                         .into(new ArrayList<>(limit));
+    }
+
+    /**
+     * Find the blogs following an ID with their latest comments. The comments are joined with a {@code $lookup} whose
+     * pipeline is served by the {@code {_blogId, createdAt}} index of the comments, so the whole page costs a single
+     * query.
+     *
+     * @param afterId  The ID after which the blogs are returned, or null to start with the first blog.
+     * @param limit    The maximum number of blogs.
+     * @param comments The maximum number of comments of each blog.
+     * @return The blogs with their comments.
+     */
+    @Override
+    public List<RawBsonDocument> findFeedAfter(String afterId, int limit, int comments) {
+        final Bson filter = afterId == null ? new Document() : Filters.gt("_id", afterId);
+        final List<Bson> latestComments = List.of(
+                Aggregates.match(Filters.expr(new Document("$eq", List.of("$_blogId", "$$blogId")))),
+                Aggregates.sort(Sorts.descending("createdAt")),
+                Aggregates.limit(comments),
+                Aggregates.sort(Sorts.ascending("createdAt")),
+                Aggregates.project(COMMENT_FIELDS));
+        final List<Bson> pipeline = new ArrayList<>(List.of(
+                Aggregates.match(filter),
+                Aggregates.sort(Sorts.ascending("_id")),
+                Aggregates.limit(limit)));
+        if (comments > 0) {
+            pipeline.add(Aggregates.lookup("comments", List.of(new Variable<>("blogId", "$_id")), latestComments,
+                                           "comments"));
+        } else {
+            pipeline.add(Aggregates.addFields(new Field<>("comments", List.of())));
+        }
+        pipeline.add(Aggregates.project(FEED_FIELDS));
+        return causalReads.read(session -> listingCollection.withDocumentClass(RawBsonDocument.class)
+                                                            .aggregate(session, pipeline)
+                                                            .maxTime(causalReads.maxTimeMs(), TimeUnit.MILLISECONDS)
+                                                            .into(new ArrayList<>(limit)));
+    }
+
+    /**
+     * Update a blog. The update and the read of the updated blog are done atomically in a single round trip.
+     *
+     * @param blog The blog holding the ID and the new values.
+     * @return The updated blog, or null if it does not exist.
+     */
+    @Override
+    public Blog update(Blog blog) {
+        return blogVersions.count(() -> blogCollection.findOneAndUpdate(
+                Filters.eq("_id", blog._id()), updateOf(blog),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)));
+    }
+
+    /**
+     * Build the update setting the fields of the API of a blog.
+     *
+     * @param blog The blog holding the new values.
+     * @return The update.
+     */
+    private static Document updateOf(Blog blog) {
+        return new Document("$set", new Document("title", blog.title()).append("content", blog.content())
+                                                                       .append("updatedAt", blog.updatedAt()));
+    }
+
+    /**
+     * Delete a blog and its comments in a single transaction, so that no comment survives its blog and a failure
+     * deletes neither. The comments are deleted by a single query, without reading them.
+     * <p>
+     * A standalone server does not support the transactions: the comments are then deleted right after their blog,
+     * and a failure in between leaves them without a blog.
+     *
+     * @param id The ID of the blog.
+     * @return The deleted blog and the number of deleted comments, or null if the blog does not exist.
+     */
+    @Override
+    public DeletedBlog deleteWithComments(String id) {
+        try {
+            return blogVersions.count(() -> delete(id));
+        } finally {
+            commentVersions.increment();
+        }
+    }
+
+    /**
+     * Delete a blog and its comments, in a transaction on a replica set.
+     *
+     * @param id The ID of the blog.
+     * @return The deleted blog and the number of deleted comments, or null if the blog does not exist.
+     */
+    private DeletedBlog delete(String id) {
+        if (!MongoConfig.supportsTransactions(client.getClusterDescription())) {
+            final Blog blog = blogCollection.findOneAndDelete(Filters.eq("_id", id));
+            if (blog == null) {
+                return null;
+            }
+            return new DeletedBlog(blog, commentCollection.deleteMany(Filters.eq("_blogId", id)).getDeletedCount());
+        }
+        try (ClientSession session = client.startSession()) {
+            // The transaction body is retried on transient errors, such as a write conflict or a failover
+            return session.withTransaction(() -> {
+                final Blog blog = blogCollection.findOneAndDelete(session, Filters.eq("_id", id));
+                if (blog == null) {
+                    return null;
+                }
+                return new DeletedBlog(blog, commentCollection.deleteMany(session, Filters.eq("_blogId", id))
+                                                              .getDeletedCount());
+            }, DELETE_TRANSACTION);
+        }
+    }
+
+    /**
+     * Apply the writes of a bulk request in a single unordered bulk write, the updates and the deletions of blogs that
+     * do not exist failing as not found.
+     *
+     * @param writes The writes.
+     * @return The failed writes.
+     */
+    @Override
+    public List<Bulk.WriteError> bulkWrite(List<Bulk.Write<Blog>> writes) {
+        return blogVersions.count(() -> Bulk.apply(client, blogCollection, writes, ids -> Filters.in("_id", ids),
+                                                   MongoBlogRepository::updateOf, "Blog not found"));
+    }
+}
@@ -0,0 +1,16 @@
+package ch.heig.dai.lab.http.api.cache;
+
+/**
+ * Snapshot of the counters of a cache.
+ *
+ * @param size      The approximate number of entries.
+ * @param hits      The number of lookups that found an entry.
+ * @param misses    The number of lookups that did not find an entry.
+ * @param coalesced The number of missed lookups that waited for the load of a concurrent lookup of the same entry.
+ * @param evictions The number of entries evicted because of the size or expiration policy.
+ * @param hitRate   The ratio of hits over lookups.
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public record CacheStatistics(long size, long hits, long misses, long coalesced, long evictions, double hitRate) {
+}
@@ -0,0 +1,141 @@
+package ch.heig.dai.lab.http.api.cache;
+
+import ch.heig.dai.lab.http.api.Env;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded in-process read-through cache of documents indexed by their ID.
+ * <p>
+ * The cache is bounded both in size, with a W-TinyLFU eviction policy, and in time, as entries expire a fixed delay
+ * after they were written. Concurrent lookups of the same missing key share a single load, absent documents included,
+ * which runs outside of the locks of the cache. Absent documents are not cached.
+ *
+ * @param <V> The type of the cached documents.
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class ReadThroughCache<V> {
+    /**
+     * Default maximum number of entries.
+     */
+    public static final long DEFAULT_MAX_SIZE = 10_000;
+
+    /**
+     * Default time to live of an entry, in seconds.
+     */
+    public static final long DEFAULT_TTL_SECONDS = 60;
+
+    /**
+     * The underlying cache.
+     */
+    private final Cache<String, V> cache;
+
+    /**
+     * The loads of the missing documents in flight.
+     */
+    private final SingleFlight<V> loads = new SingleFlight<>();
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The maximum number of entries.
+     * @param ttl     The time to live of an entry.
+     */
+    public ReadThroughCache(long maxSize, Duration ttl) {
+        cache = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+    }
+
+    /**
+     * Create a cache configured by the {@code <PREFIX>_CACHE_MAX_SIZE} and {@code <PREFIX>_CACHE_TTL_SECONDS}
+     * environment variables.
+     *
+     * @param prefix The prefix of the environment variables.
+     * @param <V>    The type of the cached documents.
+     * @return The cache.
+     */
+    public static <V> ReadThroughCache<V> fromEnv(String prefix) {
+        return new ReadThroughCache<>(Env.getLong(prefix + "_CACHE_MAX_SIZE", DEFAULT_MAX_SIZE),
+                                      Duration.ofSeconds(Env.getLong(prefix + "_CACHE_TTL_SECONDS",
+                                                                     DEFAULT_TTL_SECONDS)));
+    }
+
+    /**
+     * Get a document, loading it on a miss. The load does not run in a compute of the cache, which would hold a lock of
+     * the cache, and pin the carrier of a virtual thread, for the whole query.
+     *
+     * @param id     The ID of the document.
+     * @param loader The function loading the document from the database, returning null if it does not exist.
+     * @return The document, or null if it does not exist.
+     */
+    public V get(String id, Function<String, V> loader) {
+        final V cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        return loads.load(id, flight -> {
+            final V value = loader.apply(id);
+            if (value != null) {
+                // A write during the load forgets it before updating the cache: the written document prevails
+                cache.asMap().compute(id, (key, current) -> flight.isForgotten() ? current : value);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Store a document that is known to be up-to-date, such as a document that was just written.
+     *
+     * @param id    The ID of the document.
+     * @param value The document.
+     */
+    public void put(String id, V value) {
+        loads.forget(id);
+        cache.put(id, value);
+    }
+
+    /**
+     * Discard a document, after it was updated or deleted.
+     *
+     * @param id The ID of the document.
+     */
+    public void invalidate(String id) {
+        loads.forget(id);
+        cache.invalidate(id);
+    }
+
+    /**
+     * Discard the cached documents matching a predicate, e.g. the documents deleted by a query. Only the cache is
+     * scanned.
+     *
+     * @param predicate The predicate of the documents to discard.
+     */
+    public void invalidateIf(Predicate<V> predicate) {
+        loads.forgetAll();
+        cache.asMap().values().removeIf(predicate);
+    }
+
+    /**
+     * Discard all the documents.
+     */
+    public void invalidateAll() {
+        loads.forgetAll();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Get a snapshot of the counters of the cache.
+     *
+     * @return The statistics.
+     */
+    public CacheStatistics statistics() {
+        final CacheStats stats = cache.stats();
+        return new CacheStatistics(cache.estimatedSize(), stats.hitCount(), stats.missCount(), loads.getCoalesced(),
+                                   stats.evictionCount(), stats.hitRate());
+    }
+}
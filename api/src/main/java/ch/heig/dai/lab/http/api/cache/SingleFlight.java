@@ -0,0 +1,137 @@
+package ch.heig.dai.lab.http.api.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalescing of concurrent identical loads: while a load of a key is in flight, the other callers asking for the same
+ * key wait for its result instead of sending the same query to the database. Once the load completes, the next caller
+ * starts a new one, so nothing is cached.
+ * <p>
+ * A write must {@link #forget(String) forget} the key it changed, so that the callers arriving after the write start a
+ * new load rather than wait for a load that may have read the document before the write. The callers already waiting
+ * still receive the result of the forgotten load, as they were concurrent with the write.
+ *
+ * @param <V> The type of the loaded values.
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class SingleFlight<V> {
+    /**
+     * The loads in flight, by key.
+     */
+    private final ConcurrentHashMap<String, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * The number of callers that waited for the load of another caller.
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * A load in flight.
+     *
+     * @param <V> The type of the loaded value.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public static final class Flight<V> {
+        /**
+         * The result of the load, shared by the callers.
+         */
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        /**
+         * Whether a write forgot the load, whose result may thus predate the write.
+         */
+        private volatile boolean forgotten;
+
+        /**
+         * Check whether a write forgot the load since it started, in which case its result may predate the write.
+         *
+         * @return True if the load was forgotten.
+         */
+        public boolean isForgotten() {
+            return forgotten;
+        }
+    }
+
+    /**
+     * Load a value, or wait for the load of the same key already in flight. The first caller runs the load on its own
+     * thread.
+     *
+     * @param key    The key of the load, e.g. the ID of the document.
+     * @param loader The function loading the value, given the flight to check whether it was forgotten.
+     * @return The loaded value, shared by the coalesced callers.
+     * @throws RuntimeException The exception thrown by the load, rethrown to every coalesced caller.
+     */
+    public V load(String key, Function<Flight<V>, V> loader) {
+        final Flight<V> flight = new Flight<>();
+        final Flight<V> pending = flights.putIfAbsent(key, flight);
+        if (pending != null) {
+            coalesced.increment();
+            return await(pending);
+        }
+        try {
+            final V value = loader.apply(flight);
+            flight.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Wait for the result of a load in flight.
+     *
+     * @param flight The load.
+     * @param <V>    The type of the loaded value.
+     * @return The loaded value.
+     * @throws RuntimeException The exception thrown by the load.
+     */
+    private static <V> V await(Flight<V> flight) {
+        try {
+            return flight.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            } else if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Forget the load of a key in flight, after the value of the key was written.
+     *
+     * @param key The key.
+     */
+    public void forget(String key) {
+        final Flight<V> flight = flights.remove(key);
+        if (flight != null) {
+            flight.forgotten = true;
+        }
+    }
+
+    /**
+     * Forget all the loads in flight, after any value may have been written.
+     */
+    public void forgetAll() {
+        flights.keySet().forEach(this::forget);
+    }
+
+    /**
+     * Get the number of callers that waited for the load of another caller instead of loading the value themselves.
+     *
+     * @return The number of coalesced callers.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,154 @@
+package ch.heig.dai.lab.http.api.comment;
+
+import ch.heig.dai.lab.http.api.blog.AsyncBlogService;
+import io.javalin.apibuilder.CrudHandler;
+import io.javalin.http.Context;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Comment controller backed by the non-blocking services. The request thread is released while the database is
+ * queried and the response is written when the queries complete.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class AsyncCommentController implements CrudHandler {
+    /**
+     * The comment service.
+     */
+    private final AsyncCommentService commentService;
+
+    /**
+     * The blog service. Used to check if a blog exists.
+     */
+    private final AsyncBlogService blogService;
+
+    /**
+     * Constructor.
+     *
+     * @param commentService The comment service to use.
+     * @param blogService    The blog service to use.
+     */
+    public AsyncCommentController(AsyncCommentService commentService, AsyncBlogService blogService) {
+        this.commentService = commentService;
+        this.blogService = blogService;
+    }
+
+    /**
+     * Create a comment.
+     *
+     * @param ctx Context of the http query.
+     */
+    @Override
+    public void create(@NotNull Context ctx) {
+        Comment newComment = ctx.bodyAsClass(Comment.class);
+
+        if (newComment == null || newComment.author() == null || newComment.content() == null) {
+            ctx.status(400);
+            ctx.result("Invalid comment");
+            return;
+        }
+
+        ctx.future(() -> blogService.getBlogById(ctx.pathParam("blogId")).thenCompose(blog -> {
+            if (blog == null || !blog._id().equals(newComment._blogId())) {
+                ctx.status(404);
+                ctx.result("Blog not found");
+                return CompletableFuture.completedFuture(null);
+            }
+            return commentService.createComment(newComment).thenAccept(createdComment -> {
+                ctx.status(201);
+                ctx.json(createdComment);
+            });
+        }));
+    }
+
+    /**
+     * Get a single comment.
+     *
+     * @param ctx Context of the http query.
+     * @param id  ID of the comment.
+     */
+    @Override
+    public void getOne(@NotNull Context ctx, @NotNull String id) {
+        ctx.future(() -> blogService.getBlogById(ctx.pathParam("blogId")).thenCompose(blog -> {
+            if (blog == null) {
+                ctx.status(404);
+                ctx.result("Blog not found");
+                return CompletableFuture.completedFuture(null);
+            }
+            return commentService.getCommentById(id).thenAccept(comment -> {
+                if (comment == null) {
+                    ctx.status(404);
+                    ctx.result("Comment not found");
+                    return;
+                }
+                ctx.status(200);
+                ctx.json(comment);
+            });
+        }));
+    }
+
+    /**
+     * Get all comments of a blog.
+     *
+     * @param ctx Context of the http query.
+     */
+    @Override
+    public void getAll(@NotNull Context ctx) {
+        ctx.future(() -> commentService.getCommentsByBlogId(ctx.pathParam("blogId")).thenAccept(comments -> {
+            if (comments.isEmpty()) {
+                ctx.status(404);
+                ctx.result("No comments found");
+                return;
+            }
+            ctx.status(200);
+            ctx.json(comments);
+        }));
+    }
+
+    /**
+     * Update a comment. The comment must belong to the blog of the path, which is checked by the update itself.
+     *
+     * @param ctx Context of the http query.
+     * @param id  ID of the comment to update.
+     */
+    @Override
+    public void update(@NotNull Context ctx, @NotNull String id) {
+        final Comment comment = ctx.bodyAsClass(Comment.class);
+        if (!ctx.pathParam("blogId").equals(comment._blogId())) {
+            ctx.status(404);
+            ctx.result("Blog not found");
+            return;
+        }
+        ctx.future(() -> commentService.updateComment(id, comment).thenAccept(updatedComment -> {
+            if (updatedComment == null) {
+                ctx.status(404);
+                ctx.result("Comment not found");
+                return;
+            }
+            ctx.status(200);
+            ctx.json(updatedComment);
+        }));
+    }
+
+    /**
+     * Delete a comment. The comment must belong to the blog of the path, which is checked by the deletion itself.
+     *
+     * @param ctx Context of the http query.
+     * @param id  ID of the comment to delete.
+     */
+    @Override
+    public void delete(@NotNull Context ctx, @NotNull String id) {
+        ctx.future(() -> commentService.deleteComment(ctx.pathParam("blogId"), id).thenAccept(deletedComment -> {
+            if (deletedComment == null) {
+                ctx.status(404);
+                ctx.result("Comment not found");
+                return;
+            }
+            ctx.status(200);
+            ctx.json(deletedComment);
+        }));
+    }
+}
@@ -0,0 +1,147 @@
+package ch.heig.dai.lab.http.api.comment;
+
+import ch.heig.dai.lab.http.api.MongoConfig;
+import ch.heig.dai.lab.http.api.Publishers;
+import ch.heig.dai.lab.http.api.ReactiveMongoDbConnection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.reactivestreams.client.ClientSession;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.javalin.http.BadRequestResponse;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking comment CRUD service, built on the reactive streams MongoDB driver.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class AsyncCommentService {
+    /**
+     * The comments collection.
+     */
+    private final MongoCollection<Comment> commentsCollection;
+
+    /**
+     * The comments collection as read by the listings, which may be served by the secondaries.
+     */
+    private final MongoCollection<Comment> listingCollection;
+
+    /**
+     * Constructor.
+     */
+    public AsyncCommentService() {
+        commentsCollection = ReactiveMongoDbConnection.getDatabase().getCollection("comments", Comment.class);
+        listingCollection = commentsCollection.withReadPreference(MongoConfig.replicaReadPreference());
+    }
+
+    /**
+     * Create a new comment.
+     *
+     * @param comment The comment to create.
+     * @return A future completed with the created comment.
+     */
+    public CompletableFuture<Comment> createComment(Comment comment) {
+        if (comment == null) {
+            throw new NullPointerException("Comment must not be null");
+        } else if (comment._blogId() == null || comment.author() == null || comment.content() == null) {
+            throw new BadRequestResponse("Invalid comment");
+        }
+        String uuid = UUID.randomUUID().toString();
+        String now = LocalDateTime.now().toString();
+
+        Comment commentWithId = new Comment(uuid, comment._blogId(), comment.author(), comment.content(), now, now);
+        return Publishers.first(commentsCollection.insertOne(commentWithId)).thenApply(result -> commentWithId);
+    }
+
+    /**
+     * Get a comment by ID.
+     *
+     * @param id The ID of the comment.
+     * @return A future completed with the comment, or with null if it does not exist.
+     */
+    public CompletableFuture<Comment> getCommentById(String id) {
+        if (id == null) {
+            throw new NullPointerException("Id must not be null");
+        }
+        return Publishers.first(commentsCollection.find(Filters.eq("_id", id)).first());
+    }
+
+    /**
+     * Get all comments for a specified blog.
+     *
+     * @param id The id of the blog.
+     * @return A future completed with the comments of the blog.
+     */
+    public CompletableFuture<List<Comment>> getCommentsByBlogId(String id) {
+        if (id == null) {
+            throw new NullPointerException("Id must not be null");
+        }
+        return Publishers.toList(listingCollection.find(Filters.eq("_blogId", id))
+                                                  .sort(Sorts.ascending("createdAt")));
+    }
+
+    /**
+     * Update a comment of the blog set in the comment.
+     *
+     * @param id      The ID of the comment to update.
+     * @param comment The comment to update.
+     * @return A future completed with the updated comment, or with null if the blog has no such comment.
+     */
+    public CompletableFuture<Comment> updateComment(String id, Comment comment) {
+        if (id == null || comment == null) {
+            throw new NullPointerException("Comment and id must not be null");
+        } else if (comment._blogId() == null || comment.author() == null || comment.content() == null) {
+            throw new BadRequestResponse("Invalid comment");
+        }
+        Document updatedComment = new Document("author", comment.author()).append("content", comment.content());
+        // Set the updatedAt field to the current time.
+        updatedComment.append("updatedAt", LocalDateTime.now().toString());
+        return Publishers.first(commentsCollection.findOneAndUpdate(Filters.and(Filters.eq("_id", id),
+                                                                                Filters.eq("_blogId",
+                                                                                           comment._blogId())),
+                                                                    new Document("$set", updatedComment),
+                                                                    new FindOneAndUpdateOptions().returnDocument(
+                                                                            ReturnDocument.AFTER)));
+    }
+
+    /**
+     * Delete a comment of a blog.
+     *
+     * @param blogId The ID of the blog of the comment.
+     * @param id     The ID of the comment to delete.
+     * @return A future completed with the deleted comment, or with null if the blog has no such comment.
+     */
+    public CompletableFuture<Comment> deleteComment(String blogId, String id) {
+        if (blogId == null || id == null) {
+            throw new NullPointerException("Blog id and id must not be null");
+        }
+        return Publishers.first(commentsCollection.findOneAndDelete(Filters.and(Filters.eq("_id", id),
+                                                                                Filters.eq("_blogId", blogId))));
+    }
+
+    /**
+     * Delete all comments for a specified blog in a single query, within the transaction of a session if any.
+     *
+     * @param session The session of the transaction, or null without a transaction.
+     * @param blogId  The ID of the blog.
+     * @return A future completed with the number of deleted comments.
+     */
+    public CompletableFuture<Long> deleteCommentsByBlogId(ClientSession session, String blogId) {
+        if (blogId == null) {
+            throw new NullPointerException("blogId must not be null");
+        }
+        final Bson filter = Filters.eq("_blogId", blogId);
+        return Publishers.first(session == null ? commentsCollection.deleteMany(filter)
+                                                : commentsCollection.deleteMany(session, filter))
+                         .thenApply(result -> result.getDeletedCount());
+    }
+}
@@ -1,7 +1,6 @@
 package ch.heig.dai.lab.http.api.comment;
 
 import org.bson.*;
-import org.bson.codecs.Codec;
 import org.bson.codecs.CollectibleCodec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
@@ -9,26 +8,13 @@ import org.bson.codecs.EncoderContext;
 import java.util.UUID;
 
 /**
- * Comment codec for MongoDB.
+ * Comment codec for MongoDB. The fields are written to and read from the BSON stream directly, without going through
+ * an intermediate {@link Document}.
  *
  * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
  * @author Hugo Germano <hugo.germano@heig-vd.ch>
  */
 public class CommentCodec implements CollectibleCodec<Comment> {
-    /**
-     * The document codec.
-     */
-    private final Codec<Document> documentCodec;
-
-    /**
-     * Constructor.
-     *
-     * @param documentCodec The document codec.
-     */
-    public CommentCodec(Codec<Document> documentCodec) {
-        this.documentCodec = documentCodec;
-    }
-
     /**
      * Encode a comment.
      *
@@ -38,14 +24,14 @@ public class CommentCodec implements CollectibleCodec<Comment> {
      */
     @Override
     public void encode(BsonWriter writer, Comment comment, EncoderContext encoderContext) {
-        Document document = new Document();
-        document.put("_id", comment._id());
-        document.put("_blogId", comment._blogId());
-        document.put("content", comment.content());
-        document.put("author", comment.author());
-        document.put("createdAt", comment.createdAt());
-        document.put("updatedAt", comment.updatedAt());
-        documentCodec.encode(writer, document, encoderContext);
+        writer.writeStartDocument();
+        writeString(writer, "_id", comment._id());
+        writeString(writer, "_blogId", comment._blogId());
+        writeString(writer, "content", comment.content());
+        writeString(writer, "author", comment.author());
+        writeString(writer, "createdAt", comment.createdAt());
+        writeString(writer, "updatedAt", comment.updatedAt());
+        writer.writeEndDocument();
     }
 
     /**
@@ -59,7 +45,7 @@ public class CommentCodec implements CollectibleCodec<Comment> {
     }
 
     /**
-     * Decode a comment.
+     * Decode a comment. Unknown fields are skipped.
      *
      * @param reader         The reader.
      * @param decoderContext The decoder context.
@@ -67,13 +53,55 @@ public class CommentCodec implements CollectibleCodec<Comment> {
      */
     @Override
     public Comment decode(BsonReader reader, DecoderContext decoderContext) {
-        Document document = documentCodec.decode(reader, decoderContext);
-        return new Comment(document.getString("_id"),
-                           document.getString("_blogId"),
-                           document.getString("author"),
-                           document.getString("content"),
-                           document.getString("createdAt"),
-                           document.getString("updatedAt"));
+        String id = null;
+        String blogId = null;
+        String author = null;
+        String content = null;
+        String createdAt = null;
+        String updatedAt = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "_id" -> id = readString(reader);
+                case "_blogId" -> blogId = readString(reader);
+                case "author" -> author = readString(reader);
+                case "content" -> content = readString(reader);
+                case "createdAt" -> createdAt = readString(reader);
+                case "updatedAt" -> updatedAt = readString(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new Comment(id, blogId, author, content, createdAt, updatedAt);
+    }
+
+    /**
+     * Write a string field, or a null field if the value is null.
+     *
+     * @param writer The writer.
+     * @param name   The name of the field.
+     * @param value  The value of the field.
+     */
+    private static void writeString(BsonWriter writer, String name, String value) {
+        if (value == null) {
+            writer.writeNull(name);
+        } else {
+            writer.writeString(name, value);
+        }
+    }
+
+    /**
+     * Read the value of a string field. Values of any other type are skipped and read as null.
+     *
+     * @param reader The reader, positioned on the value.
+     * @return The value.
+     */
+    private static String readString(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) {
+            return reader.readString();
+        }
+        reader.skipValue();
+        return null;
     }
 
     /**
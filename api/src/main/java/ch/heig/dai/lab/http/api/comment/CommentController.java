@@ -1,9 +1,15 @@
 package ch.heig.dai.lab.http.api.comment;
 
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.ConditionalGet;
+import ch.heig.dai.lab.http.api.RawJson;
+import ch.heig.dai.lab.http.api.Streaming;
 import ch.heig.dai.lab.http.api.blog.Blog;
 import ch.heig.dai.lab.http.api.blog.BlogService;
 import io.javalin.apibuilder.CrudHandler;
 import io.javalin.http.Context;
+import org.bson.RawBsonDocument;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
@@ -90,18 +96,35 @@ public class CommentController implements CrudHandler {
             ctx.result("Comment not found");
             return;
         }
+        if (ConditionalGet.notModified(ctx, ConditionalGet.etag(comment._id(), comment.updatedAt()),
+                                       ConditionalGet.instant(comment.updatedAt()))) {
+            return;
+        }
         ctx.status(200);
         ctx.json(comment);
     }
 
     /**
-     * Get all comments.
+     * Get all comments. With {@code stream=true}, the comments are streamed as they are read from the database.
      *
      * @param ctx Context of the http query.
      */
     @Override
     public void getAll(@NotNull Context ctx) {
-        List<Comment> comments = commentService.getCommentsByBlogId(ctx.pathParam("blogId"));
+        if (Streaming.requested(ctx)) {
+            Streaming.write(ctx, commentService.streamCommentsByBlogId(ctx.pathParam("blogId")));
+            return;
+        }
+
+        final String blogId = ctx.pathParam("blogId");
+        // The version is read before the comments, which are at least as recent even when read from a secondary: a
+        // concurrent write can only make the ETag older than the comments. A listing has no last modification date,
+        // as the deletions leave no date behind
+        final CollectionVersion version = commentService.getVersion();
+        if (ConditionalGet.notModified(ctx, ConditionalGet.etag("comments", blogId, version.writes()), null)) {
+            return;
+        }
+        List<RawBsonDocument> comments = commentService.getRawCommentsByBlogId(blogId);
 
         if (comments == null || comments.isEmpty()) {
             ctx.status(404);
@@ -109,27 +132,20 @@ public class CommentController implements CrudHandler {
             return;
         }
 
-        ctx.status(200);
-        ctx.json(comments);
+        RawJson.write(ctx, comments);
     }
 
     /**
-     * Update a comment.
+     * Update a comment. The comment must belong to the blog of the path, which is checked by the update itself.
      *
      * @param ctx Context of the http query.
-     * @param id  ID of the comment to delete.
+     * @param id  ID of the comment to update.
      */
     @Override
     public void update(@NotNull Context ctx, @NotNull String id) {
-        if (commentService.getCommentById(id) == null) {
-            ctx.status(404);
-            ctx.result("Comment not found");
-            return;
-        }
-
         Comment comment = ctx.bodyAsClass(Comment.class);
         String blogId = ctx.pathParam("blogId");
-        if (blogService.getBlogById(blogId) == null || !comment._blogId().equals(blogId)) {
+        if (!blogId.equals(comment._blogId())) {
             ctx.status(404);
             ctx.result("Blog not found");
             return;
@@ -137,8 +153,8 @@ public class CommentController implements CrudHandler {
 
         Comment updatedComment = commentService.updateComment(id, comment);
         if (updatedComment == null) {
-            ctx.status(500);
-            ctx.result("Comment update failed");
+            ctx.status(404);
+            ctx.result("Comment not found");
             return;
         }
 
@@ -147,27 +163,36 @@ public class CommentController implements CrudHandler {
     }
 
     /**
-     * Delete a comment.
+     * Delete a comment. The comment must belong to the blog of the path, which is checked by the deletion itself.
      *
      * @param ctx Context of the http query.
      * @param id  ID of the comment to delete.
      */
     @Override
     public void delete(@NotNull Context ctx, @NotNull String id) {
-        final String blogId = ctx.pathParam("blogId");
-        if (blogService.getBlogById(blogId) == null) {
+        Comment deletedComment = commentService.deleteComment(ctx.pathParam("blogId"), id);
+        if (deletedComment == null) {
             ctx.status(404);
-            ctx.result("Blog not found");
+            ctx.result("Comment not found");
             return;
         }
+        ctx.status(200);
+        ctx.json(deletedComment);
+    }
 
-        Comment deletedComment = commentService.deleteComment(id);
-        if (deletedComment == null) {
+    /**
+     * Create, update and delete comments of a blog in bulk. See {@link Bulk} for the format of the request.
+     *
+     * @param ctx Context of the http query.
+     */
+    public void bulk(@NotNull Context ctx) {
+        final String blogId = ctx.pathParam("blogId");
+        if (blogService.getBlogById(blogId) == null) {
             ctx.status(404);
-            ctx.result("Comment not found");
+            ctx.result("Blog not found");
             return;
         }
         ctx.status(200);
-        ctx.json(deletedComment);
+        ctx.json(commentService.bulkWrite(blogId, Bulk.parse(ctx, Comment.class)));
     }
 }
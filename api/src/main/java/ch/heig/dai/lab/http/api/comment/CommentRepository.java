@@ -0,0 +1,118 @@
+package ch.heig.dai.lab.http.api.comment;
+
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import org.bson.RawBsonDocument;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Storage engine of the comments, used by the {@link CommentService}.
+ * <p>
+ * The repository only stores and queries the documents: the validation, the generation of the IDs and timestamps and
+ * the caching are done by the service. The comments of a blog are returned with the fields of the API only, sorted by
+ * creation time.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public interface CommentRepository {
+    /**
+     * Get the version of the comments, which changes with every write.
+     *
+     * @return The version.
+     */
+    CollectionVersion version();
+
+    /**
+     * Insert a new comment.
+     *
+     * @param comment The comment, with its ID and timestamps.
+     */
+    void insert(Comment comment);
+
+    /**
+     * Insert several new comments in a single unordered bulk write, for the group commit of the comments created by
+     * concurrent requests.
+     *
+     * @param comments The comments, with their IDs and timestamps.
+     * @return The failed inserts.
+     */
+    List<Bulk.WriteError> insertAll(List<Comment> comments);
+
+    /**
+     * Find a comment by ID.
+     *
+     * @param id The ID of the comment.
+     * @return The comment, or null if it does not exist.
+     */
+    Comment findById(String id);
+
+    /**
+     * Find all comments.
+     *
+     * @return The comments.
+     */
+    List<Comment> findAll();
+
+    /**
+     * Find the comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @return The comments.
+     */
+    List<Comment> findByBlogId(String blogId);
+
+    /**
+     * Find the comments of a blog, as raw BSON documents.
+     *
+     * @param blogId The ID of the blog.
+     * @return The comments.
+     */
+    List<RawBsonDocument> findRawByBlogId(String blogId);
+
+    /**
+     * Stream the comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @return The stream of comments. It may hold an open cursor and must be closed.
+     */
+    Stream<Comment> streamByBlogId(String blogId);
+
+    /**
+     * Set the author, the content and the update time of a comment of the blog set in the comment.
+     *
+     * @param comment The comment holding the IDs of the comment and of its blog, and the new values.
+     * @return The updated comment, or null if the blog has no such comment.
+     */
+    Comment update(Comment comment);
+
+    /**
+     * Delete a comment of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @param id     The ID of the comment.
+     * @return The deleted comment, or null if the blog has no such comment.
+     */
+    Comment delete(String blogId, String id);
+
+    /**
+     * Delete all comments of several blogs.
+     *
+     * @param blogIds The IDs of the blogs.
+     * @return The number of deleted comments.
+     */
+    long deleteByBlogIds(Collection<String> blogIds);
+
+    /**
+     * Apply the writes of a bulk request on the comments of a blog in a single unordered bulk write. The updates and
+     * the deletions of comments that the blog does not have when they are applied fail as not found.
+     *
+     * @param blogId The ID of the blog.
+     * @param writes The writes, each on a different comment.
+     * @return The failed writes.
+     */
+    List<Bulk.WriteError> bulkWrite(String blogId, List<Bulk.Write<Comment>> writes);
+}
@@ -1,18 +1,24 @@
 package ch.heig.dai.lab.http.api.comment;
 
-import ch.heig.dai.lab.http.api.MongoDbConnection;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.model.Filters;
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.BulkItemResult;
+import ch.heig.dai.lab.http.api.BulkOperation;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.GroupCommit;
+import ch.heig.dai.lab.http.api.cache.CacheStatistics;
+import ch.heig.dai.lab.http.api.cache.ReadThroughCache;
+import ch.heig.dai.lab.http.api.cache.SingleFlight;
+import ch.heig.dai.lab.http.api.search.SearchIndex;
 import io.javalin.http.BadRequestResponse;
-import org.bson.Document;
+import org.bson.RawBsonDocument;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-
-import static com.mongodb.client.model.Filters.eq;
+import java.util.stream.Stream;
 
 /**
  * Comment CRUD service.
@@ -22,20 +28,72 @@ import static com.mongodb.client.model.Filters.eq;
  */
 public class CommentService {
     /**
-     * The comments collection.
+     * The repository storing the comments.
+     */
+    private final CommentRepository commentRepository;
+
+    /**
+     * The full-text index of the blogs, updated by every write of their comments.
+     */
+    private final SearchIndex searchIndex;
+
+    /**
+     * Cache of the comments by ID, configured with the {@code COMMENT_CACHE_*} environment variables.
+     */
+    private final ReadThroughCache<Comment> commentCache = ReadThroughCache.fromEnv("COMMENT");
+
+    /**
+     * The loads of the comments of a blog in flight, shared by the concurrent listings of the same blog.
      */
-    private final MongoCollection<Comment> commentsCollection;
+    private final SingleFlight<List<Comment>> commentLoads = new SingleFlight<>();
+
+    /**
+     * The loads of the raw comments of a blog in flight, shared by the concurrent listings of the same blog.
+     */
+    private final SingleFlight<List<RawBsonDocument>> rawCommentLoads = new SingleFlight<>();
+
+    /**
+     * The group commit of the created comments, or null to insert each comment on its own.
+     */
+    private final GroupCommit<Comment> groupCommit;
+
+    /**
+     * Constructor, inserting each created comment on its own.
+     *
+     * @param commentRepository The repository storing the comments.
+     * @param searchIndex       The full-text index of the blogs.
+     */
+    public CommentService(CommentRepository commentRepository, SearchIndex searchIndex) {
+        this(commentRepository, searchIndex, null);
+    }
 
     /**
      * Constructor.
+     *
+     * @param commentRepository The repository storing the comments.
+     * @param searchIndex       The full-text index of the blogs.
+     * @param groupCommit       The group commit of the created comments, writing them with
+     *                          {@link CommentRepository#insertAll(List)}, or null to insert each comment on its own.
      */
-    public CommentService() {
-        MongoDatabase database = MongoDbConnection.getDatabase();
-        commentsCollection = database.getCollection("comments", Comment.class);
+    public CommentService(CommentRepository commentRepository, SearchIndex searchIndex,
+                          GroupCommit<Comment> groupCommit) {
+        this.commentRepository = commentRepository;
+        this.searchIndex = searchIndex;
+        this.groupCommit = groupCommit;
     }
 
     /**
-     * Create a new comment.
+     * Get the version of the comments, which changes with every write.
+     *
+     * @return The version.
+     */
+    public CollectionVersion getVersion() {
+        return commentRepository.version();
+    }
+
+    /**
+     * Create a new comment. With a group commit, the comment is inserted together with the comments created by the
+     * concurrent requests, and the call returns once the batch is written.
      *
      * @param comment The comment to create.
      * @return The created comment.
@@ -50,12 +108,19 @@ public class CommentService {
         String now = LocalDateTime.now().toString();
 
         Comment commentWithId = new Comment(uuid, comment._blogId(), comment.author(), comment.content(), now, now);
-        commentsCollection.insertOne(commentWithId);
+        if (groupCommit != null) {
+            groupCommit.write(commentWithId);
+        } else {
+            commentRepository.insert(commentWithId);
+        }
+        forgetLoadsOf(commentWithId._blogId());
+        commentCache.put(uuid, commentWithId);
+        searchIndex.putComment(commentWithId);
         return commentWithId;
     }
 
     /**
-     * Get a comment by ID.
+     * Get a comment by ID. The comment is served from the cache when possible.
      *
      * @param id The ID of the comment.
      * @return The comment.
@@ -64,7 +129,7 @@ public class CommentService {
         if (id == null) {
             throw new NullPointerException("Id must not be null");
         }
-        return commentsCollection.find(Filters.eq("_id", id)).first();
+        return commentCache.get(id, commentRepository::findById);
     }
 
     /**
@@ -73,28 +138,55 @@ public class CommentService {
      * @return All comments.
      */
     public List<Comment> getAllComments() {
-        return commentsCollection.find().into(new ArrayList<>());
+        return commentRepository.findAll();
     }
 
     /**
-     * Get all comments for a specified blog.
+     * Get all comments for a specified blog. Concurrent calls for the same blog share a single query.
      *
      * @param id The id of the blog.
-     * @return A list of the comments for the blog.
+     * @return An unmodifiable list of the comments for the blog.
      */
     public List<Comment> getCommentsByBlogId(String id) {
         if (id == null) {
             throw new NullPointerException("Id must not be null");
         }
-        return commentsCollection.find(eq("_blogId", id)).into(new ArrayList<>());
+        return commentLoads.load(id, flight -> Collections.unmodifiableList(commentRepository.findByBlogId(id)));
+    }
+
+    /**
+     * Get all comments for a specified blog, as raw BSON documents holding the fields of the API only. Concurrent calls
+     * for the same blog share a single query.
+     *
+     * @param id The id of the blog.
+     * @return An unmodifiable list of the comments for the blog.
+     */
+    public List<RawBsonDocument> getRawCommentsByBlogId(String id) {
+        if (id == null) {
+            throw new NullPointerException("Id must not be null");
+        }
+        return rawCommentLoads.load(id, flight -> Collections.unmodifiableList(commentRepository.findRawByBlogId(id)));
+    }
+
+    /**
+     * Stream all comments for a specified blog straight from the storage.
+     *
+     * @param id The id of the blog.
+     * @return The stream of comments. It may hold an open cursor and must be closed.
+     */
+    public Stream<Comment> streamCommentsByBlogId(String id) {
+        if (id == null) {
+            throw new NullPointerException("Id must not be null");
+        }
+        return commentRepository.streamByBlogId(id);
     }
 
     /**
-     * Update a comment
+     * Update a comment of the blog set in the comment.
      *
      * @param id      The ID of the comment to update.
      * @param comment The comment to update.
-     * @return The updated comment.
+     * @return The updated comment, or null if the blog has no such comment.
      */
     public Comment updateComment(String id, Comment comment) {
         if (id == null || comment == null) {
@@ -102,46 +194,186 @@ public class CommentService {
         } else if (comment._blogId() == null || comment.author() == null || comment.content() == null) {
             throw new BadRequestResponse("Invalid comment");
         }
-        Document updatedComment = new Document("author", comment.author()).append("content", comment.content());
         // Set the updatedAt field to the current time.
-        updatedComment.append("updatedAt", LocalDateTime.now().toString());
-        commentsCollection.updateOne(Filters.eq("_id", id), new Document("$set", updatedComment));
-        return getCommentById(id);
+        Comment result = commentRepository.update(new Comment(id, comment._blogId(), comment.author(),
+                                                              comment.content(), null,
+                                                              LocalDateTime.now().toString()));
+        forgetLoadsOf(comment._blogId());
+        // Not replaced by the result: the result of a concurrent update may be put after a newer one, and stay cached
+        commentCache.invalidate(id);
+        if (result != null) {
+            searchIndex.putComment(result);
+        }
+        return result;
     }
 
     /**
-     * Delete a comment.
+     * Delete a comment of a blog.
      *
-     * @param id The ID of the comment to delete.
-     * @return The deleted comment.
+     * @param blogId The ID of the blog of the comment.
+     * @param id     The ID of the comment to delete.
+     * @return The deleted comment, or null if the blog has no such comment.
      */
-    public Comment deleteComment(String id) {
-        if (id == null) {
-            throw new NullPointerException("Id must not be null");
+    public Comment deleteComment(String blogId, String id) {
+        if (blogId == null || id == null) {
+            throw new NullPointerException("Blog id and id must not be null");
         }
-        Comment commentToDelete = getCommentById(id);
-        if (commentToDelete == null) {
-            throw new NullPointerException("Comment must not be null");
+        Comment deletedComment = commentRepository.delete(blogId, id);
+        forgetLoadsOf(blogId);
+        commentCache.invalidate(id);
+        if (deletedComment != null) {
+            searchIndex.removeComment(id);
+        }
+        return deletedComment;
+    }
+
+    /**
+     * Delete all comments of several blogs.
+     *
+     * @param blogIds The IDs of the blogs.
+     * @return The number of deleted comments.
+     */
+    public long deleteCommentsByBlogIds(Collection<String> blogIds) {
+        if (blogIds == null) {
+            throw new NullPointerException("blogIds must not be null");
         }
-        commentsCollection.deleteOne(Filters.eq("_id", id));
-        return commentToDelete;
+        long count = commentRepository.deleteByBlogIds(blogIds);
+        blogIds.forEach(this::forgetLoadsOf);
+        invalidateCacheOfBlogs(blogIds);
+        searchIndex.removeCommentsOfBlogs(blogIds);
+        return count;
     }
 
     /**
-     * Delete all comments for a specified blog.
+     * Apply the operations of a bulk request on the comments of a blog in a single unordered bulk write. The updates
+     * and deletions of comments that the blog does not have when the bulk write is applied are reported as not found,
+     * and the operations of a comment targeted by several updates or deletions are rejected, as their order is
+     * undefined.
      *
-     * @param blogId The ID of the blog to delete.
-     * @return The deleted comments.
+     * @param blogId     The ID of the blog.
+     * @param operations The operations.
+     * @return The outcome of each operation, by position.
      */
-    public List<Comment> deleteCommentsByBlogId(String blogId) {
+    public List<BulkItemResult> bulkWrite(String blogId, List<BulkOperation<Comment>> operations) {
         if (blogId == null) {
             throw new NullPointerException("blogId must not be null");
         }
-        List<Comment> commentsToDelete = getCommentsByBlogId(blogId);
-        if (commentsToDelete == null) {
-            throw new NullPointerException("Comment must not be null");
+        final BulkItemResult[] results = new BulkItemResult[operations.size()];
+        final Set<String> duplicateIds = Bulk.duplicateIds(operations);
+
+        final String now = LocalDateTime.now().toString();
+        final Bulk.Batch<Comment> batch = new Bulk.Batch<>();
+        for (int i = 0; i < operations.size(); i++) {
+            final BulkOperation<Comment> operation = operations.get(i);
+            final Comment comment = operation.data();
+            final String id = operation.id();
+            final boolean valid = comment != null && comment.author() != null && comment.content() != null &&
+                                  (comment._blogId() == null || comment._blogId().equals(blogId));
+            switch (operation.operation()) {
+                case BulkOperation.CREATE -> {
+                    if (!valid) {
+                        results[i] = BulkItemResult.failure(i, 400, null, "Invalid comment");
+                    } else {
+                        final String uuid = UUID.randomUUID().toString();
+                        batch.add(i, 201, new Bulk.Write<>(Bulk.WriteType.INSERT, uuid,
+                                                           new Comment(uuid, blogId, comment.author(),
+                                                                       comment.content(), now, now)));
+                    }
+                }
+                case BulkOperation.UPDATE -> {
+                    if (id == null || !valid) {
+                        results[i] = BulkItemResult.failure(i, 400, id, "Invalid comment");
+                    } else if (duplicateIds.contains(id)) {
+                        results[i] = BulkItemResult.failure(i, 400, id, "Duplicate id");
+                    } else {
+                        batch.add(i, 200, new Bulk.Write<>(Bulk.WriteType.UPDATE, id,
+                                                           new Comment(id, blogId, comment.author(),
+                                                                       comment.content(), null, now)));
+                    }
+                }
+                case BulkOperation.DELETE -> {
+                    if (id == null) {
+                        results[i] = BulkItemResult.failure(i, 400, null, "Missing id");
+                    } else if (duplicateIds.contains(id)) {
+                        results[i] = BulkItemResult.failure(i, 400, id, "Duplicate id");
+                    } else {
+                        batch.add(i, 200, new Bulk.Write<>(Bulk.WriteType.DELETE, id, null));
+                    }
+                }
+                default -> results[i] = BulkItemResult.failure(i, 400, id, "Unknown operation");
+            }
+        }
+
+        final List<Bulk.Write<Comment>> succeeded = batch.execute(writes -> commentRepository.bulkWrite(blogId, writes),
+                                                                  results);
+        forgetLoadsOf(blogId);
+        for (Bulk.Write<Comment> write : succeeded) {
+            if (write.type() != Bulk.WriteType.INSERT) {
+                commentCache.invalidate(write.id());
+            }
+            if (write.type() == Bulk.WriteType.DELETE) {
+                searchIndex.removeComment(write.id());
+            } else {
+                searchIndex.putComment(write.document());
+            }
         }
-        commentsCollection.deleteMany(Filters.eq("_blogId", blogId));
-        return commentsToDelete;
+        return List.of(results);
+    }
+
+    /**
+     * Forget the listings of the comments of a blog in flight, after a write to its comments, so that the following
+     * listings see the write.
+     *
+     * @param blogId The ID of the blog.
+     */
+    private void forgetLoadsOf(String blogId) {
+        commentLoads.forget(blogId);
+        rawCommentLoads.forget(blogId);
+    }
+
+    /**
+     * Get the number of listings of comments that waited for the query of a concurrent listing of the same blog.
+     *
+     * @return The number of coalesced listings.
+     */
+    public long getCoalescedListings() {
+        return commentLoads.getCoalesced() + rawCommentLoads.getCoalesced();
+    }
+
+    /**
+     * Discard a comment from the cache, after it was changed by another replica.
+     *
+     * @param id The ID of the comment.
+     */
+    public void invalidateCache(String id) {
+        commentCache.invalidate(id);
+    }
+
+    /**
+     * Discard the comments of some blogs from the cache, after they were deleted.
+     *
+     * @param blogIds The IDs of the blogs.
+     */
+    public void invalidateCacheOfBlogs(Collection<String> blogIds) {
+        final Set<String> ids = Set.copyOf(blogIds);
+        commentCache.invalidateIf(comment -> ids.contains(comment._blogId()));
+    }
+
+    /**
+     * Discard all the comments from the cache, when changes made by other replicas may have been missed.
+     */
+    public void invalidateCache() {
+        commentLoads.forgetAll();
+        rawCommentLoads.forgetAll();
+        commentCache.invalidateAll();
+    }
+
+    /**
+     * Get the counters of the comment cache.
+     *
+     * @return The cache statistics.
+     */
+    public CacheStatistics getCacheStatistics() {
+        return commentCache.statistics();
     }
 }
@@ -0,0 +1,301 @@
+package ch.heig.dai.lab.http.api.comment;
+
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.CausalReads;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.MongoConfig;
+import ch.heig.dai.lab.http.api.MongoDbConnection;
+import ch.heig.dai.lab.http.api.VersionCounter;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Comment repository stored in MongoDB.
+ * <p>
+ * The listings are read with the read preference of the listings, so they may be served by the secondaries. The
+ * version, the reads by ID and the writes go to the primary, and every write increments the version. The comments of a
+ * blog are served by the {@code {_blogId, createdAt}} index.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class MongoCommentRepository implements CommentRepository {
+    /**
+     * The fields of the comments returned by the listings.
+     */
+    private static final Bson FIELDS = Projections.include("_id", "_blogId", "author", "content", "createdAt",
+                                                           "updatedAt");
+
+    /**
+     * The client of the database, starting the sessions of the transactions.
+     */
+    private final MongoClient client;
+
+    /**
+     * The comments collection.
+     */
+    private final MongoCollection<Comment> commentsCollection;
+
+    /**
+     * The comments collection as read by the listings, which may be served by the secondaries.
+     */
+    private final MongoCollection<Comment> listingCollection;
+
+    /**
+     * The comments collection as written by the group commits, with their own write concern.
+     */
+    private final MongoCollection<Comment> groupCommitCollection;
+
+    /**
+     * The counter of the writes of the comments, whose value is their version.
+     */
+    private final VersionCounter versions;
+
+    /**
+     * The ordering of the listings after the versions, so that a listing read from a secondary is never older than the
+     * version read before it.
+     */
+    private final CausalReads causalReads;
+
+    /**
+     * Constructor, on the database of the API.
+     */
+    public MongoCommentRepository() {
+        this(MongoDbConnection.getClient(), MongoDbConnection.getDatabase().getCollection("comments", Comment.class),
+             new VersionCounter(MongoDbConnection.getDatabase(), "comments"), MongoConfig.replicaReadPreference(),
+             MongoConfig.groupCommitWriteConcern(), MongoDbConnection.getCausalReads());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param client             The client of the database of the collection.
+     * @param commentsCollection The comments collection.
+     * @param versions           The counter of the writes of the comments.
+     * @param listingReads       The read preference of the listings.
+     * @param groupCommitWrites  The write concern of the group commits.
+     * @param causalReads        The ordering of the listings after the versions.
+     */
+    public MongoCommentRepository(MongoClient client, MongoCollection<Comment> commentsCollection,
+                                  VersionCounter versions, ReadPreference listingReads,
+                                  WriteConcern groupCommitWrites, CausalReads causalReads) {
+        this.client = client;
+        this.commentsCollection = commentsCollection;
+        this.versions = versions;
+        this.listingCollection = commentsCollection.withReadPreference(listingReads);
+        this.groupCommitCollection = commentsCollection.withWriteConcern(groupCommitWrites);
+        this.causalReads = causalReads;
+    }
+
+    /**
+     * Get the version of the comments, which changes with every write. It is read from the primary, and the listings
+     * read after it are at least as recent.
+     *
+     * @return The version.
+     */
+    @Override
+    public CollectionVersion version() {
+        return causalReads.version(versions);
+    }
+
+    /**
+     * Insert a new comment.
+     *
+     * @param comment The comment, with its ID and timestamps.
+     */
+    @Override
+    public void insert(Comment comment) {
+        versions.count(() -> commentsCollection.insertOne(comment));
+    }
+
+    /**
+     * Insert several new comments in a single unordered bulk write, with the write concern of the group commits. The
+     * write concern is acknowledged once for the whole batch, so a journaled or majority write concern costs a single
+     * wait for the journal or the secondaries.
+     *
+     * @param comments The comments, with their IDs and timestamps.
+     * @return The failed inserts.
+     * @throws MongoBulkWriteException If the write concern failed, in which case no insert is known to be durable.
+     */
+    @Override
+    public List<Bulk.WriteError> insertAll(List<Comment> comments) {
+        return versions.count(() -> insertMany(comments));
+    }
+
+    /**
+     * Insert several new comments in a single unordered bulk write, with the write concern of the group commits.
+     *
+     * @param comments The comments, with their IDs and timestamps.
+     * @return The failed inserts.
+     */
+    private List<Bulk.WriteError> insertMany(List<Comment> comments) {
+        try {
+            groupCommitCollection.insertMany(comments, new InsertManyOptions().ordered(false));
+            return List.of();
+        } catch (MongoBulkWriteException e) {
+            if (e.getWriteConcernError() != null) {
+                throw e;
+            }
+            return Bulk.errors(e);
+        }
+    }
+
+    /**
+     * Find a comment by ID.
+     *
+     * @param id The ID of the comment.
+     * @return The comment, or null if it does not exist.
+     */
+    @Override
+    public Comment findById(String id) {
+        return commentsCollection.find(Filters.eq("_id", id)).first();
+    }
+
+    /**
+     * Find all comments.
+     *
+     * @return The comments.
+     */
+    @Override
+    public List<Comment> findAll() {
+        return causalReads.read(session -> listingCollection.find(session)
+                                                            .maxTime(causalReads.maxTimeMs(), TimeUnit.MILLISECONDS)
+                                                            .into(new ArrayList<>()));
+    }
+
+    /**
+     * Find the comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @return The comments.
+     */
+    @Override
+    public List<Comment> findByBlogId(String blogId) {
+        return causalReads.read(session -> listingCollection.find(session, Filters.eq("_blogId", blogId))
+                                                            .sort(Sorts.ascending("createdAt"))
+                                                            .maxTime(causalReads.maxTimeMs(), TimeUnit.MILLISECONDS)
+                                                            .into(new ArrayList<>()));
+    }
+
+    /**
+     * Find the comments of a blog, as raw BSON documents.
+     *
+     * @param blogId The ID of the blog.
+     * @return The comments.
+     */
+    @Override
+    public List<RawBsonDocument> findRawByBlogId(String blogId) {
+        return causalReads.read(session -> listingCollection.withDocumentClass(RawBsonDocument.class)
+                                                            .find(session, Filters.eq("_blogId", blogId))
+                                                            .projection(FIELDS)
+                                                            .sort(Sorts.ascending("createdAt"))
+                                                            .maxTime(causalReads.maxTimeMs(), TimeUnit.MILLISECONDS)
+                                                            .into(new ArrayList<>()));
+    }
+
+    /**
+     * Stream the comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @return The stream of comments. It may hold an open cursor and must be closed.
+     */
+    @Override
+    public Stream<Comment> streamByBlogId(String blogId) {
+        return causalReads.stream(session -> listingCollection.find(session, Filters.eq("_blogId", blogId))
+                                                              .sort(Sorts.ascending("createdAt")));
+    }
+
+    /**
+     * Update a comment of the blog set in the comment. The update and the read of the updated comment are done
+     * atomically in a single round trip.
+     *
+     * @param comment The comment holding the IDs of the comment and of its blog, and the new values.
+     * @return The updated comment, or null if the blog has no such comment.
+     */
+    @Override
+    public Comment update(Comment comment) {
+        return versions.count(() -> commentsCollection.findOneAndUpdate(
+                filterOf(comment._blogId(), comment._id()), updateOf(comment),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)));
+    }
+
+    /**
+     * Delete a comment of a blog. The comment is deleted and returned atomically in a single round trip.
+     *
+     * @param blogId The ID of the blog.
+     * @param id     The ID of the comment.
+     * @return The deleted comment, or null if the blog has no such comment.
+     */
+    @Override
+    public Comment delete(String blogId, String id) {
+        return versions.count(() -> commentsCollection.findOneAndDelete(filterOf(blogId, id)));
+    }
+
+    /**
+     * Delete all comments of several blogs.
+     *
+     * @param blogIds The IDs of the blogs.
+     * @return The number of deleted comments.
+     */
+    @Override
+    public long deleteByBlogIds(Collection<String> blogIds) {
+        return versions.count(() -> commentsCollection.deleteMany(Filters.in("_blogId", blogIds)).getDeletedCount());
+    }
+
+    /**
+     * Apply the writes of a bulk request on the comments of a blog in a single unordered bulk write, the updates and
+     * the deletions of comments that the blog does not have failing as not found.
+     *
+     * @param blogId The ID of the blog.
+     * @param writes The writes.
+     * @return The failed writes.
+     */
+    @Override
+    public List<Bulk.WriteError> bulkWrite(String blogId, List<Bulk.Write<Comment>> writes) {
+        return versions.count(() -> Bulk.apply(client, commentsCollection, writes,
+                                               ids -> Filters.and(Filters.in("_id", ids),
+                                                                  Filters.eq("_blogId", blogId)),
+                                               MongoCommentRepository::updateOf, "Comment not found"));
+    }
+
+    /**
+     * Build the filter of a comment of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @param id     The ID of the comment.
+     * @return The filter.
+     */
+    private static Bson filterOf(String blogId, String id) {
+        return Filters.and(Filters.eq("_id", id), Filters.eq("_blogId", blogId));
+    }
+
+    /**
+     * Build the update setting the fields of the API of a comment.
+     *
+     * @param comment The comment holding the new values.
+     * @return The update.
+     */
+    private static Document updateOf(Comment comment) {
+        return new Document("$set", new Document("author", comment.author()).append("content", comment.content())
+                                                                            .append("updatedAt",
+                                                                                    comment.updatedAt()));
+    }
+}
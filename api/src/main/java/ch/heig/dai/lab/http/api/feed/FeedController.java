@@ -0,0 +1,100 @@
+package ch.heig.dai.lab.http.api.feed;
+
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.ConditionalGet;
+import ch.heig.dai.lab.http.api.Page;
+import ch.heig.dai.lab.http.api.Pagination;
+import ch.heig.dai.lab.http.api.RawJson;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+import org.bson.RawBsonDocument;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Controller of the feed: the blogs with their latest comments.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class FeedController {
+    /**
+     * Default number of comments of each blog.
+     */
+    public static final int DEFAULT_COMMENTS = 10;
+
+    /**
+     * Maximum number of comments of each blog.
+     */
+    public static final int MAX_COMMENTS = 100;
+
+    /**
+     * The feed service.
+     */
+    private final FeedService feedService;
+
+    /**
+     * Constructor.
+     *
+     * @param feedService The feed service.
+     */
+    public FeedController(FeedService feedService) {
+        this.feedService = feedService;
+    }
+
+    /**
+     * Get a page of the feed. The page size is read from the {@code limit} query parameter, the page from the
+     * {@code after} cursor and the number of comments of each blog from the {@code comments} query parameter.
+     *
+     * @param ctx The Javalin context.
+     */
+    public void getFeed(@NotNull Context ctx) {
+        final int limit = Pagination.limit(ctx);
+        final String after = Pagination.after(ctx);
+        final int comments = comments(ctx);
+        // The versions are read before the feed, which is at least as recent even when read from a secondary: a
+        // concurrent write can only make the ETag older than the feed. The feed has no last modification date, as the
+        // deletions leave no date behind
+        final List<CollectionVersion> versions = feedService.getVersions();
+        if (ConditionalGet.notModified(ctx, ConditionalGet.etag("feed", versions.get(0).writes(),
+                                                                versions.get(1).writes(), limit, after, comments),
+                                       null)) {
+            return;
+        }
+        final Page<RawBsonDocument> page = feedService.getFeed(limit, after, comments);
+        if (page == null || page.items().isEmpty()) {
+            ctx.status(404);
+            ctx.result("No blogs found");
+            return;
+        }
+        if (page.next() != null) {
+            ctx.header(Pagination.NEXT_CURSOR_HEADER, page.next());
+        }
+        RawJson.write(ctx, page.items());
+    }
+
+    /**
+     * Read the number of comments of each blog from the {@code comments} query parameter, capped to
+     * {@link #MAX_COMMENTS}.
+     *
+     * @param ctx The Javalin context.
+     * @return The number of comments.
+     * @throws BadRequestResponse If the parameter is not a positive number or zero.
+     */
+    private static int comments(Context ctx) {
+        final String comments = ctx.queryParam("comments");
+        if (comments == null || comments.isBlank()) {
+            return DEFAULT_COMMENTS;
+        }
+        try {
+            final int value = Integer.parseInt(comments);
+            if (value < 0) {
+                throw new BadRequestResponse("Invalid comments");
+            }
+            return Math.min(value, MAX_COMMENTS);
+        } catch (NumberFormatException e) {
+            throw new BadRequestResponse("Invalid comments");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ch.heig.dai.lab.http.api.feed;
+
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.Page;
+import ch.heig.dai.lab.http.api.Pagination;
+import ch.heig.dai.lab.http.api.blog.BlogRepository;
+import ch.heig.dai.lab.http.api.comment.CommentRepository;
+import org.bson.RawBsonDocument;
+
+import java.util.List;
+
+/**
+ * Service building the feed of the blogs, each with its latest comments, in a single query of the blog repository.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class FeedService {
+    /**
+     * The repository of the blogs, which joins their comments.
+     */
+    private final BlogRepository blogRepository;
+
+    /**
+     * The repository of the comments.
+     */
+    private final CommentRepository commentRepository;
+
+    /**
+     * Constructor.
+     *
+     * @param blogRepository    The repository of the blogs, which joins their comments.
+     * @param commentRepository The repository of the comments.
+     */
+    public FeedService(BlogRepository blogRepository, CommentRepository commentRepository) {
+        this.blogRepository = blogRepository;
+        this.commentRepository = commentRepository;
+    }
+
+    /**
+     * Get the versions of the blogs and comments, which change with every write of the feed content.
+     *
+     * @return The versions of the blogs and of the comments.
+     */
+    public List<CollectionVersion> getVersions() {
+        return List.of(blogRepository.version(), commentRepository.version());
+    }
+
+    /**
+     * Get a page of blogs sorted by ID, each with its latest comments in creation order, as raw BSON documents.
+     *
+     * @param limit    The maximum number of blogs of the page.
+     * @param cursor   The cursor returned with the previous page, or null for the first page.
+     * @param comments The maximum number of comments of each blog.
+     * @return The page.
+     */
+    public Page<RawBsonDocument> getFeed(int limit, String cursor, int comments) {
+        if (limit < 1 || comments < 0) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        final String afterId = cursor == null ? null : Pagination.decodeCursor(cursor);
+        // Fetch one extra blog to know whether there is a next page.
+        return Pagination.page(blogRepository.findFeedAfter(afterId, limit + 1, comments), limit,
+                               blog -> blog.getString("_id").getValue());
+    }
+}
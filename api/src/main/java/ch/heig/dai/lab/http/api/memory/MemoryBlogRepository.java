@@ -0,0 +1,235 @@
+package ch.heig.dai.lab.http.api.memory;
+
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.BlogCodec;
+import ch.heig.dai.lab.http.api.blog.BlogRepository;
+import ch.heig.dai.lab.http.api.blog.DeletedBlog;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Blog repository stored in a {@link MemoryStore}.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class MemoryBlogRepository implements BlogRepository {
+    /**
+     * The codec writing the blogs to BSON, as stored by MongoDB.
+     */
+    private static final BlogCodec BLOG_CODEC = new BlogCodec();
+
+    /**
+     * The codec copying the BSON documents to raw documents.
+     */
+    private static final BsonDocumentCodec DOCUMENT_CODEC = new BsonDocumentCodec();
+
+    /**
+     * The store.
+     */
+    private final MemoryStore store;
+
+    /**
+     * Constructor.
+     *
+     * @param store The store.
+     */
+    public MemoryBlogRepository(MemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Get the version of the blogs, which changes with every write.
+     *
+     * @return The version.
+     */
+    @Override
+    public CollectionVersion version() {
+        return store.blogsVersion();
+    }
+
+    /**
+     * Insert a new blog.
+     *
+     * @param blog The blog, with its ID and timestamps.
+     * @throws IllegalStateException If a blog already has its ID.
+     */
+    @Override
+    public void insert(Blog blog) {
+        if (!store.insertBlog(blog)) {
+            throw new IllegalStateException("Duplicate blog id " + blog._id());
+        }
+    }
+
+    /**
+     * Find a blog by ID.
+     *
+     * @param id The ID of the blog.
+     * @return The blog, or null if it does not exist.
+     */
+    @Override
+    public Blog findById(String id) {
+        return store.blog(id);
+    }
+
+    /**
+     * Find all blogs.
+     *
+     * @return The blogs.
+     */
+    @Override
+    public List<Blog> findAll() {
+        return new ArrayList<>(store.blogsAfter(null));
+    }
+
+    /**
+     * Stream all blogs, sorted by ID.
+     *
+     * @return The stream of blogs.
+     */
+    @Override
+    public Stream<Blog> stream() {
+        return store.blogsAfter(null).stream();
+    }
+
+    /**
+     * Find the blogs following an ID, sorted by ID. The sorted map seeks past the ID, so the query costs the same
+     * regardless of the position of the ID.
+     *
+     * @param afterId The ID after which the blogs are returned, or null to start with the first blog.
+     * @param limit   The maximum number of blogs.
+     * @return The blogs.
+     */
+    @Override
+    public List<Blog> findAfter(String afterId, int limit) {
+        final List<Blog> page = new ArrayList<>(limit);
+        for (Blog blog : store.blogsAfter(afterId)) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(blog);
+        }
+        return page;
+    }
+
+    /**
+     * Find the blogs following an ID, sorted by ID, as raw BSON documents.
+     *
+     * @param afterId The ID after which the blogs are returned, or null to start with the first blog.
+     * @param limit   The maximum number of blogs.
+     * @return The blogs.
+     */
+    @Override
+    public List<RawBsonDocument> findRawAfter(String afterId, int limit) {
+        final List<RawBsonDocument> page = new ArrayList<>(limit);
+        for (Blog blog : findAfter(afterId, limit)) {
+            page.add(new RawBsonDocument(bsonOf(blog), DOCUMENT_CODEC));
+        }
+        return page;
+    }
+
+    /**
+     * Find the blogs following an ID, sorted by ID, each with its latest comments in creation order in a
+     * {@code comments} field, as raw BSON documents. The latest comments are read from the end of the index of the
+     * comments of each blog.
+     *
+     * @param afterId  The ID after which the blogs are returned, or null to start with the first blog.
+     * @param limit    The maximum number of blogs.
+     * @param comments The maximum number of comments of each blog.
+     * @return The blogs with their comments.
+     */
+    @Override
+    public List<RawBsonDocument> findFeedAfter(String afterId, int limit, int comments) {
+        final List<RawBsonDocument> page = new ArrayList<>(limit);
+        for (Blog blog : findAfter(afterId, limit)) {
+            final BsonArray latest = new BsonArray();
+            if (comments > 0) {
+                for (Comment comment : store.latestCommentsOf(blog._id(), comments)) {
+                    latest.add(MemoryCommentRepository.bsonOf(comment));
+                }
+            }
+            page.add(new RawBsonDocument(bsonOf(blog).append("comments", latest), DOCUMENT_CODEC));
+        }
+        return page;
+    }
+
+    /**
+     * Set the title, the content and the update time of a blog.
+     *
+     * @param blog The blog holding the ID and the new values.
+     * @return The updated blog, or null if it does not exist.
+     */
+    @Override
+    public Blog update(Blog blog) {
+        return store.updateBlog(blog);
+    }
+
+    /**
+     * Delete a blog and its comments atomically.
+     *
+     * @param id The ID of the blog.
+     * @return The deleted blog and the number of deleted comments, or null if the blog does not exist.
+     */
+    @Override
+    public DeletedBlog deleteWithComments(String id) {
+        return store.deleteBlog(id);
+    }
+
+    /**
+     * Apply the writes of a bulk request. Like an unordered bulk write of MongoDB, the writes are applied one by one
+     * and a failing write does not prevent the others from being applied. A deleted blog is deleted with its comments.
+     * The updates and the deletions of blogs that do not exist fail as not found.
+     *
+     * @param writes The writes.
+     * @return The failed writes.
+     */
+    @Override
+    public List<Bulk.WriteError> bulkWrite(List<Bulk.Write<Blog>> writes) {
+        final List<Bulk.WriteError> errors = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i++) {
+            final Bulk.Write<Blog> write = writes.get(i);
+            switch (write.type()) {
+                case INSERT -> {
+                    if (!store.insertBlog(write.document())) {
+                        errors.add(new Bulk.WriteError(i, 409, "Duplicate blog id " + write.id()));
+                    }
+                }
+                case UPDATE -> {
+                    if (store.updateBlog(write.document()) == null) {
+                        errors.add(new Bulk.WriteError(i, 404, "Blog not found"));
+                    }
+                }
+                case DELETE -> {
+                    if (store.deleteBlog(write.id()) == null) {
+                        errors.add(new Bulk.WriteError(i, 404, "Blog not found"));
+                    }
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Write a blog to a BSON document, with the fields stored by MongoDB.
+     *
+     * @param blog The blog.
+     * @return The document.
+     */
+    private static BsonDocument bsonOf(Blog blog) {
+        final BsonDocument document = new BsonDocument();
+        BLOG_CODEC.encode(new BsonDocumentWriter(document), blog, EncoderContext.builder().build());
+        return document;
+    }
+}
@@ -0,0 +1,230 @@
+package ch.heig.dai.lab.http.api.memory;
+
+import ch.heig.dai.lab.http.api.Bulk;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import ch.heig.dai.lab.http.api.comment.CommentCodec;
+import ch.heig.dai.lab.http.api.comment.CommentRepository;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Comment repository stored in a {@link MemoryStore}.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class MemoryCommentRepository implements CommentRepository {
+    /**
+     * The codec writing the comments to BSON, as stored by MongoDB.
+     */
+    private static final CommentCodec COMMENT_CODEC = new CommentCodec();
+
+    /**
+     * The codec copying the BSON documents to raw documents.
+     */
+    private static final BsonDocumentCodec DOCUMENT_CODEC = new BsonDocumentCodec();
+
+    /**
+     * The store.
+     */
+    private final MemoryStore store;
+
+    /**
+     * Constructor.
+     *
+     * @param store The store.
+     */
+    public MemoryCommentRepository(MemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Get the version of the comments, which changes with every write.
+     *
+     * @return The version.
+     */
+    @Override
+    public CollectionVersion version() {
+        return store.commentsVersion();
+    }
+
+    /**
+     * Insert a new comment.
+     *
+     * @param comment The comment, with its ID and timestamps.
+     * @throws IllegalStateException If a comment already has its ID.
+     */
+    @Override
+    public void insert(Comment comment) {
+        if (!store.insertComment(comment)) {
+            throw new IllegalStateException("Duplicate comment id " + comment._id());
+        }
+    }
+
+    /**
+     * Insert several new comments. Like an unordered bulk write of MongoDB, the comments are inserted one by one and a
+     * failing insert does not prevent the others from being applied.
+     *
+     * @param comments The comments, with their IDs and timestamps.
+     * @return The failed inserts.
+     */
+    @Override
+    public List<Bulk.WriteError> insertAll(List<Comment> comments) {
+        final List<Bulk.WriteError> errors = new ArrayList<>();
+        for (int i = 0; i < comments.size(); i++) {
+            if (!store.insertComment(comments.get(i))) {
+                errors.add(new Bulk.WriteError(i, 409, "Duplicate comment id " + comments.get(i)._id()));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Find a comment by ID.
+     *
+     * @param id The ID of the comment.
+     * @return The comment, or null if it does not exist.
+     */
+    @Override
+    public Comment findById(String id) {
+        return store.comment(id);
+    }
+
+    /**
+     * Find all comments.
+     *
+     * @return The comments.
+     */
+    @Override
+    public List<Comment> findAll() {
+        return new ArrayList<>(store.comments());
+    }
+
+    /**
+     * Find the comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @return The comments.
+     */
+    @Override
+    public List<Comment> findByBlogId(String blogId) {
+        return new ArrayList<>(store.commentsOf(blogId));
+    }
+
+    /**
+     * Find the comments of a blog, as raw BSON documents.
+     *
+     * @param blogId The ID of the blog.
+     * @return The comments.
+     */
+    @Override
+    public List<RawBsonDocument> findRawByBlogId(String blogId) {
+        final List<RawBsonDocument> raw = new ArrayList<>();
+        for (Comment comment : store.commentsOf(blogId)) {
+            raw.add(new RawBsonDocument(bsonOf(comment), DOCUMENT_CODEC));
+        }
+        return raw;
+    }
+
+    /**
+     * Stream the comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @return The stream of comments.
+     */
+    @Override
+    public Stream<Comment> streamByBlogId(String blogId) {
+        return store.commentsOf(blogId).stream();
+    }
+
+    /**
+     * Set the author, the content and the update time of a comment of the blog set in the comment.
+     *
+     * @param comment The comment holding the IDs of the comment and of its blog, and the new values.
+     * @return The updated comment, or null if the blog has no such comment.
+     */
+    @Override
+    public Comment update(Comment comment) {
+        return store.updateComment(comment);
+    }
+
+    /**
+     * Delete a comment of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @param id     The ID of the comment.
+     * @return The deleted comment, or null if the blog has no such comment.
+     */
+    @Override
+    public Comment delete(String blogId, String id) {
+        return store.deleteComment(blogId, id);
+    }
+
+    /**
+     * Delete all comments of several blogs.
+     *
+     * @param blogIds The IDs of the blogs.
+     * @return The number of deleted comments.
+     */
+    @Override
+    public long deleteByBlogIds(Collection<String> blogIds) {
+        return store.deleteCommentsOf(blogIds);
+    }
+
+    /**
+     * Apply the writes of a bulk request on the comments of a blog. Like an unordered bulk write of MongoDB, the
+     * writes are applied one by one and a failing write does not prevent the others from being applied. The updates
+     * and the deletions of comments that the blog does not have fail as not found.
+     *
+     * @param blogId The ID of the blog.
+     * @param writes The writes.
+     * @return The failed writes.
+     */
+    @Override
+    public List<Bulk.WriteError> bulkWrite(String blogId, List<Bulk.Write<Comment>> writes) {
+        final List<Bulk.WriteError> errors = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i++) {
+            final Bulk.Write<Comment> write = writes.get(i);
+            switch (write.type()) {
+                case INSERT -> {
+                    if (!store.insertComment(write.document())) {
+                        errors.add(new Bulk.WriteError(i, 409, "Duplicate comment id " + write.id()));
+                    }
+                }
+                case UPDATE -> {
+                    if (store.updateComment(write.document()) == null) {
+                        errors.add(new Bulk.WriteError(i, 404, "Comment not found"));
+                    }
+                }
+                case DELETE -> {
+                    if (store.deleteComment(blogId, write.id()) == null) {
+                        errors.add(new Bulk.WriteError(i, 404, "Comment not found"));
+                    }
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Write a comment to a BSON document, with the fields stored by MongoDB.
+     *
+     * @param comment The comment.
+     * @return The document.
+     */
+    static BsonDocument bsonOf(Comment comment) {
+        final BsonDocument document = new BsonDocument();
+        COMMENT_CODEC.encode(new BsonDocumentWriter(document), comment, EncoderContext.builder().build());
+        return document;
+    }
+}
@@ -0,0 +1,580 @@
+package ch.heig.dai.lab.http.api.memory;
+
+import ch.heig.dai.lab.http.api.ChangeStreamListener.ChangeEvent;
+import ch.heig.dai.lab.http.api.CollectionVersion;
+import ch.heig.dai.lab.http.api.Env;
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.DeletedBlog;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import ch.heig.dai.lab.http.api.memory.Persistence.Entry;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-process storage of the blogs and comments, serving the reads from memory without any network round trip.
+ * <p>
+ * The blogs are kept sorted by ID, for the keyset pagination, and the comments are indexed by blog and creation time,
+ * like the {@code {_blogId, createdAt}} index of MongoDB. The reads are lock-free and see every document either before
+ * or after a write. The writes are serialized by a single lock, appended to the log of the {@link Persistence} when the
+ * store is persistent, then applied to the maps. The changes are published to the subscribers in the order of the
+ * writes, like the change streams of MongoDB.
+ * <p>
+ * A persistent store is recovered from its folder when built. The log is then forced to the disk every second, and a
+ * snapshot replaces the log periodically when it holds new writes. The class is final, as these tasks are started by
+ * the constructor and must not see a partially built subclass.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class MemoryStore implements Closeable {
+    /**
+     * Name of the blogs collection in the change events.
+     */
+    public static final String BLOGS = "blogs";
+
+    /**
+     * Name of the comments collection in the change events.
+     */
+    public static final String COMMENTS = "comments";
+
+    /**
+     * Default interval between the snapshots of a persistent store, in seconds.
+     */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300;
+
+    /**
+     * The lock serializing the writes. A lock rather than a monitor, so that the virtual threads of the requests do not
+     * pin their carrier thread while the write is logged.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The blogs by ID, sorted by ID.
+     */
+    private final ConcurrentSkipListMap<String, Blog> blogs = new ConcurrentSkipListMap<>();
+
+    /**
+     * The comments by ID.
+     */
+    private final ConcurrentHashMap<String, Comment> comments = new ConcurrentHashMap<>();
+
+    /**
+     * The comments of each blog, sorted by creation time then ID.
+     */
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<String, Comment>> commentsByBlog =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The subscribers to the changes of each collection.
+     */
+    private final Map<String, List<Consumer<ChangeEvent>>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * The persistence of the store, or null if the store is not persistent.
+     */
+    private final Persistence persistence;
+
+    /**
+     * The threads forcing the log to the disk and writing the snapshots, or null if the store is not persistent.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The number of writes of the blogs. It starts from a random value, so that the versions of a restarted store do
+     * not repeat the versions of the previous run.
+     */
+    private final AtomicLong blogWrites = new AtomicLong(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE / 2));
+
+    /**
+     * The number of writes of the comments, starting from a random value like the writes of the blogs.
+     */
+    private final AtomicLong commentWrites = new AtomicLong(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE / 2));
+
+    /**
+     * Constructor of a store that is not persistent: its content is lost when the API stops.
+     */
+    public MemoryStore() {
+        this.persistence = null;
+        this.scheduler = null;
+    }
+
+    /**
+     * Constructor of a persistent store, recovered from the files of the persistence.
+     *
+     * @param persistence      The persistence.
+     * @param snapshotInterval The interval between the snapshots.
+     */
+    public MemoryStore(Persistence persistence, Duration snapshotInterval) {
+        this.persistence = Objects.requireNonNull(persistence, "persistence must not be null");
+        final long replayed = persistence.recover(this::apply);
+        System.err.println("Memory store recovered from " + replayed + " entries: " + blogs.size() + " blogs and "
+                           + comments.size() + " comments");
+
+        // Two threads, so that a long snapshot does not delay forcing the log
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> Thread.ofPlatform()
+                                                                               .name("memory-store")
+                                                                               .daemon()
+                                                                               .unstarted(runnable));
+        scheduler.scheduleWithFixedDelay(persistence::force, 1, 1, TimeUnit.SECONDS);
+        final long interval = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (persistence.getEntriesSinceSnapshot() > 0) {
+                    snapshot();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error: cannot write the snapshot of the memory store: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Build the store configured by the environment variables: persistent in the folder {@code MEMORY_DATA_DIR} if
+     * set, forcing the log to the disk as set by {@code MEMORY_FSYNC} ({@code always}, {@code everysec} or
+     * {@code no}), with a snapshot every {@code MEMORY_SNAPSHOT_INTERVAL_SECONDS}.
+     *
+     * @return The store.
+     * @throws IllegalArgumentException If a variable is invalid.
+     */
+    public static MemoryStore fromEnv() {
+        final String directory = Env.getString("MEMORY_DATA_DIR", null);
+        if (directory == null) {
+            return new MemoryStore();
+        }
+        final Persistence.Fsync fsync;
+        try {
+            fsync = Persistence.Fsync.of(Env.getString("MEMORY_FSYNC", "everysec"));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("MEMORY_FSYNC must be always, everysec or no", e);
+        }
+        final long interval = Env.getLong("MEMORY_SNAPSHOT_INTERVAL_SECONDS", DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+        if (interval < 1) {
+            throw new IllegalArgumentException("MEMORY_SNAPSHOT_INTERVAL_SECONDS must be positive");
+        }
+        return new MemoryStore(new Persistence(Path.of(directory), fsync), Duration.ofSeconds(interval));
+    }
+
+    /**
+     * Subscribe to the changes of a collection.
+     *
+     * @param collection The name of the collection, {@link #BLOGS} or {@link #COMMENTS}.
+     * @param subscriber The subscriber, called by the writing thread while writes are blocked: it must not block.
+     */
+    public void subscribe(String collection, Consumer<ChangeEvent> subscriber) {
+        subscribers.computeIfAbsent(collection, name -> new CopyOnWriteArrayList<>()).add(subscriber);
+    }
+
+    /**
+     * Write a snapshot of a persistent store, replacing its logs. The writes are only blocked while the log is rotated.
+     */
+    public void snapshot() {
+        if (persistence == null) {
+            return;
+        }
+        final long generation;
+        lock.lock();
+        try {
+            generation = persistence.rotate();
+        } finally {
+            lock.unlock();
+        }
+        persistence.writeSnapshot(generation, Stream.concat(blogs.values().stream().map(Entry::putBlog),
+                                                            comments.values().stream().map(Entry::putComment)));
+    }
+
+    /**
+     * Stop the background threads and flush the log of a persistent store to the disk.
+     */
+    @Override
+    public void close() {
+        if (persistence != null) {
+            scheduler.shutdownNow();
+            persistence.close();
+        }
+    }
+
+    /**
+     * Get the version of the blogs.
+     *
+     * @return The number of writes of the blogs.
+     */
+    CollectionVersion blogsVersion() {
+        return new CollectionVersion(blogWrites.get());
+    }
+
+    /**
+     * Get the version of the comments.
+     *
+     * @return The number of writes of the comments.
+     */
+    CollectionVersion commentsVersion() {
+        return new CollectionVersion(commentWrites.get());
+    }
+
+    /**
+     * Get a blog.
+     *
+     * @param id The ID of the blog.
+     * @return The blog, or null if it does not exist.
+     */
+    Blog blog(String id) {
+        return blogs.get(id);
+    }
+
+    /**
+     * Get the blogs following an ID.
+     *
+     * @param afterId The ID after which the blogs are returned, or null to start with the first blog.
+     * @return The blogs, sorted by ID.
+     */
+    Collection<Blog> blogsAfter(String afterId) {
+        return (afterId == null ? blogs : blogs.tailMap(afterId, false)).values();
+    }
+
+    /**
+     * Get a comment.
+     *
+     * @param id The ID of the comment.
+     * @return The comment, or null if it does not exist.
+     */
+    Comment comment(String id) {
+        return comments.get(id);
+    }
+
+    /**
+     * Get all comments.
+     *
+     * @return The comments, in no particular order.
+     */
+    Collection<Comment> comments() {
+        return comments.values();
+    }
+
+    /**
+     * Get the comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @return The comments, sorted by creation time.
+     */
+    Collection<Comment> commentsOf(String blogId) {
+        final NavigableMap<String, Comment> index = commentsByBlog.get(blogId);
+        return index == null ? List.of() : index.values();
+    }
+
+    /**
+     * Get the latest comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @param limit  The maximum number of comments.
+     * @return The comments, sorted by creation time.
+     */
+    List<Comment> latestCommentsOf(String blogId, int limit) {
+        final NavigableMap<String, Comment> index = commentsByBlog.get(blogId);
+        final List<Comment> latest = new ArrayList<>(limit);
+        if (index != null) {
+            for (Comment comment : index.descendingMap().values()) {
+                if (latest.size() == limit) {
+                    break;
+                }
+                latest.add(comment);
+            }
+        }
+        return latest.reversed();
+    }
+
+    /**
+     * Insert a new blog.
+     *
+     * @param blog The blog.
+     * @return False if a blog already has its ID.
+     */
+    boolean insertBlog(Blog blog) {
+        lock.lock();
+        try {
+            if (blogs.containsKey(blog._id())) {
+                return false;
+            }
+            write(Entry.putBlog(blog));
+            blogWrites.incrementAndGet();
+            publish(BLOGS, "insert", blog._id());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the title, the content and the update time of a blog.
+     *
+     * @param changes The blog holding the ID and the new values.
+     * @return The updated blog, or null if it does not exist.
+     */
+    Blog updateBlog(Blog changes) {
+        lock.lock();
+        try {
+            final Blog blog = blogs.get(changes._id());
+            if (blog == null) {
+                return null;
+            }
+            final Blog updated = new Blog(blog._id(), changes.title(), changes.content(), blog.createdAt(),
+                                          changes.updatedAt());
+            write(Entry.putBlog(updated));
+            blogWrites.incrementAndGet();
+            publish(BLOGS, "update", updated._id());
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete a blog and its comments atomically.
+     *
+     * @param id The ID of the blog.
+     * @return The deleted blog and the number of deleted comments, or null if the blog does not exist.
+     */
+    DeletedBlog deleteBlog(String id) {
+        lock.lock();
+        try {
+            final Blog blog = blogs.get(id);
+            if (blog == null) {
+                return null;
+            }
+            final List<String> commentIds = commentsOf(id).stream().map(Comment::_id).toList();
+            write(Entry.delete(Entry.DELETE_BLOG, id));
+            blogWrites.incrementAndGet();
+            if (!commentIds.isEmpty()) {
+                commentWrites.incrementAndGet();
+            }
+            publish(BLOGS, "delete", id);
+            publishDeletedComments(commentIds);
+            return new DeletedBlog(blog, commentIds.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Insert a new comment.
+     *
+     * @param comment The comment.
+     * @return False if a comment already has its ID.
+     */
+    boolean insertComment(Comment comment) {
+        lock.lock();
+        try {
+            if (comments.containsKey(comment._id())) {
+                return false;
+            }
+            write(Entry.putComment(comment));
+            commentWrites.incrementAndGet();
+            publish(COMMENTS, "insert", comment._id());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the author, the content and the update time of a comment of the blog set in the comment.
+     *
+     * @param changes The comment holding the IDs of the comment and of its blog, and the new values.
+     * @return The updated comment, or null if the blog has no such comment.
+     */
+    Comment updateComment(Comment changes) {
+        lock.lock();
+        try {
+            final Comment comment = comments.get(changes._id());
+            if (comment == null || !comment._blogId().equals(changes._blogId())) {
+                return null;
+            }
+            final Comment updated = new Comment(comment._id(), comment._blogId(), changes.author(), changes.content(),
+                                                comment.createdAt(), changes.updatedAt());
+            write(Entry.putComment(updated));
+            commentWrites.incrementAndGet();
+            publish(COMMENTS, "update", updated._id());
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete a comment of a blog.
+     *
+     * @param blogId The ID of the blog.
+     * @param id     The ID of the comment.
+     * @return The deleted comment, or null if the blog has no such comment.
+     */
+    Comment deleteComment(String blogId, String id) {
+        lock.lock();
+        try {
+            final Comment comment = comments.get(id);
+            if (comment == null || !comment._blogId().equals(blogId)) {
+                return null;
+            }
+            write(Entry.delete(Entry.DELETE_COMMENT, id));
+            commentWrites.incrementAndGet();
+            publish(COMMENTS, "delete", id);
+            return comment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete all comments of several blogs.
+     *
+     * @param blogIds The IDs of the blogs.
+     * @return The number of deleted comments.
+     */
+    long deleteCommentsOf(Collection<String> blogIds) {
+        lock.lock();
+        try {
+            long deleted = 0;
+            for (String blogId : blogIds) {
+                final List<String> commentIds = commentsOf(blogId).stream().map(Comment::_id).toList();
+                if (!commentIds.isEmpty()) {
+                    write(Entry.delete(Entry.DELETE_BLOG_COMMENTS, blogId));
+                    commentWrites.incrementAndGet();
+                    publishDeletedComments(commentIds);
+                    deleted += commentIds.size();
+                }
+            }
+            return deleted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Log a write, then apply it. Must be called while holding the lock.
+     *
+     * @param entry The entry of the write.
+     */
+    private void write(Entry entry) {
+        if (persistence != null) {
+            persistence.append(entry);
+        }
+        apply(entry);
+    }
+
+    /**
+     * Apply a write to the maps, when written or replayed.
+     *
+     * @param entry The entry of the write.
+     * @throws IllegalStateException If the operation of the entry is unknown.
+     */
+    private void apply(Entry entry) {
+        switch (entry.op()) {
+            case Entry.PUT_BLOG -> blogs.put(entry.blog()._id(), entry.blog());
+            case Entry.PUT_COMMENT -> {
+                final Comment comment = entry.comment();
+                final Comment previous = comments.put(comment._id(), comment);
+                commentsByBlog.computeIfAbsent(comment._blogId(), blogId -> new ConcurrentSkipListMap<>())
+                              .put(indexKey(comment), comment);
+                // An update keeps the creation time, hence the key: the comment is replaced in place
+                if (previous != null && !(previous._blogId().equals(comment._blogId())
+                                          && indexKey(previous).equals(indexKey(comment)))) {
+                    unindex(previous);
+                }
+            }
+            case Entry.DELETE_BLOG -> {
+                blogs.remove(entry.id());
+                deleteIndexedComments(entry.id());
+            }
+            case Entry.DELETE_COMMENT -> {
+                final Comment comment = comments.remove(entry.id());
+                if (comment != null) {
+                    unindex(comment);
+                }
+            }
+            case Entry.DELETE_BLOG_COMMENTS -> deleteIndexedComments(entry.id());
+            default -> throw new IllegalStateException("Unknown entry operation " + entry.op());
+        }
+    }
+
+    /**
+     * Get the key of a comment in the index of its blog.
+     *
+     * @param comment The comment.
+     * @return The key, sorting the comments by creation time then ID.
+     */
+    private static String indexKey(Comment comment) {
+        return (comment.createdAt() == null ? "" : comment.createdAt()) + '\0' + comment._id();
+    }
+
+    /**
+     * Remove a comment from the index of its blog.
+     *
+     * @param comment The comment.
+     */
+    private void unindex(Comment comment) {
+        final ConcurrentSkipListMap<String, Comment> index = commentsByBlog.get(comment._blogId());
+        if (index != null) {
+            index.remove(indexKey(comment));
+            if (index.isEmpty()) {
+                commentsByBlog.remove(comment._blogId(), index);
+            }
+        }
+    }
+
+    /**
+     * Delete the comments of a blog.
+     *
+     * @param blogId The ID of the blog.
+     */
+    private void deleteIndexedComments(String blogId) {
+        final ConcurrentSkipListMap<String, Comment> index = commentsByBlog.remove(blogId);
+        if (index != null) {
+            index.values().forEach(comment -> comments.remove(comment._id()));
+        }
+    }
+
+    /**
+     * Publish the deletion of some comments.
+     *
+     * @param commentIds The IDs of the comments.
+     */
+    private void publishDeletedComments(List<String> commentIds) {
+        commentIds.forEach(commentId -> publish(COMMENTS, "delete", commentId));
+    }
+
+    /**
+     * Send a change event to the subscribers of a collection. A failing subscriber does not prevent the others from
+     * receiving the event.
+     *
+     * @param collection The name of the collection.
+     * @param operation  The operation.
+     * @param id         The ID of the changed document.
+     */
+    private void publish(String collection, String operation, String id) {
+        final ChangeEvent event = new ChangeEvent(collection, operation, id);
+        for (Consumer<ChangeEvent> subscriber : subscribers.getOrDefault(collection, List.of())) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("Change event subscriber failed: " + e.getMessage());
+            }
+        }
+    }
+}
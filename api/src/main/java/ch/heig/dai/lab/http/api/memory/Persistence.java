@@ -0,0 +1,450 @@
+package ch.heig.dai.lab.http.api.memory;
+
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Persistence of the in-memory store in a folder, as snapshots and append-only logs of JSON lines.
+ * <p>
+ * Every write of the store is appended to the current log as the resulting state of the document, or as a deletion,
+ * so replaying an entry twice has no more effect than replaying it once. The files are numbered by generation: the
+ * snapshot {@code snapshot-<n>.jsonl} holds the documents written before the log {@code log-<n>.jsonl} was started.
+ * A snapshot starts a new log, then writes the documents while the store keeps accepting writes: the documents written
+ * meanwhile may be in the snapshot or not, but they are in the new log, which is replayed on top of it. Once written,
+ * the snapshot replaces the older snapshots and logs.
+ * <p>
+ * At startup, the latest snapshot and the logs that follow it are replayed, and the writes go to a new log. The last
+ * line of a log left incomplete by a crash is ignored.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class Persistence implements Closeable {
+    /**
+     * Pattern of the names of the snapshots and logs, capturing their kind and their generation.
+     */
+    private static final Pattern FILE_NAME = Pattern.compile("(snapshot|log)-(\\d+)\\.jsonl");
+
+    /**
+     * The mapper of the entries, leaving the null fields out.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper().setSerializationInclusion(
+            JsonInclude.Include.NON_NULL);
+
+    /**
+     * The writer of the entries.
+     */
+    private static final ObjectWriter WRITER = MAPPER.writerFor(Entry.class);
+
+    /**
+     * The reader of the entries.
+     */
+    private static final ObjectReader READER = MAPPER.readerFor(Entry.class);
+
+    /**
+     * The lock of the current log. A lock rather than a monitor, so that the virtual threads of the requests writing
+     * to the log do not pin their carrier thread.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The folder of the files.
+     */
+    private final Path directory;
+
+    /**
+     * When the log is forced to the disk.
+     */
+    private final Fsync fsync;
+
+    /**
+     * The generation of the current log.
+     */
+    private long generation;
+
+    /**
+     * The channel of the current log, or null before the recovery.
+     */
+    private FileChannel channel;
+
+    /**
+     * The writer of the current log, or null before the recovery.
+     */
+    private Writer log;
+
+    /**
+     * The number of entries appended to the current log.
+     */
+    private long entries;
+
+    /**
+     * When the log is forced to the disk, trading durability for write latency.
+     *
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public enum Fsync {
+        /**
+         * After every write: a write acknowledged to a client survives a crash of the host.
+         */
+        ALWAYS,
+
+        /**
+         * Every second, by {@link #force()}: a crash of the host loses up to a second of writes.
+         */
+        EVERYSEC,
+
+        /**
+         * When the operating system decides: a crash of the process loses nothing, a crash of the host may lose more.
+         */
+        NO;
+
+        /**
+         * Parse a policy.
+         *
+         * @param name The name of the policy: {@code always}, {@code everysec} or {@code no}.
+         * @return The policy.
+         * @throws IllegalArgumentException If the policy is unknown.
+         */
+        public static Fsync of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * An entry of a snapshot or log.
+     *
+     * @param op      The operation: {@code putBlog}, {@code putComment}, {@code deleteBlog} (with its comments),
+     *                {@code deleteComment} or {@code deleteBlogComments}.
+     * @param id      The ID of the deleted document, or of the blog whose comments are deleted.
+     * @param blog    The stored blog.
+     * @param comment The stored comment.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public record Entry(String op, String id, Blog blog, Comment comment) {
+        /**
+         * Storage of a blog.
+         */
+        public static final String PUT_BLOG = "putBlog";
+
+        /**
+         * Storage of a comment.
+         */
+        public static final String PUT_COMMENT = "putComment";
+
+        /**
+         * Deletion of a blog and its comments.
+         */
+        public static final String DELETE_BLOG = "deleteBlog";
+
+        /**
+         * Deletion of a comment.
+         */
+        public static final String DELETE_COMMENT = "deleteComment";
+
+        /**
+         * Deletion of the comments of a blog.
+         */
+        public static final String DELETE_BLOG_COMMENTS = "deleteBlogComments";
+
+        /**
+         * Build the storage of a blog.
+         *
+         * @param blog The blog.
+         * @return The entry.
+         */
+        public static Entry putBlog(Blog blog) {
+            return new Entry(PUT_BLOG, null, blog, null);
+        }
+
+        /**
+         * Build the storage of a comment.
+         *
+         * @param comment The comment.
+         * @return The entry.
+         */
+        public static Entry putComment(Comment comment) {
+            return new Entry(PUT_COMMENT, null, null, comment);
+        }
+
+        /**
+         * Build a deletion.
+         *
+         * @param op The deletion operation.
+         * @param id The ID of the deleted document, or of the blog whose comments are deleted.
+         * @return The entry.
+         */
+        public static Entry delete(String op, String id) {
+            return new Entry(op, id, null, null);
+        }
+    }
+
+    /**
+     * Constructor. The files are read by {@link #recover(Consumer)}.
+     *
+     * @param directory The folder of the files, created if needed.
+     * @param fsync     When the log is forced to the disk.
+     */
+    public Persistence(Path directory, Fsync fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Replay the latest snapshot and the logs that follow it, then start a new log.
+     *
+     * @param apply The function applying an entry to the store.
+     * @return The number of replayed entries.
+     * @throws UncheckedIOException  If the files cannot be read.
+     * @throws IllegalStateException If an entry is corrupted.
+     */
+    public long recover(Consumer<Entry> apply) {
+        lock.lock();
+        try {
+            Files.createDirectories(directory);
+            final TreeMap<Long, Path> snapshots = new TreeMap<>();
+            final TreeMap<Long, Path> logs = new TreeMap<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> {
+                    final Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        final long fileGeneration = Long.parseLong(matcher.group(2));
+                        (matcher.group(1).equals("snapshot") ? snapshots : logs).put(fileGeneration, file);
+                    }
+                });
+            }
+            long replayed = 0;
+            long first = 0;
+            if (!snapshots.isEmpty()) {
+                first = snapshots.lastKey();
+                replayed += replay(snapshots.lastEntry().getValue(), false, apply);
+            }
+            for (Path log : logs.tailMap(first, true).values()) {
+                replayed += replay(log, true, apply);
+            }
+            long last = first;
+            if (!logs.isEmpty()) {
+                last = Math.max(last, logs.lastKey());
+            }
+            open(last + 1);
+            return replayed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replay a snapshot or a log.
+     *
+     * @param file  The file.
+     * @param log   Whether the file is a log, whose last line may have been left incomplete by a crash.
+     * @param apply The function applying an entry to the store.
+     * @return The number of replayed entries.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long replay(Path file, boolean log, Consumer<Entry> apply) throws IOException {
+        long replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                final String next = reader.readLine();
+                if (!line.isBlank()) {
+                    final Entry entry;
+                    try {
+                        entry = READER.readValue(line);
+                    } catch (JsonProcessingException e) {
+                        if (log && next == null) {
+                            System.err.println("Ignoring the incomplete last entry of " + file);
+                            break;
+                        }
+                        throw new IllegalStateException("Corrupted entry in " + file, e);
+                    }
+                    apply.accept(entry);
+                    replayed++;
+                }
+                line = next;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Start a new log.
+     *
+     * @param newGeneration The generation of the log.
+     * @throws IOException If the log cannot be created.
+     */
+    private void open(long newGeneration) throws IOException {
+        channel = FileChannel.open(directory.resolve("log-" + newGeneration + ".jsonl"), StandardOpenOption.CREATE_NEW,
+                                   StandardOpenOption.WRITE);
+        log = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+        generation = newGeneration;
+        entries = 0;
+    }
+
+    /**
+     * Append an entry to the log. The entry reaches the operating system before the method returns, and the disk too
+     * with {@link Fsync#ALWAYS}.
+     *
+     * @param entry The entry.
+     * @throws UncheckedIOException If the entry cannot be written.
+     */
+    public void append(Entry entry) {
+        lock.lock();
+        try {
+            log.write(WRITER.writeValueAsString(entry));
+            log.write('\n');
+            log.flush();
+            entries++;
+            if (fsync == Fsync.ALWAYS) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Force the log to the disk with {@link Fsync#EVERYSEC}. Called every second by the store.
+     */
+    public void force() {
+        lock.lock();
+        try {
+            if (fsync == Fsync.EVERYSEC && channel != null) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: cannot force the log to the disk: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of entries appended since the last snapshot.
+     *
+     * @return The number of entries.
+     */
+    public long getEntriesSinceSnapshot() {
+        lock.lock();
+        try {
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start a new log for a snapshot. Must be called while no write is applied to the store, so that every write is
+     * either in the previous logs or in the new one.
+     *
+     * @return The generation of the snapshot to write.
+     * @throws UncheckedIOException If the new log cannot be created.
+     */
+    public long rotate() {
+        lock.lock();
+        try {
+            log.close();
+            open(generation + 1);
+            return generation;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write a snapshot, then delete the older snapshots and logs. The snapshot is written to a temporary file and
+     * renamed once complete, so that a crash never leaves an incomplete snapshot.
+     *
+     * @param snapshotGeneration The generation returned by {@link #rotate()}.
+     * @param documents          The entries storing the documents of the store.
+     * @throws UncheckedIOException If the snapshot cannot be written.
+     */
+    public void writeSnapshot(long snapshotGeneration, Stream<Entry> documents) {
+        final Path target = directory.resolve("snapshot-" + snapshotGeneration + ".jsonl");
+        final Path temporary = directory.resolve("snapshot-" + snapshotGeneration + ".jsonl.tmp");
+        try (FileChannel snapshot = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                                                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Writer writer = new BufferedWriter(Channels.newWriter(snapshot, StandardCharsets.UTF_8))) {
+            for (Iterator<Entry> iterator = documents.iterator(); iterator.hasNext(); ) {
+                writer.write(WRITER.writeValueAsString(iterator.next()));
+                writer.write('\n');
+            }
+            writer.flush();
+            snapshot.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    final Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                    if (matcher.matches() && Long.parseLong(matcher.group(2)) < snapshotGeneration) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flush the log to the disk and close it.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (log == null) {
+                return;
+            }
+            try {
+                log.flush();
+                channel.force(false);
+                log.close();
+            } catch (IOException e) {
+                System.err.println("Error: cannot close the log: " + e.getMessage());
+            }
+            log = null;
+            channel = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
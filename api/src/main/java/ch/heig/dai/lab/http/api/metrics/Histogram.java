@@ -0,0 +1,125 @@
+package ch.heig.dai.lab.http.api.metrics;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with log-linear buckets, from 10 microseconds to 10 seconds. The lowest decade separates the hits
+ * of the caches, which are answered in tens of microseconds, from the reads of the database.
+ * <p>
+ * Each decade is split in nine linear buckets (1, 2, ..., 9 times the power of ten), so the relative error of a
+ * quantile estimated from the buckets stays below 100% at the bottom of a decade and below 12% at its top, whatever
+ * the magnitude of the latency. Recording is a binary search in the bounds and the increment of two striped counters,
+ * so it does not allocate nor contend between threads.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class Histogram {
+    /**
+     * The upper bounds of the buckets, in nanoseconds, in ascending order.
+     */
+    static final long[] BOUNDS = bounds();
+
+    /**
+     * The upper bounds of the buckets, in seconds, formatted for the {@code le} label.
+     */
+    private static final String[] LABELS = Arrays.stream(BOUNDS)
+                                                 .mapToObj(bound -> BigDecimal.valueOf(bound, 9)
+                                                                              .stripTrailingZeros()
+                                                                              .toPlainString())
+                                                 .toArray(String[]::new);
+
+    /**
+     * The number of values of each bucket, the last one counting the values above the highest bound.
+     */
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+    /**
+     * The sum of the recorded values, in nanoseconds.
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Constructor.
+     */
+    public Histogram() {
+        Arrays.setAll(buckets, i -> new LongAdder());
+    }
+
+    /**
+     * Compute the bounds of the buckets.
+     *
+     * @return The bounds, in nanoseconds.
+     */
+    private static long[] bounds() {
+        final long[] bounds = new long[6 * 9 + 1];
+        int i = 0;
+        for (long decade = 10_000; decade <= 1_000_000_000L; decade *= 10) {
+            for (int step = 1; step <= 9; step++) {
+                bounds[i++] = step * decade;
+            }
+        }
+        bounds[i] = 10_000_000_000L;
+        return bounds;
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param nanos The value, in nanoseconds.
+     */
+    public void record(long nanos) {
+        final int position = Arrays.binarySearch(BOUNDS, nanos);
+        // A value equal to a bound belongs to its bucket, as the bounds are inclusive
+        buckets[position >= 0 ? position : -position - 1].increment();
+        sum.add(nanos);
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Get the sum of the recorded values.
+     *
+     * @return The sum, in nanoseconds.
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * Write the histogram in the Prometheus text format. The counters are read one by one while values may be
+     * recorded, so the buckets of a scrape can be off by the values recorded during the scrape.
+     *
+     * @param writer The writer.
+     * @param name   The name of the metric, without the {@code _bucket}, {@code _sum} and {@code _count} suffixes.
+     * @param labels The labels of the histogram, as alternating names and values.
+     */
+    public void write(PrometheusWriter writer, String name, String... labels) {
+        final String[] bucketLabels = Arrays.copyOf(labels, labels.length + 2);
+        bucketLabels[labels.length] = "le";
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            cumulative += buckets[i].sum();
+            bucketLabels[labels.length + 1] = LABELS[i];
+            writer.sample(name + "_bucket", cumulative, bucketLabels);
+        }
+        cumulative += buckets[BOUNDS.length].sum();
+        bucketLabels[labels.length + 1] = "+Inf";
+        writer.sample(name + "_bucket", cumulative, bucketLabels);
+        writer.sample(name + "_sum", sum.sum() / 1e9, labels);
+        writer.sample(name + "_count", cumulative, labels);
+    }
+}
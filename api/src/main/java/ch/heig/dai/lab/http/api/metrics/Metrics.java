@@ -0,0 +1,126 @@
+package ch.heig.dai.lab.http.api.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the metrics of the API, exposed in the Prometheus text format.
+ * <p>
+ * The metrics are recorded on the hot path with striped counters only, and aggregated when they are scraped. The
+ * registry holds the HTTP request metrics, the MongoDB driver metrics, the gauges and counters registered by the
+ * components of the API, and reads the JVM metrics from the management beans at each scrape.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public final class Metrics {
+    /**
+     * The metrics of the HTTP requests.
+     */
+    public static final RequestMetrics REQUESTS = new RequestMetrics();
+
+    /**
+     * The metrics of the MongoDB driver, to register as command and connection pool listener of the clients.
+     */
+    public static final MongoMetrics MONGO = new MongoMetrics();
+
+    /**
+     * The gauges and counters registered by the components of the API, by name.
+     */
+    private static final Map<String, Registered> REGISTERED = new ConcurrentHashMap<>();
+
+    /**
+     * A gauge or a counter registered by a component of the API.
+     *
+     * @param type  The Prometheus type of the metric, gauge or counter.
+     * @param help  The description of the metric.
+     * @param value The supplier of the value, called at each scrape.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record Registered(String type, String help, LongSupplier value) {
+    }
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Register a gauge, replacing any gauge of the same name.
+     *
+     * @param name  The name of the gauge.
+     * @param help  The description of the gauge.
+     * @param value The supplier of the value, called at each scrape.
+     */
+    public static void gauge(String name, String help, LongSupplier value) {
+        REGISTERED.put(name, new Registered("gauge", help, value));
+    }
+
+    /**
+     * Register a counter, replacing any metric of the same name. The value must only grow, and the name must end with
+     * {@code _total}, as Prometheus reserves it for the counters.
+     *
+     * @param name  The name of the counter.
+     * @param help  The description of the counter.
+     * @param value The supplier of the value, called at each scrape.
+     * @throws IllegalArgumentException If the name does not end with {@code _total}.
+     */
+    public static void counter(String name, String help, LongSupplier value) {
+        if (!name.endsWith("_total")) {
+            throw new IllegalArgumentException("The name of a counter must end with _total: " + name);
+        }
+        REGISTERED.put(name, new Registered("counter", help, value));
+    }
+
+    /**
+     * Build a scrape of all the metrics.
+     *
+     * @return The metrics, in the Prometheus text format.
+     */
+    public static String scrape() {
+        final PrometheusWriter writer = new PrometheusWriter();
+        REQUESTS.write(writer);
+        MONGO.write(writer);
+        REGISTERED.forEach((name, metric) -> {
+            writer.metric(name, metric.type(), metric.help());
+            writer.sample(name, metric.value().getAsLong());
+        });
+        writeJvm(writer);
+        return writer.toString();
+    }
+
+    /**
+     * Write the memory, garbage collection and thread metrics of the JVM.
+     *
+     * @param writer The writer.
+     */
+    private static void writeJvm(PrometheusWriter writer) {
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        writer.metric("jvm_memory_heap_used_bytes", "gauge", "Used heap memory.");
+        writer.sample("jvm_memory_heap_used_bytes", heap.getUsed());
+        writer.metric("jvm_memory_heap_committed_bytes", "gauge", "Heap memory committed by the operating system.");
+        writer.sample("jvm_memory_heap_committed_bytes", heap.getCommitted());
+        writer.metric("jvm_memory_heap_max_bytes", "gauge", "Maximum heap memory, or -1 if undefined.");
+        writer.sample("jvm_memory_heap_max_bytes", heap.getMax());
+        writer.metric("jvm_gc_collections_total", "counter", "Number of garbage collections, by collector.");
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            writer.sample("jvm_gc_collections_total", collector.getCollectionCount(), "gc", collector.getName());
+        }
+        writer.metric("jvm_gc_collection_seconds_total", "counter",
+                      "Time spent in garbage collections, by collector.");
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            writer.sample("jvm_gc_collection_seconds_total", collector.getCollectionTime() / 1e3, "gc",
+                          collector.getName());
+        }
+        writer.metric("jvm_threads_live", "gauge", "Number of live platform threads.");
+        writer.sample("jvm_threads_live", ManagementFactory.getThreadMXBean().getThreadCount());
+        writer.metric("process_uptime_seconds", "gauge", "Time since the start of the JVM.");
+        writer.sample("process_uptime_seconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1e3);
+    }
+}
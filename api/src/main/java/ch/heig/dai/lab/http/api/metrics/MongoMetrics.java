@@ -0,0 +1,277 @@
+package ch.heig.dai.lab.http.api.metrics;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the MongoDB driver: the duration of the commands and the state of the connection pools.
+ * <p>
+ * The listeners are called by the driver on the threads running the commands, so they only update striped counters.
+ * The commands are labelled by their name, e.g. {@code find} or {@code insert}, and the pools by the address of their
+ * server. The time spent waiting for a connection is measured on the thread asking for it, which is the thread running
+ * the command with the synchronous driver.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class MongoMetrics implements CommandListener, ConnectionPoolListener {
+    /**
+     * The metrics of each command name.
+     */
+    private final Map<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of the pool of each server.
+     */
+    private final Map<String, PoolMetrics> pools = new ConcurrentHashMap<>();
+
+    /**
+     * The time spent waiting for a connection of the pools, successfully or not.
+     */
+    private final Histogram checkOutWait = new Histogram();
+
+    /**
+     * The time the current thread started waiting for a connection, from {@link System#nanoTime()}.
+     */
+    private final ThreadLocal<Long> checkOutStart = new ThreadLocal<>();
+
+    /**
+     * The metrics of a command.
+     *
+     * @param duration The duration of the successful commands.
+     * @param failures The number of failed commands.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record CommandMetrics(Histogram duration, LongAdder failures) {
+    }
+
+    /**
+     * The metrics of the connection pool of a server.
+     *
+     * @param maxSize          The maximum number of connections of the pool.
+     * @param open             The number of open connections.
+     * @param checkedOut       The number of connections in use.
+     * @param waiting          The number of requests waiting for a connection.
+     * @param checkOutFailures The number of requests for a connection that failed, e.g. after waiting too long.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record PoolMetrics(AtomicLong maxSize, LongAdder open, LongAdder checkedOut, LongAdder waiting,
+                               LongAdder checkOutFailures) {
+        /**
+         * Constructor of empty metrics.
+         */
+        PoolMetrics() {
+            this(new AtomicLong(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder());
+        }
+    }
+
+    /**
+     * Get the metrics of a command.
+     *
+     * @param name The name of the command.
+     * @return The metrics.
+     */
+    private CommandMetrics command(String name) {
+        return commands.computeIfAbsent(name, command -> new CommandMetrics(new Histogram(), new LongAdder()));
+    }
+
+    /**
+     * Get the metrics of the pool of a server.
+     *
+     * @param serverId The ID of the server.
+     * @return The metrics.
+     */
+    private PoolMetrics pool(ServerId serverId) {
+        return pools.computeIfAbsent(serverId.getAddress().toString(), server -> new PoolMetrics());
+    }
+
+    /**
+     * Record a successful command.
+     *
+     * @param event The event.
+     */
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        command(event.getCommandName()).duration().record(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Record a failed command.
+     *
+     * @param event The event.
+     */
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        command(event.getCommandName()).failures().increment();
+    }
+
+    /**
+     * Record the creation of the pool of a server.
+     *
+     * @param event The event.
+     */
+    @Override
+    public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+        pool(event.getServerId()).maxSize().set(event.getSettings().getMaxSize());
+    }
+
+    /**
+     * Record the creation of a connection.
+     *
+     * @param event The event.
+     */
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        pool(event.getConnectionId().getServerId()).open().increment();
+    }
+
+    /**
+     * Record the closing of a connection.
+     *
+     * @param event The event.
+     */
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        pool(event.getConnectionId().getServerId()).open().decrement();
+    }
+
+    /**
+     * Record a request for a connection of the pool.
+     *
+     * @param event The event.
+     */
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        pool(event.getServerId()).waiting().increment();
+        checkOutStart.set(System.nanoTime());
+    }
+
+    /**
+     * Record a connection taken from the pool.
+     *
+     * @param event The event.
+     */
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        final PoolMetrics pool = pool(event.getConnectionId().getServerId());
+        pool.waiting().decrement();
+        pool.checkedOut().increment();
+        recordCheckOutWait();
+    }
+
+    /**
+     * Record a connection returned to the pool.
+     *
+     * @param event The event.
+     */
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        pool(event.getConnectionId().getServerId()).checkedOut().decrement();
+    }
+
+    /**
+     * Record a failed request for a connection.
+     *
+     * @param event The event.
+     */
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        final PoolMetrics pool = pool(event.getServerId());
+        pool.waiting().decrement();
+        pool.checkOutFailures().increment();
+        recordCheckOutWait();
+    }
+
+    /**
+     * Record the time the current thread waited for a connection, if it started waiting on this thread.
+     */
+    private void recordCheckOutWait() {
+        final Long start = checkOutStart.get();
+        if (start != null) {
+            checkOutStart.remove();
+            checkOutWait.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Get the number of requests for a connection of the pools whose wait was measured.
+     *
+     * @return The number of requests.
+     */
+    public long getCheckOuts() {
+        return checkOutWait.count();
+    }
+
+    /**
+     * Get the total time spent waiting for a connection of the pools.
+     *
+     * @return The time, in nanoseconds.
+     */
+    public long getCheckOutWaitNanos() {
+        return checkOutWait.sum();
+    }
+
+    /**
+     * Get the number of requests for a connection of the pools that failed, e.g. after waiting too long.
+     *
+     * @return The number of failed requests.
+     */
+    public long getCheckOutFailures() {
+        long failures = 0;
+        for (PoolMetrics pool : pools.values()) {
+            failures += pool.checkOutFailures().sum();
+        }
+        return failures;
+    }
+
+    /**
+     * Write the metrics in the Prometheus text format.
+     *
+     * @param writer The writer.
+     */
+    public void write(PrometheusWriter writer) {
+        writer.metric("mongodb_command_duration_seconds", "histogram", "Duration of the successful MongoDB commands.");
+        commands.forEach((name, metrics) -> metrics.duration().write(writer, "mongodb_command_duration_seconds",
+                                                                     "command", name));
+        writer.metric("mongodb_command_failures_total", "counter", "Number of failed MongoDB commands.");
+        commands.forEach((name, metrics) -> writer.sample("mongodb_command_failures_total", metrics.failures().sum(),
+                                                          "command", name));
+        writer.metric("mongodb_pool_max_connections", "gauge", "Maximum number of connections of the pool.");
+        pools.forEach((server, metrics) -> writer.sample("mongodb_pool_max_connections", metrics.maxSize().get(),
+                                                         "server", server));
+        writer.metric("mongodb_pool_open_connections", "gauge", "Number of open connections of the pool.");
+        pools.forEach((server, metrics) -> writer.sample("mongodb_pool_open_connections", metrics.open().sum(),
+                                                         "server", server));
+        writer.metric("mongodb_pool_checked_out_connections", "gauge", "Number of connections of the pool in use.");
+        pools.forEach((server, metrics) -> writer.sample("mongodb_pool_checked_out_connections",
+                                                         metrics.checkedOut().sum(), "server", server));
+        writer.metric("mongodb_pool_waiting_check_outs", "gauge", "Number of requests waiting for a connection.");
+        pools.forEach((server, metrics) -> writer.sample("mongodb_pool_waiting_check_outs", metrics.waiting().sum(),
+                                                         "server", server));
+        writer.metric("mongodb_pool_check_out_failures_total", "counter",
+                      "Number of requests for a connection of the pool that failed.");
+        pools.forEach((server, metrics) -> writer.sample("mongodb_pool_check_out_failures_total",
+                                                         metrics.checkOutFailures().sum(), "server", server));
+        writer.metric("mongodb_pool_check_out_wait_seconds", "histogram",
+                      "Time spent waiting for a connection of the pools.");
+        checkOutWait.write(writer, "mongodb_pool_check_out_wait_seconds");
+    }
+}
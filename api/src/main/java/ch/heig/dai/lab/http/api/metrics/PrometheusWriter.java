@@ -0,0 +1,89 @@
+package ch.heig.dai.lab.http.api.metrics;
+
+/**
+ * Builder of a scrape in the Prometheus text exposition format.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class PrometheusWriter {
+    /**
+     * Content type of the Prometheus text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The text of the scrape.
+     */
+    private final StringBuilder text = new StringBuilder(16 * 1024);
+
+    /**
+     * Write the help and the type of a metric, before its samples.
+     *
+     * @param name The name of the metric.
+     * @param type The type of the metric: counter, gauge or histogram.
+     * @param help The description of the metric.
+     */
+    public void metric(String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Write a sample of a metric.
+     *
+     * @param name   The name of the sample.
+     * @param value  The value.
+     * @param labels The labels of the sample, as alternating names and values.
+     */
+    public void sample(String name, double value, String... labels) {
+        text.append(name);
+        if (labels.length > 0) {
+            text.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    text.append(',');
+                }
+                text.append(labels[i]).append("=\"");
+                escape(labels[i + 1]);
+                text.append('"');
+            }
+            text.append('}');
+        }
+        text.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            // Counters and gauges are mostly integers: do not print them as 12.0
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+
+    /**
+     * Append a label value, escaping the characters that cannot appear in it.
+     *
+     * @param value The label value.
+     */
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> text.append("\\\\");
+                case '"' -> text.append("\\\"");
+                case '\n' -> text.append("\\n");
+                default -> text.append(c);
+            }
+        }
+    }
+
+    /**
+     * Get the text of the scrape.
+     *
+     * @return The text.
+     */
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,152 @@
+package ch.heig.dai.lab.http.api.metrics;
+
+import io.javalin.http.Context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the HTTP requests, by route.
+ * <p>
+ * The requests are labelled by their method and by the path of the matched endpoint, e.g. {@code /api/blogs/{blogId}},
+ * and not by their actual path, so the number of series does not grow with the number of documents. The requests that
+ * match no endpoint share the {@code unmatched} route.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class RequestMetrics {
+    /**
+     * Name of the request attribute holding the start time of the request.
+     */
+    private static final String START_ATTRIBUTE = RequestMetrics.class.getName() + ".start";
+
+    /**
+     * Route of the requests that match no endpoint.
+     */
+    private static final String UNMATCHED = "unmatched";
+
+    /**
+     * Number of distinct status codes counted, from 0 to 599.
+     */
+    private static final int STATUS_CODES = 600;
+
+    /**
+     * The number of requests being handled.
+     */
+    private final LongAdder inFlight = new LongAdder();
+
+    /**
+     * The metrics of each route.
+     */
+    private final Map<Route, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+    /**
+     * A route of the API.
+     *
+     * @param method The HTTP method.
+     * @param path   The path of the endpoint.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record Route(String method, String path) {
+    }
+
+    /**
+     * The metrics of a route.
+     *
+     * @param latency  The latency of the requests.
+     * @param statuses The number of responses of each status code, created on first use.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record RouteMetrics(Histogram latency, AtomicReferenceArray<LongAdder> statuses) {
+        /**
+         * Constructor of empty metrics.
+         */
+        RouteMetrics() {
+            this(new Histogram(), new AtomicReferenceArray<>(STATUS_CODES));
+        }
+
+        /**
+         * Count a response.
+         *
+         * @param status The status code.
+         */
+        void count(int status) {
+            final int index = status >= 0 && status < STATUS_CODES ? status : 0;
+            LongAdder counter = statuses.get(index);
+            if (counter == null) {
+                statuses.compareAndSet(index, null, new LongAdder());
+                counter = statuses.get(index);
+            }
+            counter.increment();
+        }
+    }
+
+    /**
+     * Start measuring a request. Must be registered as a before handler.
+     *
+     * @param ctx The Javalin context.
+     */
+    public void before(Context ctx) {
+        ctx.attribute(START_ATTRIBUTE, System.nanoTime());
+        inFlight.increment();
+    }
+
+    /**
+     * Record a handled request. Must be registered as an after handler, which Javalin runs once the response is
+     * complete, including for the asynchronous handlers and the requests that failed with an exception.
+     *
+     * @param ctx The Javalin context.
+     */
+    public void after(Context ctx) {
+        final Long start = ctx.attribute(START_ATTRIBUTE);
+        if (start == null) {
+            return;
+        }
+        inFlight.decrement();
+        final String path = ctx.endpointHandlerPath();
+        record(ctx.method().name(), path == null || path.isEmpty() ? UNMATCHED : path, ctx.statusCode(),
+               System.nanoTime() - start);
+    }
+
+    /**
+     * Record a handled request.
+     *
+     * @param method The HTTP method.
+     * @param path   The path of the endpoint.
+     * @param status The status code of the response.
+     * @param nanos  The time spent handling the request, in nanoseconds.
+     */
+    public void record(String method, String path, int status, long nanos) {
+        final RouteMetrics metrics = routes.computeIfAbsent(new Route(method, path), route -> new RouteMetrics());
+        metrics.count(status);
+        metrics.latency().record(nanos);
+    }
+
+    /**
+     * Write the metrics in the Prometheus text format.
+     *
+     * @param writer The writer.
+     */
+    public void write(PrometheusWriter writer) {
+        writer.metric("http_requests_in_flight", "gauge", "Number of HTTP requests being handled.");
+        writer.sample("http_requests_in_flight", inFlight.sum());
+        writer.metric("http_requests_total", "counter", "Number of handled HTTP requests, by route and status.");
+        routes.forEach((route, metrics) -> {
+            for (int status = 0; status < STATUS_CODES; status++) {
+                final LongAdder counter = metrics.statuses().get(status);
+                if (counter != null) {
+                    writer.sample("http_requests_total", counter.sum(), "method", route.method(), "route",
+                                  route.path(), "status", Integer.toString(status));
+                }
+            }
+        });
+        writer.metric("http_request_duration_seconds", "histogram", "Time spent handling the HTTP requests, by route.");
+        routes.forEach((route, metrics) -> metrics.latency().write(writer, "http_request_duration_seconds", "method",
+                                                                    route.method(), "route", route.path()));
+    }
+}
@@ -0,0 +1,82 @@
+package ch.heig.dai.lab.http.api.search;
+
+import ch.heig.dai.lab.http.api.Pagination;
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.BlogService;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Controller of the full-text search of the blogs.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class SearchController {
+    /**
+     * Maximum length of a query.
+     */
+    public static final int MAX_QUERY_LENGTH = 256;
+
+    /**
+     * The search index.
+     */
+    private final SearchIndex searchIndex;
+
+    /**
+     * The blog service, reading the matching blogs through its cache.
+     */
+    private final BlogService blogService;
+
+    /**
+     * A blog matching a search.
+     *
+     * @param blog  The blog.
+     * @param score The relevance of the blog, the higher the better.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public record SearchResult(Blog blog, double score) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param searchIndex The search index.
+     * @param blogService The blog service.
+     */
+    public SearchController(SearchIndex searchIndex, BlogService blogService) {
+        this.searchIndex = searchIndex;
+        this.blogService = blogService;
+    }
+
+    /**
+     * Search the blogs whose title, content or comments match the {@code q} query parameter, best first. The number of
+     * results is read from the {@code limit} query parameter. The index is searched in memory, and the matching blogs
+     * are read by ID.
+     *
+     * @param ctx The Javalin context.
+     */
+    public void search(@NotNull Context ctx) {
+        final String query = ctx.queryParam("q");
+        if (query == null || query.isBlank()) {
+            throw new BadRequestResponse("Missing query");
+        } else if (query.length() > MAX_QUERY_LENGTH) {
+            throw new BadRequestResponse("Query too long, the maximum is " + MAX_QUERY_LENGTH + " characters");
+        }
+        final List<SearchIndex.Hit> hits = searchIndex.search(query, Pagination.limit(ctx));
+        final List<SearchResult> results = new ArrayList<>(hits.size());
+        for (SearchIndex.Hit hit : hits) {
+            // A blog deleted since it was indexed is skipped
+            final Blog blog = blogService.getBlogById(hit.blogId());
+            if (blog != null) {
+                results.add(new SearchResult(blog, hit.score()));
+            }
+        }
+        ctx.json(results);
+    }
+}
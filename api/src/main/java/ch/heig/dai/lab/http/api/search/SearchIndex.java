@@ -0,0 +1,459 @@
+package ch.heig.dai.lab.http.api.search;
+
+import ch.heig.dai.lab.http.api.ChangeStreamListener.ChangeEvent;
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.BlogRepository;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import ch.heig.dai.lab.http.api.comment.CommentRepository;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-process full-text index of the blogs, over their title, their content and the content of their comments.
+ * <p>
+ * The index is inverted: each term maps to the blogs holding it, with the number of occurrences, so a query only reads
+ * the posting lists of its terms. The blogs are ranked with BM25. The title terms count twice, so that a blog named
+ * after a term ranks above a blog merely mentioning it. The text is split on anything but letters and digits,
+ * lowercased and stripped of its accents, and the terms of a single character are dropped.
+ * <p>
+ * The services update the index on every write they make, and the index follows the change events to pick up the
+ * writes of the other replicas, like the caches. It is rebuilt from the repositories at startup and when changes may
+ * have been missed. The searches share a read lock and the updates take the write lock.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class SearchIndex {
+    /**
+     * BM25 saturation of the term frequency.
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * BM25 normalization by the length of the blog.
+     */
+    private static final double B = 0.75;
+
+    /**
+     * Number of times the terms of a title are counted.
+     */
+    private static final int TITLE_WEIGHT = 2;
+
+    /**
+     * Pattern of the separators of the terms.
+     */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Pattern of the accents left by the decomposition of the characters.
+     */
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    /**
+     * The repository of the blogs, read to rebuild the index and follow the changes.
+     */
+    private final BlogRepository blogRepository;
+
+    /**
+     * The repository of the comments, read to rebuild the index and follow the changes.
+     */
+    private final CommentRepository commentRepository;
+
+    /**
+     * The lock shared by the searches and taken exclusively by the updates.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The posting lists: the occurrences of each term in each blog.
+     */
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+
+    /**
+     * The terms of the title and content of each indexed blog.
+     */
+    private final Map<String, Map<String, Integer>> blogTerms = new HashMap<>();
+
+    /**
+     * The indexed comments by ID.
+     */
+    private final Map<String, IndexedComment> comments = new HashMap<>();
+
+    /**
+     * The IDs of the indexed comments of each blog.
+     */
+    private final Map<String, Set<String>> commentsByBlog = new HashMap<>();
+
+    /**
+     * The number of terms of each blog, comments included.
+     */
+    private final Map<String, Integer> lengths = new HashMap<>();
+
+    /**
+     * The number of terms of all blogs.
+     */
+    private long totalLength;
+
+    /**
+     * The terms of an indexed comment.
+     *
+     * @param blogId The ID of the blog of the comment.
+     * @param terms  The occurrences of each term in the comment.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    private record IndexedComment(String blogId, Map<String, Integer> terms) {
+    }
+
+    /**
+     * A blog matching a search.
+     *
+     * @param blogId The ID of the blog.
+     * @param score  The BM25 score of the blog.
+     * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+     * @author Hugo Germano <hugo.germano@heig-vd.ch>
+     */
+    public record Hit(String blogId, double score) {
+    }
+
+    /**
+     * Constructor. The index is empty until {@link #rebuild()} is called.
+     *
+     * @param blogRepository    The repository of the blogs.
+     * @param commentRepository The repository of the comments.
+     */
+    public SearchIndex(BlogRepository blogRepository, CommentRepository commentRepository) {
+        this.blogRepository = blogRepository;
+        this.commentRepository = commentRepository;
+    }
+
+    /**
+     * Split a text into terms.
+     *
+     * @param text The text, possibly null.
+     * @return The terms, in order of appearance.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        final String folded = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                                     .toLowerCase(Locale.ROOT);
+        final List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(folded)) {
+            if (term.length() > 1) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Count the occurrences of the terms of a text.
+     *
+     * @param terms  The occurrences, updated.
+     * @param text   The text, possibly null.
+     * @param weight The number of times each occurrence counts.
+     * @return The occurrences.
+     */
+    private static Map<String, Integer> count(Map<String, Integer> terms, String text, int weight) {
+        for (String term : tokenize(text)) {
+            terms.merge(term, weight, Integer::sum);
+        }
+        return terms;
+    }
+
+    /**
+     * Rebuild the index from the repositories, reading every blog and comment once.
+     */
+    public void rebuild() {
+        final List<Blog> blogs;
+        try (Stream<Blog> stream = blogRepository.stream()) {
+            blogs = stream.toList();
+        }
+        final List<Comment> allComments = commentRepository.findAll();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            blogTerms.clear();
+            comments.clear();
+            commentsByBlog.clear();
+            lengths.clear();
+            totalLength = 0;
+            blogs.forEach(this::putBlog);
+            allComments.forEach(this::putComment);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Follow a change of the blogs, reading the changed blog from the repository.
+     *
+     * @param event The change event.
+     */
+    public void onBlogChange(ChangeEvent event) {
+        if (event.isReset()) {
+            rebuild();
+            return;
+        }
+        final Blog blog = blogRepository.findById(event.id());
+        if (blog == null) {
+            removeBlog(event.id());
+        } else {
+            putBlog(blog);
+        }
+    }
+
+    /**
+     * Follow a change of the comments, reading the changed comment from the repository.
+     *
+     * @param event The change event.
+     */
+    public void onCommentChange(ChangeEvent event) {
+        if (event.isReset()) {
+            rebuild();
+            return;
+        }
+        final Comment comment = commentRepository.findById(event.id());
+        if (comment == null) {
+            removeComment(event.id());
+        } else {
+            putComment(comment);
+        }
+    }
+
+    /**
+     * Index a new or updated blog.
+     *
+     * @param blog The blog.
+     */
+    public void putBlog(Blog blog) {
+        final Map<String, Integer> terms = count(count(new HashMap<>(), blog.title(), TITLE_WEIGHT), blog.content(), 1);
+        lock.writeLock().lock();
+        try {
+            final Map<String, Integer> previous = blogTerms.put(blog._id(), terms);
+            if (previous != null) {
+                post(blog._id(), previous, -1);
+            }
+            post(blog._id(), terms, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a blog and its comments from the index.
+     *
+     * @param id The ID of the blog.
+     */
+    public void removeBlog(String id) {
+        lock.writeLock().lock();
+        try {
+            final Map<String, Integer> previous = blogTerms.remove(id);
+            if (previous != null) {
+                post(id, previous, -1);
+            }
+            removeCommentsOf(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index a new or updated comment.
+     *
+     * @param comment The comment.
+     */
+    public void putComment(Comment comment) {
+        final IndexedComment indexed = new IndexedComment(comment._blogId(), count(new HashMap<>(), comment.content(),
+                                                                                   1));
+        lock.writeLock().lock();
+        try {
+            unpostComment(comments.put(comment._id(), indexed), comment._id());
+            post(indexed.blogId(), indexed.terms(), 1);
+            commentsByBlog.computeIfAbsent(indexed.blogId(), blogId -> new HashSet<>()).add(comment._id());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a comment from the index.
+     *
+     * @param id The ID of the comment.
+     */
+    public void removeComment(String id) {
+        lock.writeLock().lock();
+        try {
+            unpostComment(comments.remove(id), id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the comments of several blogs from the index.
+     *
+     * @param blogIds The IDs of the blogs.
+     */
+    public void removeCommentsOfBlogs(Collection<String> blogIds) {
+        lock.writeLock().lock();
+        try {
+            blogIds.forEach(this::removeCommentsOf);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the comments of a blog from the index. Must be called while holding the write lock.
+     *
+     * @param blogId The ID of the blog.
+     */
+    private void removeCommentsOf(String blogId) {
+        final Set<String> ids = commentsByBlog.remove(blogId);
+        if (ids != null) {
+            for (String id : ids) {
+                post(blogId, comments.remove(id).terms(), -1);
+            }
+        }
+    }
+
+    /**
+     * Remove the terms of a comment from the posting lists. Must be called while holding the write lock.
+     *
+     * @param comment The indexed comment, or null if the comment was not indexed.
+     * @param id      The ID of the comment.
+     */
+    private void unpostComment(IndexedComment comment, String id) {
+        if (comment == null) {
+            return;
+        }
+        post(comment.blogId(), comment.terms(), -1);
+        final Set<String> ids = commentsByBlog.get(comment.blogId());
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            commentsByBlog.remove(comment.blogId());
+        }
+    }
+
+    /**
+     * Add or remove the occurrences of terms to the posting lists of a blog. Must be called while holding the write
+     * lock.
+     *
+     * @param blogId The ID of the blog.
+     * @param terms  The occurrences of the terms.
+     * @param sign   1 to add the occurrences, -1 to remove them.
+     */
+    private void post(String blogId, Map<String, Integer> terms, int sign) {
+        int length = 0;
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            final Map<String, Integer> posting = postings.computeIfAbsent(term.getKey(), key -> new HashMap<>());
+            if (posting.merge(blogId, sign * term.getValue(), Integer::sum) == 0) {
+                posting.remove(blogId);
+                if (posting.isEmpty()) {
+                    postings.remove(term.getKey());
+                }
+            }
+            length += term.getValue();
+        }
+        if (lengths.merge(blogId, sign * length, Integer::sum) == 0) {
+            lengths.remove(blogId);
+        }
+        totalLength += (long) sign * length;
+    }
+
+    /**
+     * Search the blogs matching any term of a query, ranked by BM25.
+     *
+     * @param query The query.
+     * @param limit The maximum number of blogs.
+     * @return The matching blogs, best first.
+     */
+    public List<Hit> search(String query, int limit) {
+        final Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        final Map<String, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            final int documents = lengths.size();
+            if (documents == 0) {
+                return List.of();
+            }
+            final double averageLength = (double) totalLength / documents;
+            for (String term : terms) {
+                final Map<String, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                final double idf = Math.log(1 + (documents - posting.size() + 0.5) / (posting.size() + 0.5));
+                for (Map.Entry<String, Integer> occurrences : posting.entrySet()) {
+                    final double frequency = occurrences.getValue();
+                    final double norm = 1 - B + B * lengths.get(occurrences.getKey()) / averageLength;
+                    scores.merge(occurrences.getKey(), idf * frequency * (K1 + 1) / (frequency + K1 * norm),
+                                 Double::sum);
+                }
+            }
+            // Comments indexed before their blog do not make it a result
+            scores.keySet().retainAll(blogTerms.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Keep the best hits only, ties broken by ID so that the order is stable
+        final Comparator<Hit> ranking = Comparator.comparingDouble(Hit::score).thenComparing(Hit::blogId,
+                                                                                           Comparator.reverseOrder());
+        final PriorityQueue<Hit> best = new PriorityQueue<>(ranking);
+        scores.forEach((blogId, score) -> {
+            best.add(new Hit(blogId, score));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+        final List<Hit> hits = new ArrayList<>(best);
+        hits.sort(ranking.reversed());
+        return hits;
+    }
+
+    /**
+     * Get the number of indexed blogs.
+     *
+     * @return The number of blogs.
+     */
+    public int getBlogs() {
+        lock.readLock().lock();
+        try {
+            return blogTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of distinct indexed terms.
+     *
+     * @return The number of terms.
+     */
+    public int getTerms() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.metrics.MongoMetrics;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.ServiceUnavailableResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the admission control of the requests.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class AdmissionControlTest {
+    private MongoMetrics mongoMetrics;
+    private AdmissionControl admissionControl;
+
+    /**
+     * Set up an admission control with a limit of 10 requests, 5 of which may be writes.
+     */
+    @BeforeEach
+    public void setUp() {
+        mongoMetrics = mock(MongoMetrics.class);
+        admissionControl = new AdmissionControl(mongoMetrics, Set.of("/api/events"), 10, 4, 12,
+                                                Duration.ofMillis(10), 50);
+    }
+
+    /**
+     * Build a request.
+     *
+     * @param method The HTTP method.
+     * @param path   The path.
+     * @return The mocked context.
+     */
+    private static Context request(HandlerType method, String path) {
+        Context ctx = mock(Context.class);
+        when(ctx.method()).thenReturn(method);
+        when(ctx.path()).thenReturn(path);
+        return ctx;
+    }
+
+    /**
+     * Admit requests until the first one is rejected.
+     *
+     * @param method The HTTP method of the requests.
+     * @return The number of admitted requests.
+     */
+    private int admitUntilRejected(HandlerType method) {
+        for (int admitted = 0; admitted < 100; admitted++) {
+            try {
+                admissionControl.before(request(method, "/api/blogs"));
+            } catch (ServiceUnavailableResponse e) {
+                return admitted;
+            }
+        }
+        return 100;
+    }
+
+    @Test
+    public void before_keepsAShareOfTheLimitForTheReads() {
+        assertEquals(5, admitUntilRejected(HandlerType.POST));
+        assertEquals(5, admitUntilRejected(HandlerType.GET));
+        assertEquals(1, admissionControl.getRejectedWrites());
+        assertEquals(1, admissionControl.getRejectedReads());
+        assertEquals(10, admissionControl.getInFlight());
+    }
+
+    @Test
+    public void before_whenRejected_asksToRetryLater() {
+        admitUntilRejected(HandlerType.GET);
+        Context ctx = request(HandlerType.GET, "/api/blogs");
+
+        assertThrows(ServiceUnavailableResponse.class, () -> admissionControl.before(ctx));
+        verify(ctx).header("Retry-After", "1");
+        verify(ctx, never()).attribute(anyString(), any());
+    }
+
+    @Test
+    public void before_whenExempt_admitsWithoutCounting() {
+        admitUntilRejected(HandlerType.GET);
+
+        admissionControl.before(request(HandlerType.GET, "/api/events"));
+        admissionControl.before(request(HandlerType.OPTIONS, "/api/blogs"));
+        assertEquals(10, admissionControl.getInFlight());
+    }
+
+    @Test
+    public void after_releasesTheAdmittedRequestsOnly() {
+        Context admitted = request(HandlerType.GET, "/api/blogs");
+        when(admitted.attribute(anyString())).thenReturn(true);
+        Context rejected = request(HandlerType.GET, "/api/blogs");
+
+        admissionControl.before(admitted);
+        admissionControl.after(admitted);
+        admissionControl.after(rejected);
+
+        assertEquals(0, admissionControl.getInFlight());
+    }
+
+    @Test
+    public void adjust_decreasesOnPoolWaitsAndIncreasesUnderDemand() {
+        // 10 check outs waiting 40 ms on average, four times the target: the limit is halved
+        when(mongoMetrics.getCheckOuts()).thenReturn(10L);
+        when(mongoMetrics.getCheckOutWaitNanos()).thenReturn(400_000_000L);
+        admissionControl.adjust();
+        assertEquals(5, admissionControl.getLimit());
+
+        // A timeout waiting for a connection halves the limit, down to the lowest limit
+        when(mongoMetrics.getCheckOutFailures()).thenReturn(1L);
+        admissionControl.adjust();
+        assertEquals(4, admissionControl.getLimit());
+
+        // No wait and no demand: the limit stays
+        admissionControl.adjust();
+        assertEquals(4, admissionControl.getLimit());
+
+        // The requests reached the limit of the writes without waiting for a connection: the limit grows by one
+        admitUntilRejected(HandlerType.POST);
+        admissionControl.adjust();
+        assertEquals(5, admissionControl.getLimit());
+    }
+}
@@ -0,0 +1,95 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.blog.AsyncBlogController;
+import ch.heig.dai.lab.http.api.blog.AsyncBlogService;
+import ch.heig.dai.lab.http.api.blog.Blog;
+import io.javalin.http.Context;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the blog CRUD operations of the asynchronous controller.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class AsyncBlogApiTest {
+    private AsyncBlogService blogService;
+    private AsyncBlogController blogController;
+    private Context ctx;
+
+    /**
+     * Set up the mocks.
+     */
+    @BeforeEach
+    public void setUp() {
+        blogService = mock(AsyncBlogService.class);
+        blogController = new AsyncBlogController(blogService);
+        ctx = mock(Context.class);
+    }
+
+    /**
+     * Run the future handed to Javalin by the controller, as Javalin would.
+     */
+    @SuppressWarnings("unchecked")
+    private void completeFuture() {
+        ArgumentCaptor<Supplier<CompletableFuture<?>>> captor = ArgumentCaptor.forClass(Supplier.class);
+        verify(ctx).future(captor.capture());
+        captor.getValue().get().join();
+    }
+
+    @Test
+    public void getBlog_whenIdIsValid_returnsBlog() {
+        Blog expectedBlog = new Blog("1", "title", "content", null, null);
+        when(blogService.getBlogById("1")).thenReturn(CompletableFuture.completedFuture(expectedBlog));
+
+        blogController.getOne(ctx, "1");
+        completeFuture();
+
+        verify(ctx).status(200);
+        verify(ctx).json(expectedBlog);
+    }
+
+    @Test
+    public void getBlog_whenIdIsInvalid_returnsNotFound() {
+        when(blogService.getBlogById("invalidId")).thenReturn(CompletableFuture.completedFuture(null));
+
+        blogController.getOne(ctx, "invalidId");
+        completeFuture();
+
+        verify(ctx).status(404);
+    }
+
+    @Test
+    public void getAllBlogs_withExistingBlogs_returnsBlogs() {
+        List<Blog> expectedBlogs = List.of(new Blog("1", "title1", "content1", null, null));
+        when(blogService.getBlogs(Pagination.DEFAULT_LIMIT, null))
+                .thenReturn(CompletableFuture.completedFuture(new Page<>(expectedBlogs, null)));
+
+        blogController.getAll(ctx);
+        completeFuture();
+
+        verify(ctx).status(200);
+        verify(ctx).json(expectedBlogs);
+    }
+
+    @Test
+    public void updateBlog_whenIdIsInvalid_returnsNotFound() {
+        Blog updatedBlog = new Blog("invalidId", "updatedTitle", "updatedContent", null, null);
+        when(ctx.bodyAsClass(Blog.class)).thenReturn(updatedBlog);
+        when(blogService.updateBlog("invalidId", updatedBlog)).thenReturn(CompletableFuture.completedFuture(null));
+
+        blogController.update(ctx, "invalidId");
+        completeFuture();
+
+        verify(ctx).status(404);
+        verify(blogService, never()).getBlogById(anyString());
+    }
+}
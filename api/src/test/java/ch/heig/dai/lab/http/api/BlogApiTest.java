@@ -1,18 +1,36 @@
 package ch.heig.dai.lab.http.api;
 
 import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.BlogCodec;
 import ch.heig.dai.lab.http.api.blog.BlogController;
 import ch.heig.dai.lab.http.api.blog.BlogService;
+import ch.heig.dai.lab.http.api.blog.DeletedBlog;
+import ch.heig.dai.lab.http.api.comment.CommentService;
+import ch.heig.dai.lab.http.api.memory.MemoryBlogRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryCommentRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryStore;
+import ch.heig.dai.lab.http.api.search.SearchIndex;
 import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import io.javalin.json.JavalinJackson;
+import io.javalin.json.JsonMapperKt;
+import org.bson.RawBsonDocument;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -34,6 +52,7 @@ public class BlogApiTest {
         blogService = mock(BlogService.class);
         blogController = new BlogController(blogService);
         ctx = mock(Context.class);
+        when(blogService.getVersion()).thenReturn(new CollectionVersion(0));
     }
 
     @Test
@@ -86,25 +105,78 @@ public class BlogApiTest {
         verify(ctx).status(404);
     }
 
+    /**
+     * Encode blogs as the raw documents read by the listings.
+     *
+     * @param blogs The blogs.
+     * @return The raw documents.
+     */
+    private static List<RawBsonDocument> raw(List<Blog> blogs) {
+        return blogs.stream().map(blog -> new RawBsonDocument(blog, new BlogCodec())).toList();
+    }
+
     @Test
     public void getAllBlogs_withExistingBlogs_returnsBlogs() {
         // Arrange
         List<Blog> expectedBlogs = Arrays.asList(new Blog("1", "title1", "content1", null, null),
                                                  new Blog("2", "title2", "content2", null, null));
-        when(blogService.getAllBlogs()).thenReturn(expectedBlogs);
+        CapturingOutputStream output = new CapturingOutputStream();
+        when(ctx.outputStream()).thenReturn(output);
+        when(blogService.getRawBlogs(Pagination.DEFAULT_LIMIT, null)).thenReturn(new Page<>(raw(expectedBlogs), null));
 
         // Act
         blogController.getAll(ctx);
 
         // Assert
-        verify(blogService).getAllBlogs();
-        verify(ctx).json(expectedBlogs);
+        verify(blogService).getRawBlogs(Pagination.DEFAULT_LIMIT, null);
+        verify(ctx).status(200);
+        verify(ctx, never()).header(eq(Pagination.NEXT_CURSOR_HEADER), anyString());
+        assertEquals(expectedBlogs, List.of(new JavalinJackson().fromJsonString(output.toString(), Blog[].class)));
+    }
+
+    @Test
+    public void getAllBlogs_withMoreBlogs_returnsNextCursor() {
+        List<Blog> expectedBlogs = List.of(new Blog("1", "title1", "content1", null, null));
+        String cursor = Pagination.encodeCursor("1");
+        CapturingOutputStream output = new CapturingOutputStream();
+        when(ctx.outputStream()).thenReturn(output);
+        when(ctx.queryParam("limit")).thenReturn("1");
+        when(ctx.queryParam("after")).thenReturn(cursor);
+        when(blogService.getRawBlogs(1, cursor)).thenReturn(new Page<>(raw(expectedBlogs),
+                                                                       Pagination.encodeCursor("2")));
+
+        blogController.getAll(ctx);
+
+        verify(ctx).header(Pagination.NEXT_CURSOR_HEADER, Pagination.encodeCursor("2"));
+        verify(ctx).status(200);
+        assertEquals(expectedBlogs, List.of(new JavalinJackson().fromJsonString(output.toString(), Blog[].class)));
+    }
+
+    @Test
+    public void getAllBlogs_whenStreamingIsRequested_streamsBlogs() {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Blog> blogs = Stream.of(new Blog("1", "title1", "content1", null, null)).onClose(() -> closed.set(true));
+        when(ctx.queryParam("stream")).thenReturn("true");
+        when(blogService.streamBlogs()).thenReturn(blogs);
+
+        blogController.getAll(ctx);
+
         verify(ctx).status(200);
+        verify(ctx).writeJsonStream(blogs);
+        verify(blogService, never()).getRawBlogs(anyInt(), any());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void getAllBlogs_withInvalidLimit_returnsBadRequest() {
+        when(ctx.queryParam("limit")).thenReturn("-1");
+
+        assertThrows(BadRequestResponse.class, () -> blogController.getAll(ctx));
     }
 
     @Test
     public void getAllBlogs_whenIdIsInvalid_returnsNotFound() {
-        when(blogService.getAllBlogs()).thenReturn(null);
+        when(blogService.getRawBlogs(Pagination.DEFAULT_LIMIT, null)).thenReturn(null);
 
         blogController.getAll(ctx);
 
@@ -113,11 +185,11 @@ public class BlogApiTest {
 
     @Test
     public void getAllBlogs_withNoBlogs_returnsNotFound() {
-        when(blogService.getAllBlogs()).thenReturn(null);
+        when(blogService.getRawBlogs(Pagination.DEFAULT_LIMIT, null)).thenReturn(new Page<>(List.of(), null));
 
         blogController.getAll(ctx);
 
-        verify(blogService).getAllBlogs();
+        verify(blogService).getRawBlogs(Pagination.DEFAULT_LIMIT, null);
         verify(ctx).status(404);
         verify(ctx).result("No blogs found");
     }
@@ -149,6 +221,7 @@ public class BlogApiTest {
         blogController.update(ctx, id);
 
         verify(ctx).status(404);
+        verify(blogService, never()).getBlogById(id);
     }
 
     @Test
@@ -164,16 +237,17 @@ public class BlogApiTest {
     }
 
     @Test
-    public void deleteBlog_whenIdIsValid_removesBlog() {
+    public void deleteBlog_whenIdIsValid_removesBlogAndReportsDeletedComments() {
         String id = "123";
         Blog deletedBlog = new Blog("1", "title", "content", null, null);
         when(ctx.pathParam("blogId")).thenReturn(id);
-        when(blogService.deleteBlog(id)).thenReturn(deletedBlog);
+        when(blogService.deleteBlog(id)).thenReturn(new DeletedBlog(deletedBlog, 42));
 
         blogController.delete(ctx, id);
 
         verify(blogService).deleteBlog(id);
         verify(ctx).status(200);
+        verify(ctx).header(BlogController.DELETED_COMMENTS_HEADER, "42");
         verify(ctx).json(deletedBlog);
     }
 
@@ -189,4 +263,135 @@ public class BlogApiTest {
         verify(ctx).status(404);
         verify(ctx).result("Blog not found");
     }
+
+    @Test
+    public void bulk_withJsonArray_appliesAllOperations() {
+        when(ctx.appAttribute(JsonMapperKt.JSON_MAPPER_KEY)).thenReturn(new JavalinJackson());
+        when(ctx.bodyInputStream()).thenReturn(body("[{\"op\":\"create\",\"data\":{\"title\":\"t\"," +
+                                                    "\"content\":\"c\"}},{\"op\":\"delete\",\"id\":\"2\"}]"));
+        List<BulkItemResult> results = List.of(BulkItemResult.success(0, 201, "1"),
+                                               BulkItemResult.failure(1, 404, "2", "Blog not found"));
+        when(blogService.bulkWrite(List.of(new BulkOperation<>("create", null,
+                                                               new Blog(null, "t", "c", null, null)),
+                                           new BulkOperation<>("delete", "2", null)))).thenReturn(results);
+
+        blogController.bulk(ctx);
+
+        verify(ctx).status(200);
+        verify(ctx).json(results);
+    }
+
+    @Test
+    public void bulk_withEmptyBody_returnsBadRequest() {
+        when(ctx.appAttribute(JsonMapperKt.JSON_MAPPER_KEY)).thenReturn(new JavalinJackson());
+        when(ctx.bodyInputStream()).thenReturn(body("[]"));
+
+        assertThrows(BadRequestResponse.class, () -> blogController.bulk(ctx));
+        verify(blogService, never()).bulkWrite(any());
+    }
+
+    @Test
+    public void bulk_withNullOperation_readsItAsAnEmptyOne() {
+        when(ctx.appAttribute(JsonMapperKt.JSON_MAPPER_KEY)).thenReturn(new JavalinJackson());
+        when(ctx.bodyInputStream()).thenReturn(body("[null,{\"op\":\"delete\",\"id\":\"2\"}]"));
+        List<BulkItemResult> results = List.of(BulkItemResult.failure(0, 400, null, "Invalid blog"),
+                                               BulkItemResult.success(1, 200, "2"));
+        when(blogService.bulkWrite(List.of(new BulkOperation<>(null, null, null),
+                                           new BulkOperation<>("delete", "2", null)))).thenReturn(results);
+
+        blogController.bulk(ctx);
+
+        verify(ctx).status(200);
+        verify(ctx).json(results);
+    }
+
+    @Test
+    public void bulk_withTooManyOperations_rejectsBeforeTheEndOfTheBody() {
+        when(ctx.appAttribute(JsonMapperKt.JSON_MAPPER_KEY)).thenReturn(new JavalinJackson());
+        // The array is not closed: only a parser stopping at the limit can tell that there are too many operations
+        when(ctx.bodyInputStream()).thenReturn(body("[" + "{\"id\":\"1\"},".repeat(Bulk.MAX_OPERATIONS + 1)));
+
+        BadRequestResponse e = assertThrows(BadRequestResponse.class, () -> blogController.bulk(ctx));
+        assertTrue(e.getMessage().startsWith("Too many operations"));
+        verify(blogService, never()).bulkWrite(any());
+    }
+
+    /**
+     * Build the body of a request.
+     *
+     * @param json The JSON body.
+     * @return The stream of the body.
+     */
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void getAllBlogs_whenETagMatches_returnsNotModified() {
+        when(blogService.getVersion()).thenReturn(new CollectionVersion(2));
+        when(ctx.header("If-None-Match")).thenReturn(
+                ConditionalGet.etag("blogs", 2L, Pagination.DEFAULT_LIMIT, null));
+
+        blogController.getAll(ctx);
+
+        verify(ctx).status(304);
+        verify(ctx, never()).header(eq(ConditionalGet.LAST_MODIFIED_HEADER), anyString());
+        verify(blogService, never()).getRawBlogs(anyInt(), any());
+    }
+
+    @Test
+    public void getAllBlogs_whenBlogsChanged_returnsBlogs() throws Exception {
+        when(blogService.getVersion()).thenReturn(new CollectionVersion(3));
+        when(ctx.header("If-None-Match")).thenReturn(
+                ConditionalGet.etag("blogs", 2L, Pagination.DEFAULT_LIMIT, null));
+        when(ctx.outputStream()).thenReturn(new CapturingOutputStream());
+        when(blogService.getRawBlogs(Pagination.DEFAULT_LIMIT, null)).thenReturn(
+                new Page<>(List.of(RawBsonDocument.parse("{\"_id\": \"1\"}")), null));
+
+        blogController.getAll(ctx);
+
+        verify(ctx, never()).status(304);
+        verify(ctx).status(200);
+    }
+
+    @Test
+    public void getAllBlogs_afterADeletion_returnsBlogs() throws Exception {
+        MemoryStore store = new MemoryStore();
+        MemoryBlogRepository blogs = new MemoryBlogRepository(store);
+        MemoryCommentRepository comments = new MemoryCommentRepository(store);
+        SearchIndex index = new SearchIndex(blogs, comments);
+        BlogService service = new BlogService(blogs, new CommentService(comments, index), index);
+        BlogController controller = new BlogController(service);
+        service.createBlog(new Blog(null, "first", "content", null, null));
+        String deleted = service.createBlog(new Blog(null, "second", "content", null, null))._id();
+        when(ctx.outputStream()).thenReturn(new CapturingOutputStream());
+        controller.getAll(ctx);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(ctx).header(eq(ConditionalGet.ETAG_HEADER), etag.capture());
+
+        // The number of blogs is the same once a blog is deleted and another one created
+        service.deleteBlog(deleted);
+        service.createBlog(new Blog(null, "third", "content", null, null));
+        Context revalidation = mock(Context.class);
+        when(revalidation.header("If-None-Match")).thenReturn(etag.getValue());
+        when(revalidation.outputStream()).thenReturn(new CapturingOutputStream());
+        controller.getAll(revalidation);
+
+        verify(revalidation, never()).status(304);
+        verify(revalidation).status(200);
+    }
+
+    @Test
+    public void getBlog_whenNotModifiedSince_returnsNotModified() {
+        String id = new ObjectId().toString();
+        Blog blog = new Blog(id, "title", "content", "2024-01-01T10:00:00", "2024-01-01T10:00:00");
+        when(blogService.getBlogById(id)).thenReturn(blog);
+        when(ctx.header("If-Modified-Since")).thenReturn("Sat, 01 Jan 2050 00:00:00 GMT");
+
+        blogController.getOne(ctx, id);
+
+        verify(ctx).header(eq(ConditionalGet.ETAG_HEADER), eq(ConditionalGet.etag(id, "2024-01-01T10:00:00")));
+        verify(ctx).status(304);
+        verify(ctx, never()).json(any());
+    }
 }
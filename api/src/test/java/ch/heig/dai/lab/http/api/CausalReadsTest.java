@@ -0,0 +1,80 @@
+package ch.heig.dai.lab.http.api;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import org.bson.BsonTimestamp;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ordering of the listing reads after the version reads.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class CausalReadsTest {
+    private ClientSession session;
+    private VersionCounter counter;
+    private CausalReads causalReads;
+
+    /**
+     * Set up a client whose sessions read a collection written 3 times.
+     */
+    @BeforeEach
+    public void setUp() {
+        final MongoClient client = mock(MongoClient.class);
+        session = mock(ClientSession.class);
+        when(client.startSession(any(ClientSessionOptions.class))).thenReturn(session);
+        counter = mock(VersionCounter.class);
+        when(counter.read(session)).thenReturn(new CollectionVersion(3));
+        causalReads = new CausalReads(client, 2_000);
+    }
+
+    @Test
+    public void read_beforeAnyVersion_doesNotWait() {
+        assertEquals("page", causalReads.read(s -> "page"));
+
+        verify(session, never()).advanceOperationTime(any());
+        verify(session).close();
+    }
+
+    @Test
+    public void read_afterVersions_startsAfterTheLatestOneOfTheThread() throws InterruptedException {
+        when(session.getOperationTime()).thenReturn(new BsonTimestamp(20, 1), new BsonTimestamp(10, 1));
+        assertEquals(new CollectionVersion(3), causalReads.version(counter));
+        causalReads.version(counter);
+
+        final Thread other = new Thread(() -> causalReads.read(s -> "other page"));
+        other.start();
+        other.join();
+        causalReads.read(s -> "page");
+
+        verify(session, times(1)).advanceOperationTime(new BsonTimestamp(20, 1));
+    }
+
+    @Test
+    public void read_reusesTheVersionsOnlyOnce() {
+        when(session.getOperationTime()).thenReturn(new BsonTimestamp(20, 1));
+        causalReads.version(counter);
+
+        causalReads.read(s -> "page");
+        causalReads.read(s -> "stream");
+
+        verify(session, times(1)).advanceOperationTime(any());
+    }
+
+    @Test
+    public void read_onAStandaloneServer_doesNotWait() {
+        when(session.getOperationTime()).thenReturn(null);
+        causalReads.version(counter);
+
+        causalReads.read(s -> "page");
+
+        verify(session, never()).advanceOperationTime(any());
+    }
+}
@@ -0,0 +1,95 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.ChangeStreamListener.ChangeEvent;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the listener of the change streams.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class ChangeStreamListenerTest {
+    @Test
+    @SuppressWarnings("unchecked")
+    public void watch_resumesAfterResumableErrorsAndResetsOtherwise() {
+        final BsonDocument token = new BsonDocument("_data", new BsonString("1"));
+        final ChangeStreamDocument<Document> insert = new ChangeStreamDocument<>(
+                OperationType.INSERT, token, null, null, null, new BsonDocument("_id", new BsonString("1")), null,
+                null, null, null);
+
+        // An insert then a network error, then the history of the resumed stream is lost, then nothing
+        final MongoChangeStreamCursor<ChangeStreamDocument<Document>> interrupted = mock(MongoChangeStreamCursor.class);
+        when(interrupted.hasNext()).thenReturn(true)
+                                   .thenThrow(new MongoSocketReadException("Connection reset",
+                                                                           new ServerAddress()));
+        when(interrupted.next()).thenReturn(insert);
+        final MongoChangeStreamCursor<ChangeStreamDocument<Document>> lost = mock(MongoChangeStreamCursor.class);
+        when(lost.hasNext()).thenThrow(new MongoCommandException(
+                new BsonDocument("code", new BsonInt32(286)).append("errmsg", new BsonString("History lost")),
+                new ServerAddress()));
+        final MongoChangeStreamCursor<ChangeStreamDocument<Document>> idle = mock(MongoChangeStreamCursor.class);
+        when(idle.hasNext()).thenAnswer(invocation -> {
+            Thread.sleep(Long.MAX_VALUE);
+            return false;
+        });
+
+        final List<ChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+        final List<List<ChangeEvent>> eventsAtOpen = Collections.synchronizedList(new ArrayList<>());
+        final Iterator<MongoChangeStreamCursor<ChangeStreamDocument<Document>>> cursors =
+                List.of(interrupted, lost, idle).iterator();
+        final ChangeStreamIterable<Document> changeStream = mock(ChangeStreamIterable.class);
+        when(changeStream.resumeAfter(any())).thenReturn(changeStream);
+        when(changeStream.cursor()).thenAnswer(invocation -> {
+            eventsAtOpen.add(List.copyOf(events));
+            return cursors.next();
+        });
+        final MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(collection.watch()).thenReturn(changeStream);
+        final MongoDatabase database = mock(MongoDatabase.class);
+        when(database.getCollection("blogs")).thenReturn(collection);
+
+        final ChangeStreamListener listener = new ChangeStreamListener(database);
+        listener.subscribe("blogs", events::add);
+        listener.start();
+
+        final long deadline = System.nanoTime() + 5_000_000_000L;
+        while (events.size() < 2 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        verify(changeStream, times(3)).cursor();
+        verify(changeStream, times(1)).resumeAfter(token);
+        assertEquals(List.of(new ChangeEvent("blogs", "insert", "1"), ChangeEvent.reset("blogs")), events);
+        // The reset is only sent once the new stream is open, so no change after it can be missed
+        assertEquals(List.of(new ChangeEvent("blogs", "insert", "1")), eventsAtOpen.get(2));
+    }
+
+    @Test
+    public void isResumable_onlyForTransientErrors() {
+        assertTrue(ChangeStreamListener.isResumable(new MongoSocketReadException("Reset", new ServerAddress())));
+        assertFalse(ChangeStreamListener.isResumable(new MongoCommandException(
+                new BsonDocument("code", new BsonInt32(286)), new ServerAddress())));
+    }
+}
@@ -0,0 +1,66 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.BlogCodec;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import ch.heig.dai.lab.http.api.comment.CommentCodec;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the BSON codecs of the blogs and the comments.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class CodecTest {
+    private static <T> BsonDocument encode(Codec<T> codec, T value) {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), value, EncoderContext.builder().build());
+        return document;
+    }
+
+    private static <T> T decode(Codec<T> codec, BsonDocument document) {
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    @Test
+    public void blogCodec_roundTrip_keepsAllFields() {
+        BlogCodec codec = new BlogCodec();
+        Blog blog = new Blog("1", "title", "content", "2024-01-01T10:00", null);
+
+        BsonDocument document = encode(codec, blog);
+
+        assertEquals("title", document.getString("title").getValue());
+        assertTrue(document.get("updatedAt").isNull());
+        assertEquals(blog, decode(codec, document));
+    }
+
+    @Test
+    public void commentCodec_roundTrip_keepsAllFields() {
+        CommentCodec codec = new CommentCodec();
+        Comment comment = new Comment("1", "2", "author", "content", "2024-01-01T10:00", "2024-01-02T10:00");
+
+        assertEquals(comment, decode(codec, encode(codec, comment)));
+    }
+
+    @Test
+    public void blogCodec_withUnknownAndMistypedFields_skipsThem() {
+        BsonDocument document = new Document("_id", "1").append("title", "title")
+                                                        .append("tags", new Document("a", 1))
+                                                        .append("content", new ObjectId())
+                                                        .toBsonDocument(BsonDocument.class,
+                                                                        MongoConfig.codecRegistry());
+
+        assertEquals(new Blog("1", "title", null, null, null), decode(new BlogCodec(), document));
+    }
+}
@@ -3,16 +3,21 @@ package ch.heig.dai.lab.http.api;
 import ch.heig.dai.lab.http.api.blog.Blog;
 import ch.heig.dai.lab.http.api.blog.BlogService;
 import ch.heig.dai.lab.http.api.comment.Comment;
+import ch.heig.dai.lab.http.api.comment.CommentCodec;
 import ch.heig.dai.lab.http.api.comment.CommentController;
 import ch.heig.dai.lab.http.api.comment.CommentService;
 import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import io.javalin.json.JavalinJackson;
+import org.bson.RawBsonDocument;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -44,6 +49,7 @@ public class CommentApiTest {
         when(blogService.getBlogById(blog2._id())).thenReturn(blog2);
         when(blogService.getAllBlogs()).thenReturn(Arrays.asList(blog1, blog2));
         when(ctx.pathParam("blogId")).thenReturn(blog1._id());
+        when(commentService.getVersion()).thenReturn(new CollectionVersion(0));
     }
 
     @Test
@@ -113,13 +119,32 @@ public class CommentApiTest {
         String blogId = "1";
         List<Comment> expectedComments = Arrays.asList(new Comment("1", blogId, "author1", "content1", null, null),
                                                        new Comment("2", blogId, "author2", "content2", null, null));
+        CapturingOutputStream output = new CapturingOutputStream();
+        when(ctx.outputStream()).thenReturn(output);
         when(ctx.pathParam("blogId")).thenReturn(blogId);
-        when(commentService.getCommentsByBlogId(blogId)).thenReturn(expectedComments);
+        when(commentService.getRawCommentsByBlogId(blogId))
+                .thenReturn(expectedComments.stream()
+                                            .map(comment -> new RawBsonDocument(comment, new CommentCodec()))
+                                            .toList());
 
         commentController.getAll(ctx);
 
         verify(ctx).status(200);
-        verify(ctx).json(expectedComments);
+        assertEquals(expectedComments, List.of(new JavalinJackson().fromJsonString(output.toString(),
+                                                                                   Comment[].class)));
+    }
+
+    @Test
+    public void getAllComments_whenStreamingIsRequested_streamsComments() {
+        Stream<Comment> comments = Stream.of(new Comment("1", "1", "author1", "content1", null, null));
+        when(ctx.queryParam("stream")).thenReturn("true");
+        when(commentService.streamCommentsByBlogId(blog1._id())).thenReturn(comments);
+
+        commentController.getAll(ctx);
+
+        verify(ctx).status(200);
+        verify(ctx).writeJsonStream(comments);
+        verify(commentService, never()).getRawCommentsByBlogId(anyString());
     }
 
     @Test
@@ -169,6 +194,18 @@ public class CommentApiTest {
         verify(ctx).status(404);
     }
 
+    @Test
+    public void updateComment_whenCommentDoesNotExist_returnNotFound() {
+        Comment updatedComment = new Comment("unknownId", blog1._id(), "title", "content", null, null);
+        when(ctx.bodyAsClass(Comment.class)).thenReturn(updatedComment);
+        when(commentService.updateComment("unknownId", updatedComment)).thenReturn(null);
+
+        commentController.update(ctx, "unknownId");
+
+        verify(ctx).status(404);
+        verify(ctx).result("Comment not found");
+    }
+
     @Test
     public void updateComment_whenCommentIsInvalid_returnBadRequest() {
         String id = "1";
@@ -186,11 +223,11 @@ public class CommentApiTest {
         Comment deletedComment = new Comment("1", "1", "title", "content", null, null);
 
         when(ctx.pathParam("commentId")).thenReturn(deletedComment._id());
-        when(commentService.deleteComment(deletedComment._id())).thenReturn(deletedComment);
+        when(commentService.deleteComment(blog1._id(), deletedComment._id())).thenReturn(deletedComment);
 
         commentController.delete(ctx, deletedComment._id());
 
-        verify(commentService).deleteComment(deletedComment._id());
+        verify(commentService).deleteComment(blog1._id(), deletedComment._id());
         verify(ctx).status(200);
         verify(ctx).json(deletedComment);
     }
@@ -200,7 +237,7 @@ public class CommentApiTest {
         String id = "invalidId";
 
         when(ctx.pathParam("commentId")).thenReturn(id);
-        when(commentService.deleteComment(id)).thenReturn(null);
+        when(commentService.deleteComment(blog1._id(), id)).thenReturn(null);
 
         commentController.delete(ctx, id);
 
@@ -0,0 +1,50 @@
+package ch.heig.dai.lab.http.api;
+
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Compressor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the configuration of the compression of the responses.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class CompressionTest {
+    @Test
+    public void strategy_byDefault_prefersBrotliOverGzip() {
+        CompressionStrategy strategy = Compression.strategy(Compression.DEFAULT_ENCODINGS,
+                                                            Compression.DEFAULT_BROTLI_LEVEL,
+                                                            Compression.DEFAULT_GZIP_LEVEL, 1024);
+
+        assertEquals(List.of("br", "gzip"), strategy.getCompressors().stream().map(Compressor::encoding).toList());
+        assertEquals(1024, strategy.getMinSizeForCompression());
+        assertTrue(strategy.getExcludedMimeTypesFromCompression().contains("text/event-stream"));
+    }
+
+    @Test
+    public void strategy_whenGzipOnly_hasGzipCompressorOnly() {
+        CompressionStrategy strategy = Compression.strategy("gzip", 4, 9, 0);
+
+        assertEquals(List.of("gzip"), strategy.getCompressors().stream().map(Compressor::encoding).toList());
+    }
+
+    @Test
+    public void strategy_whenNone_disablesCompression() {
+        assertSame(CompressionStrategy.NONE, Compression.strategy("none", 4, 6, 1500));
+    }
+
+    @Test
+    public void strategy_whenInvalid_throws() {
+        assertThrows(IllegalArgumentException.class, () -> Compression.strategy("deflate", 4, 6, 1500));
+        assertThrows(IllegalArgumentException.class, () -> Compression.strategy("br", 12, 6, 1500));
+        assertThrows(IllegalArgumentException.class, () -> Compression.strategy("gzip", 4, 10, 1500));
+    }
+}
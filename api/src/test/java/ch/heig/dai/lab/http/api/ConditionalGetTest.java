@@ -0,0 +1,64 @@
+package ch.heig.dai.lab.http.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the evaluation of the conditional requests.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class ConditionalGetTest {
+    private static final Instant LAST_MODIFIED = Instant.parse("2024-01-01T10:00:00.250Z");
+
+    @Test
+    public void etag_isStableAndDependsOnEveryPart() {
+        assertEquals(ConditionalGet.etag("1", "2024-01-01T10:00:00"), ConditionalGet.etag("1", "2024-01-01T10:00:00"));
+        assertNotEquals(ConditionalGet.etag("1", "2024-01-01T10:00:00"),
+                        ConditionalGet.etag("1", "2024-01-01T10:00:01"));
+        assertNotEquals(ConditionalGet.etag("ab", "c"), ConditionalGet.etag("a", "bc"));
+        assertTrue(ConditionalGet.etag("1").matches("\"[A-Za-z0-9_-]{22}\""));
+    }
+
+    @Test
+    public void isNotModified_whenETagMatches_returnsTrue() {
+        String etag = ConditionalGet.etag("1");
+        assertTrue(ConditionalGet.isNotModified(etag, null, etag, null));
+        assertTrue(ConditionalGet.isNotModified("\"other\", W/" + etag, null, etag, null));
+        assertTrue(ConditionalGet.isNotModified("*", null, etag, null));
+    }
+
+    @Test
+    public void isNotModified_whenETagDiffers_ignoresIfModifiedSince() {
+        assertFalse(ConditionalGet.isNotModified("\"other\"", "Sat, 01 Jan 2050 00:00:00 GMT", ConditionalGet.etag("1"),
+                                                 LAST_MODIFIED));
+    }
+
+    @Test
+    public void isNotModified_comparesIfModifiedSinceAtSecondPrecision() {
+        String etag = ConditionalGet.etag("1");
+        assertTrue(ConditionalGet.isNotModified(null, "Mon, 01 Jan 2024 10:00:00 GMT", etag, LAST_MODIFIED));
+        assertFalse(ConditionalGet.isNotModified(null, "Mon, 01 Jan 2024 09:59:59 GMT", etag, LAST_MODIFIED));
+        assertFalse(ConditionalGet.isNotModified(null, "yesterday", etag, LAST_MODIFIED));
+        assertFalse(ConditionalGet.isNotModified(null, "Mon, 01 Jan 2024 10:00:00 GMT", etag, null));
+    }
+
+    @Test
+    public void instant_withAnOffset_returnsTheInstant() {
+        assertEquals(Instant.parse("2023-01-01T10:15:00Z"), ConditionalGet.instant("2023-01-01T10:15:00Z"));
+    }
+
+    @Test
+    public void instant_whenTimestampIsInvalid_returnsNull() {
+        assertNull(ConditionalGet.instant(null));
+        assertNull(ConditionalGet.instant("not a date"));
+    }
+}
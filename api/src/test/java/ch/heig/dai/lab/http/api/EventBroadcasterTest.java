@@ -0,0 +1,99 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.ChangeStreamListener.ChangeEvent;
+import io.javalin.http.Context;
+import io.javalin.http.sse.SseClient;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the fan-out of the change events to the SSE clients.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class EventBroadcasterTest {
+    /**
+     * Build a client writing to the given stream.
+     */
+    private static SseClient client(CapturingOutputStream output) throws IOException {
+        Context ctx = mock(Context.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(ctx.res()).thenReturn(response);
+        when(response.getOutputStream()).thenReturn(output);
+        return new SseClient(ctx);
+    }
+
+    /**
+     * Wait until a condition holds, failing after a few seconds.
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void accept_sendsEventToEveryClient() throws Exception {
+        EventBroadcaster broadcaster = new EventBroadcaster(EventBroadcaster.DEFAULT_QUEUE_SIZE, Duration.ofMinutes(1));
+        CapturingOutputStream first = new CapturingOutputStream();
+        CapturingOutputStream second = new CapturingOutputStream();
+        broadcaster.connect(client(first));
+        broadcaster.connect(client(second));
+
+        broadcaster.accept(new ChangeEvent("blogs", "insert", "1"));
+
+        for (CapturingOutputStream output : new CapturingOutputStream[]{first, second}) {
+            await(() -> output.toString().endsWith("\n\n") && output.toString().contains("event: blogs\n"));
+            assertTrue(output.toString().contains("\"operation\":\"insert\""));
+            assertTrue(output.toString().contains("\"id\":\"1\""));
+        }
+        assertEquals(2, broadcaster.getClients());
+    }
+
+    @Test
+    public void accept_whenClientQueueIsFull_dropsClient() throws Exception {
+        EventBroadcaster broadcaster = new EventBroadcaster(1, Duration.ofMinutes(1));
+        CountDownLatch release = new CountDownLatch(1);
+        // The writes of the slow client block until the end of the test
+        CapturingOutputStream slow = new CapturingOutputStream() {
+            @Override
+            public void write(int b) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(b);
+            }
+        };
+        CapturingOutputStream fast = new CapturingOutputStream();
+        SseClient slowClient = client(slow);
+        broadcaster.connect(slowClient);
+        broadcaster.connect(client(fast));
+
+        try {
+            broadcaster.accept(new ChangeEvent("comments", "insert", "1"));
+            await(() -> fast.toString().contains("\"id\":\"1\""));
+            broadcaster.accept(new ChangeEvent("comments", "insert", "2"));
+
+            assertTrue(slowClient.terminated());
+            assertEquals(1, broadcaster.getDropped());
+            assertEquals(1, broadcaster.getClients());
+            await(() -> fast.toString().contains("\"id\":\"2\""));
+        } finally {
+            release.countDown();
+        }
+    }
+}
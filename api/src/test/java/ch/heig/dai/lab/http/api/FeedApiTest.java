@@ -0,0 +1,75 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.feed.FeedController;
+import ch.heig.dai.lab.http.api.feed.FeedService;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the feed of the blogs with their latest comments.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class FeedApiTest {
+    private FeedService feedService;
+    private FeedController feedController;
+    private Context ctx;
+
+    /**
+     * Set up the mocks.
+     */
+    @BeforeEach
+    public void setUp() {
+        feedService = mock(FeedService.class);
+        feedController = new FeedController(feedService);
+        ctx = mock(Context.class);
+        when(feedService.getVersions()).thenReturn(List.of(new CollectionVersion(0),
+                                                           new CollectionVersion(0)));
+    }
+
+    @Test
+    public void getFeed_withBlogs_returnsBlogsWithComments() {
+        RawBsonDocument blog = RawBsonDocument.parse("{\"_id\": \"1\", \"title\": \"t\", \"comments\": " +
+                                                     "[{\"_id\": \"2\", \"_blogId\": \"1\", \"author\": \"a\"}]}");
+        CapturingOutputStream output = new CapturingOutputStream();
+        when(ctx.outputStream()).thenReturn(output);
+        when(feedService.getFeed(Pagination.DEFAULT_LIMIT, null, FeedController.DEFAULT_COMMENTS))
+                .thenReturn(new Page<>(List.of(blog), Pagination.encodeCursor("1")));
+
+        feedController.getFeed(ctx);
+
+        verify(ctx).status(200);
+        verify(ctx).header(Pagination.NEXT_CURSOR_HEADER, Pagination.encodeCursor("1"));
+        assertEquals("[{\"_id\":\"1\",\"title\":\"t\"," +
+                     "\"comments\":[{\"_id\":\"2\",\"_blogId\":\"1\",\"author\":\"a\"}]}]", output.toString());
+    }
+
+    @Test
+    public void getFeed_withCommentsParameter_capsIt() {
+        when(ctx.queryParam("comments")).thenReturn("1000");
+        when(feedService.getFeed(anyInt(), any(), anyInt())).thenReturn(new Page<>(List.of(), null));
+
+        feedController.getFeed(ctx);
+
+        verify(feedService).getFeed(Pagination.DEFAULT_LIMIT, null, FeedController.MAX_COMMENTS);
+        verify(ctx).status(404);
+    }
+
+    @Test
+    public void getFeed_withInvalidCommentsParameter_returnsBadRequest() {
+        when(ctx.queryParam("comments")).thenReturn("-1");
+
+        assertThrows(BadRequestResponse.class, () -> feedController.getFeed(ctx));
+        verify(feedService, never()).getFeed(anyInt(), any(), anyInt());
+    }
+}
@@ -0,0 +1,116 @@
+package ch.heig.dai.lab.http.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the group commit of concurrent inserts.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class GroupCommitTest {
+    /**
+     * Write documents from concurrent threads, and wait for all of them.
+     *
+     * @param groupCommit The group commit.
+     * @param documents   The documents, one per thread.
+     * @return The outcome of each write, null when it succeeded.
+     * @throws Exception If a thread cannot be awaited.
+     */
+    private static List<Throwable> writeConcurrently(GroupCommit<String> groupCommit, List<String> documents)
+            throws Exception {
+        final List<Throwable> outcomes = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final List<Future<Throwable>> futures = new ArrayList<>();
+            for (String document : documents) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        groupCommit.write(document);
+                        return null;
+                    } catch (RuntimeException e) {
+                        return e;
+                    }
+                }));
+            }
+            for (Future<Throwable> future : futures) {
+                outcomes.add(future.get());
+            }
+        }
+        return outcomes;
+    }
+
+    @Test
+    public void write_gathersConcurrentDocumentsInOneBatch() throws Exception {
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        try (GroupCommit<String> groupCommit = new GroupCommit<>("test", batch -> {
+            batches.add(batch);
+            return List.of();
+        }, Duration.ofSeconds(10), 4)) {
+            final List<Throwable> outcomes = writeConcurrently(groupCommit, List.of("a", "b", "c", "d"));
+
+            assertEquals(Collections.nCopies(4, null), outcomes);
+            assertEquals(1, batches.size());
+            assertEquals(List.of("a", "b", "c", "d"), batches.get(0).stream().sorted().toList());
+            assertEquals(1, groupCommit.getBatches());
+            assertEquals(4, groupCommit.getDocuments());
+        }
+    }
+
+    @Test
+    public void write_whenAlone_waitsAtMostTheMaximumDelay() {
+        try (GroupCommit<String> groupCommit = new GroupCommit<>("test", batch -> List.of(), Duration.ofMillis(5),
+                                                                 100)) {
+            final long start = System.nanoTime();
+            groupCommit.write("a");
+
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+            assertEquals(1, groupCommit.getBatches());
+        }
+    }
+
+    @Test
+    public void write_whenOneInsertFails_failsOnlyItsCaller() throws Exception {
+        try (GroupCommit<String> groupCommit = new GroupCommit<>("test", batch -> {
+            final int duplicate = batch.indexOf("duplicate");
+            return duplicate < 0 ? List.of() : List.of(new Bulk.WriteError(duplicate, 409, "Duplicate id"));
+        }, Duration.ofSeconds(10), 2)) {
+            final List<Throwable> outcomes = writeConcurrently(groupCommit, List.of("a", "duplicate"));
+
+            assertNull(outcomes.get(0));
+            assertInstanceOf(IllegalStateException.class, outcomes.get(1));
+            assertEquals("Duplicate id", outcomes.get(1).getMessage());
+        }
+    }
+
+    @Test
+    public void write_whenBatchFails_failsEveryCaller() throws Exception {
+        try (GroupCommit<String> groupCommit = new GroupCommit<>("test", batch -> {
+            throw new IllegalArgumentException("Database down");
+        }, Duration.ofSeconds(10), 2)) {
+            final List<Throwable> outcomes = writeConcurrently(groupCommit, List.of("a", "b"));
+
+            for (Throwable outcome : outcomes) {
+                assertInstanceOf(IllegalArgumentException.class, outcome);
+            }
+            assertEquals(0, groupCommit.getBatches());
+        }
+    }
+
+    @Test
+    public void write_whenClosed_throws() {
+        final GroupCommit<String> groupCommit = new GroupCommit<>("test", batch -> List.of(), Duration.ofMillis(1), 1);
+        groupCommit.close();
+
+        assertThrows(IllegalStateException.class, () -> groupCommit.write("a"));
+    }
+}
@@ -0,0 +1,167 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.ChangeStreamListener.ChangeEvent;
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.blog.BlogService;
+import ch.heig.dai.lab.http.api.blog.DeletedBlog;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import ch.heig.dai.lab.http.api.comment.CommentService;
+import ch.heig.dai.lab.http.api.memory.MemoryBlogRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryCommentRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryStore;
+import ch.heig.dai.lab.http.api.memory.Persistence;
+import ch.heig.dai.lab.http.api.search.SearchIndex;
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the in-memory storage engine and its persistence.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class MemoryStoreTest {
+    private static final Blog blog = new Blog("b1", "title", "content", "2024-01-01T10:00", "2024-01-01T10:00");
+    private static final Comment first = new Comment("c1", "b1", "author", "first", "2024-01-01T11:00",
+                                                     "2024-01-01T11:00");
+    private static final Comment second = new Comment("c2", "b1", "author", "second", "2024-01-01T12:00",
+                                                      "2024-01-01T12:00");
+    @TempDir
+    private Path directory;
+    private MemoryStore store;
+    private MemoryBlogRepository blogs;
+    private MemoryCommentRepository comments;
+
+    /**
+     * Set up a store that is not persistent, with a blog and two comments.
+     */
+    @BeforeEach
+    public void setUp() {
+        store = new MemoryStore();
+        blogs = new MemoryBlogRepository(store);
+        comments = new MemoryCommentRepository(store);
+        blogs.insert(blog);
+        comments.insert(second);
+        comments.insert(first);
+    }
+
+    /**
+     * Open a persistent store in the temporary folder.
+     *
+     * @return The store.
+     */
+    private MemoryStore open() {
+        return new MemoryStore(new Persistence(directory, Persistence.Fsync.ALWAYS), Duration.ofHours(1));
+    }
+
+    @Test
+    public void findByBlogId_returnsCommentsInCreationOrder() {
+        assertEquals(List.of(first, second), comments.findByBlogId("b1"));
+        assertEquals(List.of(), comments.findByBlogId("b2"));
+    }
+
+    @Test
+    public void findFeedAfter_joinsLatestComments() {
+        List<RawBsonDocument> feed = blogs.findFeedAfter(null, 10, 1);
+
+        assertEquals(1, feed.size());
+        assertEquals("title", feed.get(0).getString("title").getValue());
+        assertEquals(1, feed.get(0).getArray("comments").size());
+        assertEquals("c2", feed.get(0).getArray("comments").get(0).asDocument().getString("_id").getValue());
+    }
+
+    @Test
+    public void update_whenCommentBelongsToAnotherBlog_returnsNull() {
+        assertNull(comments.update(new Comment("c1", "b2", "author", "changed", null, "2024-01-02T10:00")));
+
+        Comment updated = comments.update(new Comment("c1", "b1", "author", "changed", null, "2024-01-02T10:00"));
+        assertEquals("changed", updated.content());
+        assertEquals(first.createdAt(), updated.createdAt());
+        assertEquals(List.of(updated, second), comments.findByBlogId("b1"));
+    }
+
+    @Test
+    public void deleteWithComments_removesBlogAndCommentsAndPublishesEvents() {
+        List<ChangeEvent> events = new ArrayList<>();
+        store.subscribe(MemoryStore.BLOGS, events::add);
+        store.subscribe(MemoryStore.COMMENTS, events::add);
+        CollectionVersion blogVersion = blogs.version();
+        CollectionVersion commentVersion = comments.version();
+
+        DeletedBlog deletedBlog = blogs.deleteWithComments("b1");
+
+        assertEquals(blog, deletedBlog.blog());
+        assertEquals(2, deletedBlog.deletedComments());
+        assertNull(blogs.findById("b1"));
+        assertNull(comments.findById("c1"));
+        assertEquals(List.of(), comments.findByBlogId("b1"));
+        assertEquals(List.of(), comments.findAll());
+        assertNotEquals(blogVersion, blogs.version());
+        assertNotEquals(commentVersion, comments.version());
+        assertEquals(List.of(new ChangeEvent("blogs", "delete", "b1"), new ChangeEvent("comments", "delete", "c1"),
+                             new ChangeEvent("comments", "delete", "c2")), events);
+    }
+
+    @Test
+    public void bulkWrite_rejectsDuplicateIdsAndReportsMissingBlogs() {
+        SearchIndex index = new SearchIndex(blogs, comments);
+        BlogService blogService = new BlogService(blogs, new CommentService(comments, index), index);
+
+        List<BulkItemResult> results = blogService.bulkWrite(List.of(
+                new BulkOperation<>("update", "b1", new Blog(null, "changed", "changed", null, null)),
+                new BulkOperation<>("delete", "b1", null),
+                new BulkOperation<>("delete", "b2", null),
+                new BulkOperation<>(null, null, null)));
+
+        assertEquals(List.of(BulkItemResult.failure(0, 400, "b1", "Duplicate id"),
+                             BulkItemResult.failure(1, 400, "b1", "Duplicate id"),
+                             BulkItemResult.failure(2, 404, "b2", "Blog not found"),
+                             BulkItemResult.failure(3, 400, null, "Invalid blog")), results);
+        assertEquals(blog, blogs.findById("b1"));
+    }
+
+    @Test
+    public void recover_replaysSnapshotAndLog() {
+        MemoryStore persistent = open();
+        new MemoryBlogRepository(persistent).insert(blog);
+        new MemoryCommentRepository(persistent).insert(first);
+        persistent.snapshot();
+        new MemoryCommentRepository(persistent).insert(second);
+        new MemoryCommentRepository(persistent).delete("b1", "c1");
+        persistent.close();
+
+        MemoryStore recovered = open();
+        assertEquals(blog, new MemoryBlogRepository(recovered).findById("b1"));
+        assertEquals(List.of(second), new MemoryCommentRepository(recovered).findByBlogId("b1"));
+        recovered.close();
+    }
+
+    @Test
+    public void recover_ignoresIncompleteLastEntry() throws IOException {
+        MemoryStore persistent = open();
+        new MemoryBlogRepository(persistent).insert(blog);
+        persistent.close();
+        try (var logs = Files.list(directory)) {
+            Path log = logs.filter(file -> file.getFileName().toString().startsWith("log-")).findFirst().orElseThrow();
+            Files.writeString(log, "{\"op\":\"putComment\",\"comm", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+
+        MemoryStore recovered = open();
+        assertEquals(blog, new MemoryBlogRepository(recovered).findById("b1"));
+        assertEquals(List.of(), new MemoryCommentRepository(recovered).findAll());
+        recovered.close();
+    }
+}
@@ -0,0 +1,127 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.metrics.Histogram;
+import ch.heig.dai.lab.http.api.metrics.Metrics;
+import ch.heig.dai.lab.http.api.metrics.MongoMetrics;
+import ch.heig.dai.lab.http.api.metrics.PrometheusWriter;
+import ch.heig.dai.lab.http.api.metrics.RequestMetrics;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionId;
+import com.mongodb.connection.ConnectionPoolSettings;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the metrics exposed to Prometheus.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class MetricsTest {
+    @Test
+    public void histogram_writesCumulativeBuckets() {
+        Histogram histogram = new Histogram();
+        histogram.record(50_000);          // 50 µs
+        histogram.record(100_000);         // 100 µs, on a bound
+        histogram.record(1_500_000);       // 1.5 ms
+        histogram.record(60_000_000_000L); // 1 min
+
+        PrometheusWriter writer = new PrometheusWriter();
+        histogram.write(writer, "latency_seconds", "route", "/a");
+        String text = writer.toString();
+
+        assertEquals(4, histogram.count());
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"0.00004\"} 0\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"0.00005\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"0.0001\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"0.001\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"0.002\"} 3\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"10\"} 3\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"/a\",le=\"+Inf\"} 4\n"));
+        assertTrue(text.contains("latency_seconds_count{route=\"/a\"} 4\n"));
+        assertTrue(text.contains("latency_seconds_sum{route=\"/a\"} 60.00165\n"));
+    }
+
+    @Test
+    public void requestMetrics_countsRequestsByRouteAndStatus() {
+        RequestMetrics metrics = new RequestMetrics();
+        Context ctx = mock(Context.class);
+        when(ctx.attribute(anyString())).thenReturn(System.nanoTime());
+        when(ctx.method()).thenReturn(HandlerType.GET);
+        when(ctx.endpointHandlerPath()).thenReturn("/api/blogs/{blogId}");
+        when(ctx.statusCode()).thenReturn(200, 200, 404);
+
+        for (int i = 0; i < 3; i++) {
+            metrics.after(ctx);
+        }
+        when(ctx.endpointHandlerPath()).thenReturn("");
+        metrics.after(ctx);
+
+        PrometheusWriter writer = new PrometheusWriter();
+        metrics.write(writer);
+        String text = writer.toString();
+        String blog = "http_requests_total{method=\"GET\",route=\"/api/blogs/{blogId}\"";
+        assertTrue(text.contains(blog + ",status=\"200\"} 2\n"));
+        assertTrue(text.contains(blog + ",status=\"404\"} 1\n"));
+        assertTrue(text.contains("http_requests_total{method=\"GET\",route=\"unmatched\",status=\"404\"} 1\n"));
+        assertTrue(text.contains(
+                "http_request_duration_seconds_count{method=\"GET\",route=\"/api/blogs/{blogId}\"} 3\n"));
+    }
+
+    @Test
+    public void scrape_exportsTheRegisteredCountersAsCounters() {
+        Metrics.gauge("test_queued", "Queued.", () -> 3);
+        Metrics.counter("test_dropped_total", "Dropped.", () -> 7);
+
+        String text = Metrics.scrape();
+        assertTrue(text.contains("# TYPE test_queued gauge\ntest_queued 3\n"));
+        assertTrue(text.contains("# TYPE test_dropped_total counter\ntest_dropped_total 7\n"));
+        assertThrows(IllegalArgumentException.class, () -> Metrics.counter("test_dropped", "Dropped.", () -> 7));
+    }
+
+    @Test
+    public void prometheusWriter_escapesLabelValues() {
+        PrometheusWriter writer = new PrometheusWriter();
+        writer.sample("name", 1.5, "label", "a\"b\\c\nd");
+
+        assertEquals("name{label=\"a\\\"b\\\\c\\nd\"} 1.5\n", writer.toString());
+    }
+
+    @Test
+    public void mongoMetrics_reportsPoolSaturation() {
+        MongoMetrics metrics = new MongoMetrics();
+        ServerId server = new ServerId(new ClusterId(), new ServerAddress("mongo", 27017));
+        metrics.connectionPoolCreated(new ConnectionPoolCreatedEvent(server, ConnectionPoolSettings.builder()
+                                                                                                 .maxSize(2)
+                                                                                                 .build()));
+        for (int i = 0; i < 3; i++) {
+            metrics.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(server));
+        }
+        for (int i = 1; i <= 2; i++) {
+            ConnectionId connection = new ConnectionId(server, i, null);
+            metrics.connectionCreated(new ConnectionCreatedEvent(connection));
+            metrics.connectionCheckedOut(new ConnectionCheckedOutEvent(connection));
+        }
+
+        PrometheusWriter writer = new PrometheusWriter();
+        metrics.write(writer);
+        String text = writer.toString();
+        assertTrue(text.contains("mongodb_pool_max_connections{server=\"mongo:27017\"} 2\n"));
+        assertTrue(text.contains("mongodb_pool_checked_out_connections{server=\"mongo:27017\"} 2\n"));
+        assertTrue(text.contains("mongodb_pool_waiting_check_outs{server=\"mongo:27017\"} 1\n"));
+    }
+}
@@ -0,0 +1,49 @@
+package ch.heig.dai.lab.http.api;
+
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the transcoding of raw BSON documents to JSON.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class RawJsonTest {
+    private static String write(List<RawBsonDocument> documents) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RawJson.write(output, documents);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void write_withStrings_escapesThem() throws IOException {
+        RawBsonDocument document = RawBsonDocument.parse("{\"_id\": \"1\", \"title\": \"Un \\\"café\\\"\\n\"}");
+
+        assertEquals("[{\"_id\":\"1\",\"title\":\"Un \\\"café\\\"\\n\"}]", write(List.of(document)));
+    }
+
+    @Test
+    public void write_withOtherTypes_writesJsonValues() throws IOException {
+        RawBsonDocument document = RawBsonDocument.parse("{\"a\": 1, \"b\": null, \"c\": [true, 2.5], " +
+                                                         "\"d\": {\"e\": \"f\"}}");
+
+        assertEquals("[{\"a\":1,\"b\":null,\"c\":[true,2.5],\"d\":{\"e\":\"f\"}}]", write(List.of(document)));
+    }
+
+    @Test
+    public void write_withSeveralDocuments_writesArray() throws IOException {
+        List<RawBsonDocument> documents = List.of(RawBsonDocument.parse("{\"_id\": \"1\"}"),
+                                                  RawBsonDocument.parse("{\"_id\": \"2\"}"));
+
+        assertEquals("[{\"_id\":\"1\"},{\"_id\":\"2\"}]", write(documents));
+        assertEquals("[]", write(List.of()));
+    }
+}
@@ -0,0 +1,158 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.cache.CacheStatistics;
+import ch.heig.dai.lab.http.api.cache.ReadThroughCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the read-through cache.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class ReadThroughCacheTest {
+    private static final Blog blog = new Blog("1", "title", "content", null, null);
+    private ReadThroughCache<Blog> cache;
+    private AtomicInteger loads;
+    private Function<String, Blog> loader;
+
+    /**
+     * Set up the cache and a loader counting the database reads.
+     */
+    @BeforeEach
+    public void setUp() {
+        cache = new ReadThroughCache<>(100, Duration.ofMinutes(1));
+        loads = new AtomicInteger();
+        loader = id -> {
+            loads.incrementAndGet();
+            return id.equals(blog._id()) ? blog : null;
+        };
+    }
+
+    @Test
+    public void get_whenCalledTwice_loadsOnce() {
+        assertEquals(blog, cache.get("1", loader));
+        assertEquals(blog, cache.get("1", loader));
+
+        assertEquals(1, loads.get());
+        CacheStatistics statistics = cache.statistics();
+        assertEquals(1, statistics.hits());
+        assertEquals(1, statistics.misses());
+    }
+
+    @Test
+    public void get_whenDocumentIsAbsent_doesNotCacheIt() {
+        assertNull(cache.get("2", loader));
+        assertNull(cache.get("2", loader));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void get_afterInvalidate_reloads() {
+        cache.get("1", loader);
+        cache.invalidate("1");
+        cache.get("1", loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void get_afterPut_doesNotLoad() {
+        cache.put("1", blog);
+
+        assertEquals(blog, cache.get("1", loader));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void invalidateIf_discardsMatchingDocumentsOnly() {
+        Blog other = new Blog("2", "other", "content", null, null);
+        cache.put("1", blog);
+        cache.put("2", other);
+
+        cache.invalidateIf(cached -> cached.title().equals("title"));
+
+        assertEquals(other, cache.get("2", loader));
+        assertEquals(blog, cache.get("1", loader));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void get_whenLoadIsInFlight_sharesItEvenForAbsentDocuments() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<String, Blog> slowLoader = id -> {
+            loads.incrementAndGet();
+            started.countDown();
+            await(release);
+            return null;
+        };
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Blog> first = executor.submit(() -> cache.get("2", slowLoader));
+            started.await();
+            List<Future<Blog>> others = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                others.add(executor.submit(() -> cache.get("2", slowLoader)));
+            }
+            while (cache.statistics().coalesced() < 10) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertNull(first.get());
+            for (Future<Blog> other : others) {
+                assertNull(other.get());
+            }
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void get_whenPutDuringLoad_keepsWrittenDocument() throws Exception {
+        Blog written = new Blog("1", "written", "content", null, null);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Blog> load = executor.submit(() -> cache.get("1", id -> {
+                started.countDown();
+                await(release);
+                return blog;
+            }));
+            started.await();
+            cache.put("1", written);
+            release.countDown();
+
+            assertEquals(blog, load.get());
+        }
+        assertEquals(written, cache.get("1", loader));
+        assertEquals(0, loads.get());
+    }
+
+    /**
+     * Wait for a latch, failing the test if interrupted.
+     *
+     * @param latch The latch.
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ch.heig.dai.lab.http.api;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the summary of the query plans reported by the diagnostics.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class SchemaTest {
+    @Test
+    public void plan_withIndexScan_reportsIndex() {
+        Document winningPlan = Document.parse("{stage: 'FETCH', inputStage: {stage: 'IXSCAN', " +
+                                              "indexName: 'blogId_createdAt'}}");
+
+        Schema.QueryPlan plan = Schema.plan("comments of a blog", "comments", winningPlan);
+
+        assertEquals(List.of("FETCH", "IXSCAN"), plan.stages());
+        assertEquals(Set.of("blogId_createdAt"), plan.indexes());
+        assertFalse(plan.collectionScan());
+    }
+
+    @Test
+    public void plan_withCollectionScan_reportsCollectionScan() {
+        Document winningPlan = Document.parse("{queryPlan: {stage: 'SORT', inputStage: {stage: 'COLLSCAN'}}}");
+
+        Schema.QueryPlan plan = Schema.plan("comments of a blog", "comments", winningPlan);
+
+        assertEquals(List.of("SORT", "COLLSCAN"), plan.stages());
+        assertTrue(plan.indexes().isEmpty());
+        assertTrue(plan.collectionScan());
+    }
+}
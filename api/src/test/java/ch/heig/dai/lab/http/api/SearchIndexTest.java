@@ -0,0 +1,95 @@
+package ch.heig.dai.lab.http.api;
+
+import ch.heig.dai.lab.http.api.ChangeStreamListener.ChangeEvent;
+import ch.heig.dai.lab.http.api.blog.Blog;
+import ch.heig.dai.lab.http.api.comment.Comment;
+import ch.heig.dai.lab.http.api.memory.MemoryBlogRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryCommentRepository;
+import ch.heig.dai.lab.http.api.memory.MemoryStore;
+import ch.heig.dai.lab.http.api.search.SearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the full-text search index.
+ *
+ * @author Aubry Mangold <aubry.mangold@heig-vd.ch>
+ * @author Hugo Germano <hugo.germano@heig-vd.ch>
+ */
+public class SearchIndexTest {
+    private MemoryBlogRepository blogs;
+    private MemoryCommentRepository comments;
+    private SearchIndex index;
+
+    /**
+     * Set up an index rebuilt from three blogs, one of them with a comment.
+     */
+    @BeforeEach
+    public void setUp() {
+        final MemoryStore store = new MemoryStore();
+        blogs = new MemoryBlogRepository(store);
+        comments = new MemoryCommentRepository(store);
+        blogs.insert(new Blog("b1", "Café de Lausanne", "A review of the coffee places.", null, null));
+        blogs.insert(new Blog("b2", "Hiking", "A walk to a café above the lake, then more hiking.", null, null));
+        blogs.insert(new Blog("b3", "Cooking", "Recipes for the winter.", null, null));
+        comments.insert(new Comment("c1", "b3", "author", "Which fondue recipe?", "2024-01-01T10:00", null));
+        index = new SearchIndex(blogs, comments);
+        index.rebuild();
+    }
+
+    /**
+     * Get the IDs of the blogs matching a query, best first.
+     *
+     * @param query The query.
+     * @return The IDs.
+     */
+    private List<String> search(String query) {
+        return index.search(query, 10).stream().map(SearchIndex.Hit::blogId).toList();
+    }
+
+    @Test
+    public void search_ranksTitleMatchesFirstAndIgnoresCaseAndAccents() {
+        assertEquals(List.of("b1", "b2"), search("CAFE"));
+        assertEquals(List.of("b2"), search("hiking lake"));
+        assertEquals(List.of(), search("unknown"));
+    }
+
+    @Test
+    public void search_matchesComments() {
+        assertEquals(List.of("b3"), search("fondue"));
+    }
+
+    @Test
+    public void search_followsWrites() {
+        index.putComment(new Comment("c2", "b1", "author", "The fondue was great", "2024-01-01T11:00", null));
+        index.putBlog(new Blog("b3", "Cooking", "Soups only.", null, null));
+        index.removeComment("c1");
+
+        assertEquals(List.of("b1"), search("fondue"));
+        assertEquals(List.of(), search("recipes"));
+
+        index.removeBlog("b1");
+        assertEquals(List.of(), search("fondue"));
+        assertEquals(List.of("b2"), search("cafe"));
+    }
+
+    @Test
+    public void search_whenLimited_keepsBestHits() {
+        assertEquals(1, index.search("cafe", 1).size());
+        assertEquals("b1", index.search("cafe", 1).get(0).blogId());
+    }
+
+    @Test
+    public void onCommentChange_indexesTheStoredComment() {
+        comments.delete("b3", "c1");
+
+        index.onCommentChange(new ChangeEvent("comments", "delete", "c1"));
+
+        assertEquals(List.of(), search("fondue"));
+        assertEquals(3, index.getBlogs());
+    }
+}
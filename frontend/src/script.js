@@ -9,6 +9,18 @@ function createCommentElement(comment) {
     return li;
 }
 
+function displayComments(comments, ul) {
+    if (comments.length === 0) {
+        const noCommentsMessage = document.createElement("li");
+        noCommentsMessage.textContent = "No comments yet.";
+        ul.appendChild(noCommentsMessage);
+        return;
+    }
+    comments.forEach((comment) => {
+        ul.appendChild(createCommentElement(comment));
+    });
+}
+
 function fetchComments(blogId, ul) {
     fetch(`${window._env_.URL}/api/blogs/${blogId}/comments`)
         .then((response) => {
@@ -67,7 +79,12 @@ function createDivElement(blog, includeLink = true) {
     var ul = document.createElement("ul");
     article.appendChild(ul);
 
-    fetchComments(blog._id, ul);
+    if (blog.comments) {
+        // The feed already holds the latest comments of the blog
+        displayComments(blog.comments, ul);
+    } else {
+        fetchComments(blog._id, ul);
+    }
 
     article.appendChild(createCommentForm(blog._id));
 
@@ -137,8 +154,8 @@ document.addEventListener("DOMContentLoaded", () => {
             // If an id parameter is present, fetch the corresponding blog post and its comments
             fetchSinglePost(id);
         } else {
-            // If no id parameter is present, fetch all blog posts
-            fetch(`${window._env_.URL}/api/blogs`)
+            // If no id parameter is present, fetch the blog posts with their latest comments in a single request
+            fetch(`${window._env_.URL}/api/feed`)
                 .then((response) => response.json())
                 .then((blogs) => {
                     // Clear the main element
@@ -161,8 +178,29 @@ document.addEventListener("DOMContentLoaded", () => {
     // Fetch and display posts initially
     fetchAndDisplayPosts();
 
-    // Update the website every 10 seconds
-    setInterval(fetchAndDisplayPosts, 10000);
+    if (window.EventSource) {
+        // Reload the posts when the API reports a change, instead of polling it. Bursts of changes are coalesced
+        // into a single reload.
+        let reload = null;
+        const scheduleReload = () => {
+            clearTimeout(reload);
+            reload = setTimeout(fetchAndDisplayPosts, 250);
+        };
+        const events = new EventSource(`${window._env_.URL}/api/events`);
+        events.addEventListener("blogs", scheduleReload);
+        events.addEventListener("comments", scheduleReload);
+        // Changes may have been missed while the connection was down: reload when it is reestablished
+        let connected = false;
+        events.addEventListener("open", () => {
+            if (connected) {
+                scheduleReload();
+            }
+            connected = true;
+        });
+    } else {
+        // Update the website every 10 seconds
+        setInterval(fetchAndDisplayPosts, 10000);
+    }
 });
 
 function fetchSinglePost(blogId) {
@@ -170,6 +208,8 @@ function fetchSinglePost(blogId) {
         .then((response) => response.json())
         .then((blog) => {
             const blogElement = createDivElement(blog, false);
+            // Clear the main element
+            document.querySelector("main").innerHTML = '';
             document.querySelector("main").appendChild(blogElement);
         })
         .catch((error) => {